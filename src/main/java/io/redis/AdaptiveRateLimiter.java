@@ -0,0 +1,183 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleFunction;
+
+/**
+ * Wraps a token or leaky bucket whose rate tunes itself from downstream feedback using additive
+ * increase / multiplicative decrease. Callers report the latency and outcome of every call they were
+ * allowed to make; once per adjustment interval each node folds its feedback into the rate shared in
+ * Redis, so every node converges on the same value.
+ * <p>
+ * The rate grows by {@code additiveIncrease} per healthy interval and is multiplied by
+ * {@code decreaseFactor} when a node saw errors or an average latency above the target. Increases and
+ * decreases are each applied at most once per interval across the fleet, otherwise every node would
+ * move the rate again on its own and it would change N times faster than configured.
+ */
+public class AdaptiveRateLimiter implements RateLimiter {
+
+    private static final int MAX_ATTEMPTS = 100;
+
+    public record Policy(double initialRate, double minRate, double maxRate, double additiveIncrease,
+                         double decreaseFactor, Duration latencyTarget) {
+    }
+
+    private final Jedis jedis;
+    private final String key;
+    private final Policy policy;
+    private final long adjustmentIntervalMs;
+    private final DoubleFunction<RateLimiter> limiterFactory;
+    private final Clock clock;
+
+    private volatile double rate;
+    private volatile RateLimiter current;
+    private long lastAdjustment;
+    private long samples;
+    private long errors;
+    private long totalLatencyNanos;
+
+    public AdaptiveRateLimiter(Jedis jedis, String name, Policy policy, Duration adjustmentInterval,
+                               DoubleFunction<RateLimiter> limiterFactory) {
+        this(jedis, name, policy, adjustmentInterval, limiterFactory, Clock.systemUTC());
+    }
+
+    public AdaptiveRateLimiter(Jedis jedis, String name, Policy policy, Duration adjustmentInterval,
+                               DoubleFunction<RateLimiter> limiterFactory, Clock clock) {
+        this(jedis, name, policy, adjustmentInterval, limiterFactory, clock, null);
+    }
+
+    /**
+     * @param namespace keeps the shared rate apart from limiters of the same name in other namespaces, in
+     *                  the reserved namespace {@link KeyNamespace#adaptive(String)}
+     */
+    public AdaptiveRateLimiter(Jedis jedis, String name, Policy policy, Duration adjustmentInterval,
+                               DoubleFunction<RateLimiter> limiterFactory, Clock clock, String namespace) {
+        this.jedis = jedis;
+        this.clock = clock;
+        this.key = KeyNamespace.prefix(KeyNamespace.adaptive(namespace)) + name;
+        this.policy = policy;
+        this.adjustmentIntervalMs = adjustmentInterval.toMillis();
+        this.limiterFactory = limiterFactory;
+        this.rate = policy.initialRate();
+        this.current = limiterFactory.apply(rate);
+        this.lastAdjustment = clock.millis();
+    }
+
+    public static AdaptiveRateLimiter tokenBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval) {
+        return tokenBucket(jedis, name, bucketCapacity, policy, adjustmentInterval, Clock.systemUTC());
+    }
+
+    public static AdaptiveRateLimiter tokenBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval, Clock clock) {
+        return tokenBucket(jedis, name, bucketCapacity, policy, adjustmentInterval, clock, null);
+    }
+
+    /**
+     * @param namespace of both the buckets and the shared rate
+     */
+    public static AdaptiveRateLimiter tokenBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval, Clock clock, String namespace) {
+        BucketOptions options = BucketOptions.DEFAULT.withClock(clock).withNamespace(namespace);
+        return new AdaptiveRateLimiter(jedis, name, policy, adjustmentInterval,
+                rate -> new TokenBucketRateLimiter(jedis, bucketCapacity, rate, options), clock, namespace);
+    }
+
+    public static AdaptiveRateLimiter leakyBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval) {
+        return leakyBucket(jedis, name, bucketCapacity, policy, adjustmentInterval, Clock.systemUTC());
+    }
+
+    public static AdaptiveRateLimiter leakyBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval, Clock clock) {
+        return leakyBucket(jedis, name, bucketCapacity, policy, adjustmentInterval, clock, null);
+    }
+
+    /**
+     * @param namespace of both the buckets and the shared rate
+     */
+    public static AdaptiveRateLimiter leakyBucket(Jedis jedis, String name, int bucketCapacity, Policy policy,
+                                                  Duration adjustmentInterval, Clock clock, String namespace) {
+        BucketOptions options = BucketOptions.DEFAULT.withClock(clock).withNamespace(namespace);
+        return new AdaptiveRateLimiter(jedis, name, policy, adjustmentInterval,
+                rate -> new LeakyBucketRateLimiter(jedis, bucketCapacity, rate, options), clock, namespace);
+    }
+
+    public boolean isAllowed(String clientId) {
+        return current.isAllowed(clientId);
+    }
+
+    /**
+     * Reports how a call admitted by this limiter went downstream.
+     */
+    public void onResponse(Duration latency, boolean isError) {
+        boolean adjustmentDue;
+        synchronized (this) {
+            samples++;
+            totalLatencyNanos += latency.toNanos();
+            if (isError) {
+                errors++;
+            }
+            adjustmentDue = clock.millis() - lastAdjustment >= adjustmentIntervalMs;
+        }
+        if (adjustmentDue) {
+            adjust();
+        }
+    }
+
+    /**
+     * Folds the feedback collected since the last adjustment into the shared rate and picks up the
+     * result, including the adjustments made by other nodes.
+     */
+    public synchronized void adjust() {
+        long currentTime = clock.millis();
+        boolean isCongested = errors > 0
+                || (samples > 0 && totalLatencyNanos / samples > policy.latencyTarget().toNanos());
+        boolean hasFeedback = samples > 0;
+        samples = 0;
+        errors = 0;
+        totalLatencyNanos = 0;
+        lastAdjustment = currentTime;
+
+        double sharedRate = rate;
+        List<Object> result = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && result == null; attempt++) {
+            // Optimistic read-modify-write, retried when another node adjusted in between
+            jedis.watch(key);
+            Map<String, String> state = jedis.hgetAll(key);
+            sharedRate = state.containsKey("rate") ? Double.parseDouble(state.get("rate")) : policy.initialRate();
+            long lastDecrease = state.containsKey("decreasedAt") ? Long.parseLong(state.get("decreasedAt")) : 0;
+            long lastIncrease = state.containsKey("increasedAt") ? Long.parseLong(state.get("increasedAt")) : 0;
+
+            Transaction transaction = jedis.multi();
+            if (isCongested && currentTime - lastDecrease >= adjustmentIntervalMs) {
+                sharedRate = Math.max(policy.minRate(), sharedRate * policy.decreaseFactor());
+                transaction.hset(key, Map.of("rate", String.valueOf(sharedRate),
+                        "decreasedAt", String.valueOf(currentTime)));
+            } else if (hasFeedback && !isCongested && currentTime - lastIncrease >= adjustmentIntervalMs) {
+                sharedRate = Math.min(policy.maxRate(), sharedRate + policy.additiveIncrease());
+                transaction.hset(key, Map.of("rate", String.valueOf(sharedRate),
+                        "increasedAt", String.valueOf(currentTime)));
+            }
+            result = transaction.exec();
+        }
+        if (result == null) {
+            throw new IllegalStateException("Gave up adjusting " + key + " after " + MAX_ATTEMPTS + " conflicts");
+        }
+
+        if (sharedRate != rate) {
+            rate = sharedRate;
+            current = limiterFactory.apply(sharedRate);
+        }
+    }
+
+    public double getRate() {
+        return rate;
+    }
+}
@@ -0,0 +1,42 @@
+package io.redis;
+
+import java.time.Clock;
+import java.util.Objects;
+
+/**
+ * The optional settings of the token and leaky buckets, so each bucket has one constructor per store
+ * type instead of one per combination, e.g.
+ * {@code new TokenBucketRateLimiter(jedis, 10, 1, BucketOptions.DEFAULT.withNamespace("api").withWarmUp(warmUp))}.
+ *
+ * @param timeSource {@link TimeSource#REDIS} ages the buckets by the Redis server's clock instead of {@code clock}
+ * @param namespace  keeps the buckets under {@code rate_limit_ns:<namespace>:}, null for the default prefix,
+ *                   see {@link KeyNamespace}
+ * @param warmUp     ramps new buckets up to the configured rate and capacity, null to start them at full size
+ */
+public record BucketOptions(Clock clock, TimeSource timeSource, String namespace, WarmUp warmUp) {
+
+    public static final BucketOptions DEFAULT = new BucketOptions(Clock.systemUTC(), TimeSource.CLIENT, null, null);
+
+    public BucketOptions {
+        Objects.requireNonNull(clock, "clock");
+        Objects.requireNonNull(timeSource, "timeSource");
+        // Rejects reserved names up front rather than when the limiter is built
+        KeyNamespace.prefix(namespace);
+    }
+
+    public BucketOptions withClock(Clock clock) {
+        return new BucketOptions(clock, timeSource, namespace, warmUp);
+    }
+
+    public BucketOptions withTimeSource(TimeSource timeSource) {
+        return new BucketOptions(clock, timeSource, namespace, warmUp);
+    }
+
+    public BucketOptions withNamespace(String namespace) {
+        return new BucketOptions(clock, timeSource, namespace, warmUp);
+    }
+
+    public BucketOptions withWarmUp(WarmUp warmUp) {
+        return new BucketOptions(clock, timeSource, namespace, warmUp);
+    }
+}
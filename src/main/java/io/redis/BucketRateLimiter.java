@@ -0,0 +1,261 @@
+package io.redis;
+
+import io.redis.store.StateStore;
+import io.redis.store.StateUpdate;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * What the token and leaky buckets share: a count and the time it was last advanced, in microseconds,
+ * kept in two keys per client, plus the warm-up start when there is one. The subclasses only decide
+ * which way the count moves: tokens are taken and refill, requests are added and leak.
+ */
+abstract class BucketRateLimiter implements PipelinedRateLimiter, ReservingRateLimiter {
+    private final StateStore store;
+    private final int bucketCapacity;
+    private final double rate; // Tokens refilled or requests leaked per second
+    private final BucketOptions options;
+    private final String keyPrefix;
+    private final String timeKey; // Suffix of the key holding the time the count was last advanced
+
+    BucketRateLimiter(StateStore store, int bucketCapacity, double rate, BucketOptions options, String timeKey) {
+        this.store = store;
+        this.bucketCapacity = bucketCapacity;
+        this.rate = rate;
+        this.options = options;
+        this.keyPrefix = KeyNamespace.prefix(options.namespace());
+        this.timeKey = timeKey;
+    }
+
+    /**
+     * @param capacity and rate in effect, lower than configured during a warm-up
+     */
+    record Bucket(int count, long lastUpdate, int capacity, double rate) {
+    }
+
+    /**
+     * @return the count of a bucket seen for the first time
+     */
+    abstract int initialCount(int capacity);
+
+    /**
+     * Moves the count by what accrued since {@code lastUpdate}, in whole requests only, and the time
+     * forward by exactly what they took, so the fraction of the next one carries over to the next call.
+     */
+    abstract Bucket advance(int count, long lastUpdate, int capacity, double rate, long currentTime);
+
+    /**
+     * @return requests the bucket admits before denying, negative when it is in debt to reservations
+     */
+    abstract int available(Bucket bucket, int count);
+
+    /**
+     * @return the count after admitting one request
+     */
+    abstract int take(int count);
+
+    public int getBucketCapacity() {
+        return bucketCapacity;
+    }
+
+    public boolean isAllowed(String clientId) {
+        return decide(clientId).allowed();
+    }
+
+    public Decision decide(String clientId) {
+        return decide(clientId, 0);
+    }
+
+    /**
+     * Decides in one atomic update of the bucket, admitting the request only if more requests would
+     * still be admitted than the reserved share of the capacity in effect, which is smaller during a
+     * warm-up, see {@link PriorityTokenBucketRateLimiter}.
+     */
+    Decision decide(String clientId, double reservedShare) {
+        return update(clientId, (values, currentTime) -> {
+            BucketState state = new BucketState(clientId, values, currentTime);
+            int reserved = (int) Math.round(reservedShare * state.bucket().capacity());
+            boolean allowed = state.tryAcquire(reserved);
+            Decision decision = new Decision(allowed, Math.max(0, state.remaining() - reserved));
+            return state.isModified() ? state.result(decision) : StateUpdate.Result.unchanged(decision);
+        });
+    }
+
+    public ClientState read(PipeliningBase transaction, String clientId) {
+        LongSupplier currentTime = options.timeSource().queueMicros(transaction, options.clock());
+        Response<String> lastUpdateResponse = transaction.get(keyPrefix + clientId + timeKey);
+        Response<String> countResponse = transaction.get(keyPrefix + clientId + ":count");
+        Supplier<String> warmUpStart = () -> null;
+        if (options.warmUp() != null) {
+            warmUpStart = transaction.get(warmUpKey(clientId))::get;
+        }
+
+        return new BucketState(clientId, lastUpdateResponse::get, countResponse::get, warmUpStart, currentTime);
+    }
+
+    private final class BucketState implements ClientState {
+        private final String clientId;
+        private final Supplier<String> lastUpdate;
+        private final Supplier<String> count;
+        private final Supplier<String> warmUpStart;
+        private final LongSupplier currentTime;
+        private Bucket bucket;
+        private int currentCount;
+
+        BucketState(String clientId, Supplier<String> lastUpdate, Supplier<String> count, Supplier<String> warmUpStart,
+                    LongSupplier currentTime) {
+            this.clientId = clientId;
+            this.lastUpdate = lastUpdate;
+            this.count = count;
+            this.warmUpStart = warmUpStart;
+            this.currentTime = currentTime;
+        }
+
+        // From the values of a StateStore update, in the order of keys(clientId)
+        BucketState(String clientId, List<String> values, long currentTime) {
+            this(clientId, () -> values.get(0), () -> values.get(1),
+                    () -> options.warmUp() != null ? values.get(2) : null, () -> currentTime);
+        }
+
+        private Bucket bucket() {
+            if (bucket == null) {
+                bucket = load(lastUpdate.get(), count.get(), warmUpStart.get(), currentTime.getAsLong());
+                currentCount = bucket.count();
+            }
+            return bucket;
+        }
+
+        public boolean tryAcquire() {
+            return tryAcquire(0);
+        }
+
+        boolean tryAcquire(int reserved) {
+            // Check if the request is allowed, without touching what is reserved for others
+            boolean isAllowed = available(bucket(), currentCount) > reserved;
+
+            if (isAllowed) {
+                currentCount = take(currentCount);
+            }
+
+            return isAllowed;
+        }
+
+        public long remaining() {
+            return Math.max(0, available(bucket(), currentCount));
+        }
+
+        public boolean isModified() {
+            return bucket != null && (!String.valueOf(currentCount).equals(count.get())
+                    || !String.valueOf(bucket.lastUpdate()).equals(lastUpdate.get())
+                    || startsWarmUp());
+        }
+
+        private boolean startsWarmUp() {
+            return options.warmUp() != null && options.warmUp().starts(warmUpStart.get(), lastUpdate.get() == null);
+        }
+
+        public void write(PipeliningBase transaction) {
+            // Update Redis state
+            transaction.set(keyPrefix + clientId + timeKey, String.valueOf(bucket.lastUpdate()));
+            transaction.set(keyPrefix + clientId + ":count", String.valueOf(currentCount));
+            if (startsWarmUp()) {
+                // Concurrent first requests race to start the warm-up, the first one wins
+                Duration ttl = options.warmUp().keyTtl();
+                transaction.set(warmUpKey(clientId), String.valueOf(currentTime.getAsLong()),
+                        ttl == null ? SetParams.setParams().nx() : SetParams.setParams().nx().px(ttl.toMillis()));
+            }
+        }
+
+        StateUpdate.Result<Decision> result(Decision decision) {
+            return BucketRateLimiter.this.result(decision, bucket, currentCount, warmUpStart.get(), lastUpdate.get(),
+                    currentTime.getAsLong());
+        }
+    }
+
+    /**
+     * Reserves room for a request of the client and returns how long the caller has to wait before
+     * sending it. The bucket is allowed to go past its limit, so concurrent callers queue up behind each
+     * other and each one can park exactly once instead of polling {@link #isAllowed(String)}.
+     *
+     * @return the time to wait before proceeding, or empty if the wait would exceed the timeout,
+     * in which case nothing is reserved
+     */
+    public Optional<Duration> acquire(String clientId, Duration timeout) {
+        return update(clientId, (values, currentTime) -> {
+            String warmUpStart = options.warmUp() != null ? values.get(2) : null;
+            Bucket bucket = load(values.get(0), values.get(1), warmUpStart, currentTime);
+            String lastUpdate = values.get(0);
+
+            // Requests that have to accrue before ours fits, including the ones reserved before us.
+            // The next one has been accruing since lastUpdate, not since now.
+            int missing = 1 - available(bucket, bucket.count());
+            long waitMicros = missing > 0
+                    ? Math.max(0, (long) Math.ceil(missing * 1_000_000 / bucket.rate())
+                            - (currentTime - bucket.lastUpdate()))
+                    : 0;
+            long waitMs = (long) Math.ceil(waitMicros / 1000.0);
+            if (waitMs > timeout.toMillis()) {
+                return result(Optional.empty(), bucket, bucket.count(), warmUpStart, lastUpdate, currentTime);
+            }
+
+            return result(Optional.of(Duration.ofMillis(waitMs)), bucket, take(bucket.count()), warmUpStart, lastUpdate,
+                    currentTime);
+        });
+    }
+
+    public List<String> keys(String clientId) {
+        if (options.warmUp() != null) {
+            return List.of(keyPrefix + clientId + timeKey, keyPrefix + clientId + ":count", warmUpKey(clientId));
+        }
+        return List.of(keyPrefix + clientId + timeKey, keyPrefix + clientId + ":count");
+    }
+
+    private String warmUpKey(String clientId) {
+        return options.warmUp().key(keyPrefix, options.namespace(), clientId);
+    }
+
+    // New values in the order of keys(clientId), the warm-up start only when it starts now
+    private <R> StateUpdate.Result<R> result(R result, Bucket bucket, int count, String warmUpStart, String lastUpdate,
+                                            long currentTime) {
+        String newLastUpdate = String.valueOf(bucket.lastUpdate());
+        String newCount = String.valueOf(count);
+        WarmUp warmUp = options.warmUp();
+        if (warmUp == null) {
+            return StateUpdate.Result.write(result, List.of(newLastUpdate, newCount));
+        }
+        if (!warmUp.starts(warmUpStart, lastUpdate == null)) {
+            return StateUpdate.Result.write(result, Arrays.asList(newLastUpdate, newCount, null));
+        }
+        return new StateUpdate.Result<>(result, List.of(newLastUpdate, newCount, String.valueOf(currentTime)),
+                Arrays.asList(null, null, warmUp.keyTtl()));
+    }
+
+    private Bucket load(String lastUpdate, String count, String warmUpStart, long currentTime) {
+        // During a warm-up the bucket is smaller and accrues slower
+        WarmUp warmUp = options.warmUp();
+        double factor = warmUp != null ? warmUp.factor(warmUpStart, lastUpdate == null, currentTime) : 1;
+        int capacity = warmUp != null ? Math.max(1, (int) Math.round(bucketCapacity * factor)) : bucketCapacity;
+
+        long lastUpdateTime = lastUpdate != null ? Long.parseLong(lastUpdate) : currentTime;
+        int currentCount = count != null ? Integer.parseInt(count) : initialCount(capacity);
+        return advance(currentCount, lastUpdateTime, capacity, rate * factor, currentTime);
+    }
+
+    private <R> R update(String clientId, StateUpdate.Timed<R> update) {
+        if (options.timeSource() == TimeSource.REDIS) {
+            return store.updateAtStoreTime(keys(clientId), options.clock(), update);
+        }
+        long currentTime = ChronoUnit.MICROS.between(Instant.EPOCH, options.clock().instant());
+        return store.update(keys(clientId), values -> update.apply(values, currentTime));
+    }
+}
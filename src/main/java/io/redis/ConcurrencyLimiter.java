@@ -0,0 +1,110 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.params.ZAddParams;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Caps the number of calls a client may have in flight, rather than how many it may start per second.
+ * Every permit is a lease in a sorted set scored by its expiry time, so a holder that crashes without
+ * releasing only blocks its permit until the lease times out.
+ * <p>
+ * Acquiring and releasing take one round trip each. Acquiring is a script that purges the expired
+ * leases, counts the live ones and adds the new one only if there is room, all in one atomic step, so
+ * a denied call never holds a lease that makes concurrent callers deny too.
+ */
+public class ConcurrencyLimiter {
+
+    // KEYS: the leases. ARGV: now, the new lease's expiry, the limit, its ID, the lease timeout
+    private static final String ACQUIRE_SCRIPT = """
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+            if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[3]) then
+                return 0
+            end
+            redis.call('ZADD', KEYS[1], ARGV[2], ARGV[4])
+            redis.call('PEXPIRE', KEYS[1], ARGV[5])
+            return 1
+            """;
+
+    private final Jedis jedis;
+    private final int limit;
+    private final long leaseTimeoutMs;
+    private final Clock clock;
+    private final String keyPrefix;
+
+    public ConcurrencyLimiter(Jedis jedis, int limit, Duration leaseTimeout) {
+        this(jedis, limit, leaseTimeout, Clock.systemUTC());
+    }
+
+    public ConcurrencyLimiter(Jedis jedis, int limit, Duration leaseTimeout, Clock clock) {
+        this(jedis, limit, leaseTimeout, clock, null);
+    }
+
+    /**
+     * @param namespace keeps the leases apart from other limiters, see {@link KeyNamespace}
+     */
+    public ConcurrencyLimiter(Jedis jedis, int limit, Duration leaseTimeout, Clock clock, String namespace) {
+        this.jedis = jedis;
+        this.keyPrefix = KeyNamespace.prefix(namespace);
+        this.limit = limit;
+        this.leaseTimeoutMs = leaseTimeout.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @return the lease to hand back to {@link #release(String, String)}, or empty if the client
+     * already has {@code limit} calls in flight
+     */
+    public Optional<String> acquire(String clientId) {
+        String leaseId = UUID.randomUUID().toString();
+        long currentTime = clock.millis();
+
+        Object granted = jedis.eval(ACQUIRE_SCRIPT, List.of(leasesKey(clientId)), List.of(
+                Long.toString(currentTime), Long.toString(currentTime + leaseTimeoutMs), Integer.toString(limit),
+                leaseId, Long.toString(leaseTimeoutMs)));
+        return Long.valueOf(1).equals(granted) ? Optional.of(leaseId) : Optional.empty();
+    }
+
+    /**
+     * Extends a lease for calls that run longer than the lease timeout.
+     *
+     * @return false if the lease has already expired, in which case the permit may be held by someone else
+     */
+    public boolean renew(String clientId, String leaseId) {
+        String key = leasesKey(clientId);
+        long currentTime = clock.millis();
+
+        Transaction transaction = jedis.multi();
+        // Read the old expiry alongside the update, CH alone reports nothing when renewed within the same millisecond
+        transaction.zscore(key, leaseId);
+        transaction.zadd(key, currentTime + leaseTimeoutMs, leaseId, ZAddParams.zAddParams().xx());
+        transaction.pexpire(key, leaseTimeoutMs);
+        List<Object> result = transaction.exec();
+
+        if (result == null || result.isEmpty()) {
+            throw new IllegalStateException("Empty result from Redis transaction");
+        }
+
+        Double expiresAt = (Double) result.get(0);
+        if (expiresAt != null && expiresAt <= currentTime) {
+            // Expired but not purged yet, the renewal must not resurrect it
+            jedis.zrem(key, leaseId);
+            return false;
+        }
+        return expiresAt != null;
+    }
+
+    public void release(String clientId, String leaseId) {
+        jedis.zrem(leasesKey(clientId), leaseId);
+    }
+
+    private String leasesKey(String clientId) {
+        return keyPrefix + clientId + ":leases";
+    }
+}
@@ -0,0 +1,91 @@
+package io.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Consistent-hash ring mapping keys to nodes. Each node is placed at {@code virtualNodes} points of a
+ * 64-bit ring and a key belongs to the first point at or after its own hash, so load evens out and
+ * adding or removing a node only moves the keys between its points and their predecessors, about
+ * 1/n of them. Points depend only on the node ID, so every process building a ring from the same
+ * IDs routes identically.
+ * <p>
+ * Lookups read an immutable snapshot; adding or removing a node swaps in a new one.
+ */
+public class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new TreeMap<>(), Map.of());
+
+    private record Snapshot<T>(NavigableMap<Long, String> points, Map<String, T> nodes) {
+    }
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    public synchronized void add(String nodeId, T node) {
+        Snapshot<T> current = snapshot;
+        if (current.nodes().containsKey(nodeId)) {
+            throw new IllegalArgumentException("Node already on the ring: " + nodeId);
+        }
+        NavigableMap<Long, String> points = new TreeMap<>(current.points());
+        place(points, nodeId);
+        Map<String, T> nodes = new HashMap<>(current.nodes());
+        nodes.put(nodeId, node);
+        snapshot = new Snapshot<>(points, Map.copyOf(nodes));
+    }
+
+    /**
+     * @return the removed node, or null if it was not on the ring
+     */
+    public synchronized T remove(String nodeId) {
+        Snapshot<T> current = snapshot;
+        T node = current.nodes().get(nodeId);
+        if (node == null) {
+            return null;
+        }
+        Map<String, T> nodes = new HashMap<>(current.nodes());
+        nodes.remove(nodeId);
+        // Rebuilt rather than trimmed, so points the removed node won in a collision go back to their loser
+        NavigableMap<Long, String> points = new TreeMap<>();
+        nodes.keySet().forEach(id -> place(points, id));
+        snapshot = new Snapshot<>(points, Map.copyOf(nodes));
+        return node;
+    }
+
+    public String nodeIdFor(String key) {
+        return nodeIdFor(snapshot, key);
+    }
+
+    public T nodeFor(String key) {
+        Snapshot<T> current = snapshot;
+        return current.nodes().get(nodeIdFor(current, key));
+    }
+
+    public Set<String> nodeIds() {
+        return snapshot.nodes().keySet();
+    }
+
+    private void place(NavigableMap<Long, String> points, String nodeId) {
+        for (int i = 0; i < virtualNodes; i++) {
+            // On the rare point collision the smaller ID wins, whatever order nodes were added in
+            points.merge(Hashing.hash64(nodeId + "#" + i), nodeId, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+        }
+    }
+
+    private static String nodeIdFor(Snapshot<?> snapshot, String key) {
+        NavigableMap<Long, String> points = snapshot.points();
+        if (points.isEmpty()) {
+            throw new IllegalStateException("No nodes on the ring");
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(Hashing.hash64(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+}
@@ -0,0 +1,143 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.args.ExpiryOption;
+
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * Fixed window limiter for unbounded client cardinality (e.g. per IP). Instead of a key per client,
+ * every window has one Count-Min Sketch stored as a Redis string of 32-bit counters and updated with
+ * BITFIELD, so memory is {@code width * depth * 4} bytes per window no matter how many clients there
+ * are.
+ * <p>
+ * A client's count is the minimum over its {@code depth} counters. Collisions can only add to that,
+ * so the limiter over-estimates and denies conservatively: with probability at least
+ * {@code 1 - delta}, a client is charged no more than {@code epsilon} times the total requests in the
+ * window on top of its own.
+ * <p>
+ * A request increments its counters first and is decided on the values that returns, so two callers
+ * can never both take a client's last slot. A denied request takes its increments back right away;
+ * until then they can only make other requests deny.
+ */
+public class CountMinSketchRateLimiter implements RateLimiter {
+
+    private final Jedis jedis;
+    private final int windowSize;
+    private final int limit;
+    private final int width;
+    private final int depth;
+    private final Clock clock;
+    private final String keyPrefix;
+
+    public CountMinSketchRateLimiter(Jedis jedis, int windowSize, int limit, double epsilon, double delta) {
+        this(jedis, windowSize, limit, epsilon, delta, Clock.systemUTC());
+    }
+
+    /**
+     * @param namespace keeps the sketches apart from those of limiters in other namespaces, in the reserved
+     *                  namespace {@link KeyNamespace#sketch(String)}
+     */
+    public CountMinSketchRateLimiter(Jedis jedis, int windowSize, int limit, double epsilon, double delta,
+                                     String namespace) {
+        this(jedis, windowSize, limit, epsilon, delta, Clock.systemUTC(), namespace);
+    }
+
+    public CountMinSketchRateLimiter(Jedis jedis, int windowSize, int limit, double epsilon, double delta,
+                                     Clock clock) {
+        this(jedis, windowSize, limit, epsilon, delta, clock, null);
+    }
+
+    public CountMinSketchRateLimiter(Jedis jedis, int windowSize, int limit, double epsilon, double delta,
+                                     Clock clock, String namespace) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            // delta >= 1 would mean no rows at all, and with them no limit
+            throw new IllegalArgumentException("epsilon and delta must be between 0 and 1, exclusive");
+        }
+        this.jedis = jedis;
+        this.windowSize = windowSize;
+        this.limit = limit;
+        this.width = (int) Math.ceil(Math.E / epsilon);
+        this.depth = (int) Math.ceil(Math.log(1 / delta));
+        this.clock = clock;
+        this.keyPrefix = KeyNamespace.prefix(KeyNamespace.sketch(namespace));
+    }
+
+    public boolean isAllowed(String clientId) {
+        String key = currentKey();
+        long[] cells = cells(clientId);
+
+        Transaction transaction = jedis.multi();
+        Response<List<Long>> counts = transaction.bitfield(key, increments(cells, 1));
+        transaction.expire(key, windowSize, ExpiryOption.NX);
+        transaction.exec();
+
+        // The counters include this request, so the estimate may reach the limit but not exceed it
+        boolean isAllowed = counts.get().stream().mapToLong(Long::longValue).min().orElse(0) <= limit;
+        if (!isAllowed) {
+            jedis.bitfield(key, increments(cells, -1));
+        }
+        return isAllowed;
+    }
+
+    /**
+     * Estimated number of requests admitted for the client in the current window, never less than the
+     * actual number.
+     */
+    public long estimate(String clientId) {
+        return estimate(currentKey(), cells(clientId));
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    private static String[] increments(long[] cells, int increment) {
+        String[] increments = new String[2 + cells.length * 4];
+        increments[0] = "OVERFLOW";
+        increments[1] = "SAT";
+        for (int row = 0; row < cells.length; row++) {
+            int i = 2 + row * 4;
+            increments[i] = "INCRBY";
+            increments[i + 1] = "u32";
+            increments[i + 2] = "#" + cells[row];
+            increments[i + 3] = Integer.toString(increment);
+        }
+        return increments;
+    }
+
+    private long estimate(String key, long[] cells) {
+        String[] reads = new String[cells.length * 3];
+        for (int row = 0; row < cells.length; row++) {
+            reads[row * 3] = "GET";
+            reads[row * 3 + 1] = "u32";
+            reads[row * 3 + 2] = "#" + cells[row];
+        }
+        List<Long> counts = jedis.bitfieldReadonly(key, reads);
+        return counts.stream().mapToLong(Long::longValue).min().orElse(0);
+    }
+
+    // Counter index of the client in every row, derived from two halves of one hash (Kirsch-Mitzenmacher)
+    private long[] cells(String clientId) {
+        long hash = Hashing.hash64(clientId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long[] cells = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            cells[row] = (long) row * width + Math.floorMod(h1 + row * h2, width);
+        }
+        return cells;
+    }
+
+    private String currentKey() {
+        long currentWindow = clock.millis() / (windowSize * 1000L);
+        return keyPrefix + currentWindow;
+    }
+}
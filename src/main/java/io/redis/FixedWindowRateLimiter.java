@@ -1,35 +1,102 @@
 package io.redis;
 
+import io.redis.store.JedisStateStore;
+import io.redis.store.StateStore;
+import io.redis.store.StateUpdate;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.args.ExpiryOption;
 
-public class FixedWindowRateLimiter {
+import java.time.Duration;
+import java.util.List;
 
-    private final Jedis jedis;
+public class FixedWindowRateLimiter implements PipelinedRateLimiter {
+
+    private final StateStore store;
     private final int windowSize;
     private final int limit;
+    private final String keyPrefix;
 
     public FixedWindowRateLimiter(Jedis jedis, int windowSize, int limit) {
-        this.jedis = jedis;
+        this(new JedisStateStore(jedis), windowSize, limit);
+    }
+
+    /**
+     * @param namespace keeps the counters under {@code rate_limit_ns:<namespace>:}, see {@link KeyNamespace}
+     */
+    public FixedWindowRateLimiter(Jedis jedis, int windowSize, int limit, String namespace) {
+        this(new JedisStateStore(jedis), windowSize, limit, namespace);
+    }
+
+    public FixedWindowRateLimiter(StateStore store, int windowSize, int limit) {
+        this(store, windowSize, limit, null);
+    }
+
+    public FixedWindowRateLimiter(StateStore store, int windowSize, int limit, String namespace) {
+        this.store = store;
         this.limit = limit;
         this.windowSize = windowSize;
+        this.keyPrefix = KeyNamespace.prefix(namespace);
     }
 
     public boolean isAllowed(String clientId) {
-        String key = "rate_limit:" + clientId;
-        String currentCountStr = jedis.get(key);
-        int currentCount = currentCountStr != null ? Integer.parseInt(currentCountStr) : 0;
-
-        boolean isAllowed = currentCount < limit;
-
-        if (isAllowed) {
-            Transaction transaction = jedis.multi();
-            transaction.incr(key);
-            transaction.expire(key, windowSize, ExpiryOption.NX);
-            transaction.exec();
-        }
-    
-        return isAllowed;
-    }
-}
\ No newline at end of file
+        return decide(clientId).allowed();
+    }
+
+    public Decision decide(String clientId) {
+        return store.update(List.of(keyPrefix + clientId), values -> {
+            String count = values.get(0);
+            int currentCount = count != null ? Integer.parseInt(count) : 0;
+            if (currentCount >= limit) {
+                return StateUpdate.Result.unchanged(new Decision(false, 0));
+            }
+
+            // The window starts with its first request and keeps its expiry after that
+            return new StateUpdate.Result<>(new Decision(true, limit - currentCount - 1),
+                    List.of(String.valueOf(currentCount + 1)), count == null ? Duration.ofSeconds(windowSize) : null);
+        });
+    }
+
+    public List<String> keys(String clientId) {
+        return List.of(keyPrefix + clientId);
+    }
+
+    public ClientState read(PipeliningBase transaction, String clientId) {
+        String key = keyPrefix + clientId;
+        Response<String> currentCountStr = transaction.get(key);
+
+        return new ClientState() {
+            private int currentCount = -1;
+            private int admitted;
+
+            public boolean tryAcquire() {
+                if (currentCount < 0) {
+                    currentCount = currentCountStr.get() != null ? Integer.parseInt(currentCountStr.get()) : 0;
+                }
+
+                boolean isAllowed = currentCount < limit;
+
+                if (isAllowed) {
+                    currentCount++;
+                    admitted++;
+                }
+
+                return isAllowed;
+            }
+
+            public long remaining() {
+                return limit - currentCount;
+            }
+
+            public boolean isModified() {
+                return admitted > 0;
+            }
+
+            public void write(PipeliningBase transaction) {
+                transaction.incrBy(key, admitted);
+                transaction.expire(key, windowSize, ExpiryOption.NX);
+            }
+        };
+    }
+}
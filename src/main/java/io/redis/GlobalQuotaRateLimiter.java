@@ -0,0 +1,215 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fleet-wide limit (e.g. 2000 calls/sec to a payment provider) split into node-local allowances.
+ * Nodes register under the quota name in Redis and periodically report how much traffic they see;
+ * every node then derives the same allocation and enforces its own share with an in-process token
+ * bucket, so admitting a request never costs a round trip.
+ * <p>
+ * Each node is guaranteed a small share so it can serve its first requests, nodes get what they used
+ * in the last period plus some headroom, and quota nobody asked for is spread evenly. Nodes that stop
+ * reporting for {@code nodeTimeout} are dropped and their share goes back into the pool. Heartbeats
+ * are stamped with Redis TIME, so a node whose clock runs ahead cannot evict live peers.
+ */
+public class GlobalQuotaRateLimiter implements RateLimiter, AutoCloseable {
+    private static final double DEMAND_HEADROOM = 1.5;     // Lets a busy node grow between rebalances
+    private static final double IDLE_SHARE_FRACTION = 0.1; // Part of the even split every node keeps
+
+    private final Jedis jedis;
+    private final String nodeId;
+    private final double globalRate; // Requests per second for the whole fleet
+    private final long nodeTimeoutMs;
+    private final String keyNodes;
+    private final String keyDemand;
+    private final LocalTokenBucket bucket;
+    private final Clock clock;
+    private final AtomicLong requestsSinceRebalance = new AtomicLong();
+    private long lastRebalance;
+    private volatile double localRate;
+    private ScheduledExecutorService rebalancer;
+
+    public GlobalQuotaRateLimiter(Jedis jedis, String quotaName, double globalRate, Duration nodeTimeout) {
+        this(jedis, quotaName, UUID.randomUUID().toString(), globalRate, nodeTimeout);
+    }
+
+    public GlobalQuotaRateLimiter(Jedis jedis, String quotaName, String nodeId, double globalRate,
+                                  Duration nodeTimeout) {
+        this(jedis, quotaName, nodeId, globalRate, nodeTimeout, Clock.systemUTC());
+    }
+
+    public GlobalQuotaRateLimiter(Jedis jedis, String quotaName, String nodeId, double globalRate,
+                                  Duration nodeTimeout, Clock clock) {
+        this(jedis, quotaName, nodeId, globalRate, nodeTimeout, clock, null);
+    }
+
+    /**
+     * @param namespace keeps the quota apart from quotas of the same name in other namespaces, in the
+     *                  reserved namespace {@link KeyNamespace#quota(String)}
+     */
+    public GlobalQuotaRateLimiter(Jedis jedis, String quotaName, String nodeId, double globalRate,
+                                  Duration nodeTimeout, Clock clock, String namespace) {
+        this.jedis = jedis;
+        this.clock = clock;
+        this.nodeId = nodeId;
+        this.globalRate = globalRate;
+        this.nodeTimeoutMs = nodeTimeout.toMillis();
+        String keyPrefix = KeyNamespace.prefix(KeyNamespace.quota(namespace)) + quotaName;
+        this.keyNodes = keyPrefix + ":nodes";
+        this.keyDemand = keyPrefix + ":demand";
+        this.lastRebalance = clock.millis();
+        // No share until the first rebalance tells us how many nodes there are
+        this.bucket = new LocalTokenBucket(0, 0, lastRebalance);
+    }
+
+    public boolean isAllowed() {
+        requestsSinceRebalance.incrementAndGet();
+        return bucket.tryConsume(clock.millis());
+    }
+
+    /**
+     * The quota is shared by everyone, the client is not taken into account.
+     */
+    public boolean isAllowed(String clientId) {
+        return isAllowed();
+    }
+
+    /**
+     * Reports this node's demand, reads everyone else's in the same transaction and resizes the local
+     * share accordingly.
+     */
+    public synchronized void rebalance() {
+        long currentTime = clock.millis();
+        double elapsedTimeSecs = Math.max(1, currentTime - lastRebalance) / 1000.0;
+        double demand = requestsSinceRebalance.getAndSet(0) / elapsedTimeSecs;
+        lastRebalance = currentTime;
+
+        // A transaction cannot feed TIME into ZADD, so it costs a round trip of its own
+        long redisTime = TimeSource.toMicros(jedis.time()) / 1000;
+        Transaction transaction = jedis.multi();
+        transaction.zadd(keyNodes, redisTime, nodeId);
+        transaction.hset(keyDemand, nodeId, String.valueOf(demand));
+        transaction.zremrangeByScore(keyNodes, 0, redisTime - nodeTimeoutMs);
+        transaction.zrange(keyNodes, 0, -1);
+        transaction.hgetAll(keyDemand);
+        transaction.pexpire(keyNodes, nodeTimeoutMs);
+        transaction.pexpire(keyDemand, nodeTimeoutMs);
+        List<Object> results = transaction.exec();
+
+        if (results == null || results.isEmpty()) {
+            throw new IllegalStateException("Empty result from Redis transaction");
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> liveNodes = (List<String>) results.get(3);
+        @SuppressWarnings("unchecked")
+        Map<String, String> reportedDemand = (Map<String, String>) results.get(4);
+
+        Map<String, Double> demands = new HashMap<>();
+        List<String> deadNodes = new ArrayList<>();
+        reportedDemand.forEach((node, nodeDemand) -> {
+            if (liveNodes.contains(node)) {
+                demands.put(node, Double.parseDouble(nodeDemand));
+            } else {
+                deadNodes.add(node);
+            }
+        });
+        if (!deadNodes.isEmpty()) {
+            jedis.hdel(keyDemand, deadNodes.toArray(new String[0]));
+        }
+
+        localRate = allocate(globalRate, demands).getOrDefault(nodeId, 0.0);
+        bucket.reconfigure(Math.max(1, localRate), localRate, currentTime);
+    }
+
+    /**
+     * Rebalances now and then every {@code interval} on a background thread until {@link #close()}.
+     * The interval should be well below the node timeout.
+     */
+    public synchronized void start(Duration interval) {
+        if (rebalancer != null) {
+            throw new IllegalStateException("Already started");
+        }
+        rebalance();
+        rebalancer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = interval.toMillis();
+        rebalancer.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (JedisException e) {
+                // Keep the current share, the next run retries
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public double getLocalRate() {
+        return localRate;
+    }
+
+    /**
+     * Leaves the quota so the other nodes can take over this node's share on their next rebalance.
+     */
+    @Override
+    public synchronized void close() {
+        if (rebalancer != null) {
+            rebalancer.shutdown();
+            rebalancer = null;
+        }
+        Transaction transaction = jedis.multi();
+        transaction.zrem(keyNodes, nodeId);
+        transaction.hdel(keyDemand, nodeId);
+        transaction.exec();
+    }
+
+    /**
+     * Max-min fair split of the global rate: every node keeps a small floor, the least demanding nodes
+     * are satisfied first and whatever is left over is spread evenly, so the shares always add up to
+     * the global rate.
+     */
+    static Map<String, Double> allocate(double globalRate, Map<String, Double> demands) {
+        Map<String, Double> shares = new HashMap<>();
+        if (demands.isEmpty()) {
+            return shares;
+        }
+
+        int nodes = demands.size();
+        double floor = globalRate / nodes * IDLE_SHARE_FRACTION;
+        double remaining = globalRate - floor * nodes;
+
+        List<Map.Entry<String, Double>> byDemand = new ArrayList<>(demands.entrySet());
+        byDemand.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+
+        int nodesLeft = nodes;
+        for (Map.Entry<String, Double> node : byDemand) {
+            double fairShare = remaining / nodesLeft;
+            double wanted = Math.max(0, node.getValue() * DEMAND_HEADROOM - floor);
+            double extra = Math.min(wanted, fairShare);
+            shares.put(node.getKey(), floor + extra);
+            remaining -= extra;
+            nodesLeft--;
+        }
+
+        double unused = remaining / nodes;
+        shares.replaceAll((node, share) -> share + unused);
+        return shares;
+    }
+}
@@ -0,0 +1,54 @@
+package io.redis;
+
+/**
+ * Stable 64-bit hash for client IDs. Unlike {@link String#hashCode()} it is well mixed in every bit
+ * and identical across JVMs, which matters whenever the result picks a Redis key, field or offset.
+ * It is FNV-1a over the UTF-8 bytes of the value, encoded on the fly so hashing allocates nothing.
+ */
+final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            int c = value.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, value.charAt(++i));
+            } else if (Character.isSurrogate((char) c)) {
+                c = '?'; // Unpaired, replaced like String.getBytes does
+            }
+
+            if (c < 0x80) {
+                hash = fnv(hash, c);
+            } else if (c < 0x800) {
+                hash = fnv(fnv(hash, 0xc0 | c >>> 6), 0x80 | c & 0x3f);
+            } else if (c < 0x10000) {
+                hash = fnv(fnv(fnv(hash, 0xe0 | c >>> 12), 0x80 | c >>> 6 & 0x3f), 0x80 | c & 0x3f);
+            } else {
+                hash = fnv(fnv(fnv(fnv(hash, 0xf0 | c >>> 18), 0x80 | c >>> 12 & 0x3f), 0x80 | c >>> 6 & 0x3f),
+                        0x80 | c & 0x3f);
+            }
+        }
+        return mix64(hash);
+    }
+
+    private static long fnv(long hash, int b) {
+        return (hash ^ b) * FNV_PRIME;
+    }
+
+    // MurmurHash3 finalizer, spreads FNV's weak high bits over the whole word
+    static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,21 @@
+package io.redis;
+
+/**
+ * Feeds every decision of the wrapped limiter into a {@link HeavyHitterTracker}.
+ */
+public class HeavyHitterRateLimiter implements RateLimiter {
+
+    private final RateLimiter delegate;
+    private final HeavyHitterTracker tracker;
+
+    public HeavyHitterRateLimiter(RateLimiter delegate, HeavyHitterTracker tracker) {
+        this.delegate = delegate;
+        this.tracker = tracker;
+    }
+
+    public boolean isAllowed(String clientId) {
+        boolean isAllowed = delegate.isAllowed(clientId);
+        tracker.record(clientId, isAllowed);
+        return isAllowed;
+    }
+}
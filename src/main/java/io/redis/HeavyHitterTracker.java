@@ -0,0 +1,54 @@
+package io.redis;
+
+import java.util.List;
+
+/**
+ * Bounded top-K of the clients generating the most traffic and the most denials, fed by limiter
+ * decisions. Memory is fixed by the capacity no matter how many distinct clients show up, and queries
+ * never touch the per-client keys in Redis, so it is cheap enough to leave on during an incident.
+ * <p>
+ * Counts are upper bounds: {@code count - error} is what the client is guaranteed to have done.
+ */
+public class HeavyHitterTracker {
+
+    public record HeavyHitter(String clientId, long count, long error) {
+    }
+
+    private final SpaceSavingSketch requests;
+    private final SpaceSavingSketch denials;
+
+    /**
+     * @param capacity number of clients tracked per ranking, several times the K you intend to query
+     *                 keeps the error bounds tight
+     */
+    public HeavyHitterTracker(int capacity) {
+        this.requests = new SpaceSavingSketch(capacity);
+        this.denials = new SpaceSavingSketch(capacity);
+    }
+
+    public void record(String clientId, boolean isAllowed) {
+        requests.add(clientId);
+        if (!isAllowed) {
+            denials.add(clientId);
+        }
+    }
+
+    public List<HeavyHitter> topActive(int k) {
+        return toHeavyHitters(requests.top(k));
+    }
+
+    public List<HeavyHitter> topThrottled(int k) {
+        return toHeavyHitters(denials.top(k));
+    }
+
+    public void reset() {
+        requests.clear();
+        denials.clear();
+    }
+
+    private static List<HeavyHitter> toHeavyHitters(List<SpaceSavingSketch.Entry> entries) {
+        return entries.stream()
+                .map(entry -> new HeavyHitter(entry.item(), entry.count(), entry.error()))
+                .toList();
+    }
+}
@@ -0,0 +1,226 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static redis.clients.jedis.args.ExpiryOption.NX;
+
+/**
+ * Two-tier window limiter for limits where slight over-admission is acceptable. Every node decides
+ * locally from the last known global count plus the requests it admitted since, and only talks to
+ * Redis when its deltas are flushed in one pipeline, so Redis traffic grows with the number of nodes
+ * and the flush rate rather than with the request rate.
+ * <p>
+ * State in Redis is a hash per client with one field per sub-window, so nodes can add their deltas with
+ * HINCRBY without reading first. The fixed window flavour simply uses a single sub-window per window,
+ * aligned to the epoch. Both flavours need a namespace of their own next to a {@link FixedWindowRateLimiter}
+ * or {@link SlidingWindowCounterRateLimiter}, whose state is a string. The Jedis connection is only used
+ * by {@link #flush()} and must not be shared.
+ */
+public class HybridWindowRateLimiter implements RateLimiter, AutoCloseable {
+
+    private final Jedis jedis;
+    private final int limit;
+    private final long windowSize;    // Seconds
+    private final long subWindowSize; // Seconds
+    private final long subWindowsPerWindow;
+    private final Clock clock;
+    private final String keyPrefix;
+    private final Map<String, ClientWindow> clients = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    public HybridWindowRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize) {
+        this(jedis, limit, windowSize, subWindowSize, Clock.systemUTC());
+    }
+
+    /**
+     * @param namespace keeps the counters under {@code rate_limit_ns:<namespace>:}, see {@link KeyNamespace}
+     */
+    public HybridWindowRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, String namespace) {
+        this(jedis, limit, windowSize, subWindowSize, Clock.systemUTC(), namespace);
+    }
+
+    public HybridWindowRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, Clock clock) {
+        this(jedis, limit, windowSize, subWindowSize, clock, null);
+    }
+
+    public HybridWindowRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, Clock clock,
+                                   String namespace) {
+        if (windowSize % subWindowSize != 0) {
+            throw new IllegalArgumentException("windowSize must be a multiple of subWindowSize");
+        }
+        this.jedis = jedis;
+        this.limit = limit;
+        this.windowSize = windowSize;
+        this.subWindowSize = subWindowSize;
+        this.subWindowsPerWindow = windowSize / subWindowSize;
+        this.clock = clock;
+        this.keyPrefix = KeyNamespace.prefix(namespace);
+    }
+
+    public static HybridWindowRateLimiter fixedWindow(Jedis jedis, int windowSize, int limit) {
+        return new HybridWindowRateLimiter(jedis, limit, windowSize, windowSize);
+    }
+
+    public static HybridWindowRateLimiter fixedWindow(Jedis jedis, int windowSize, int limit, Clock clock) {
+        return new HybridWindowRateLimiter(jedis, limit, windowSize, windowSize, clock);
+    }
+
+    public static HybridWindowRateLimiter slidingWindowCounter(Jedis jedis, int limit, long windowSize,
+                                                               long subWindowSize) {
+        return new HybridWindowRateLimiter(jedis, limit, windowSize, subWindowSize);
+    }
+
+    public static HybridWindowRateLimiter slidingWindowCounter(Jedis jedis, int limit, long windowSize,
+                                                               long subWindowSize, Clock clock) {
+        return new HybridWindowRateLimiter(jedis, limit, windowSize, subWindowSize, clock);
+    }
+
+    public boolean isAllowed(String clientId) {
+        long currentSubWindow = currentSubWindow();
+        boolean[] isAllowed = new boolean[1];
+        // compute() keeps the flusher from retiring the window while we count on it
+        clients.compute(clientId, (id, window) -> {
+            ClientWindow clientWindow = window != null ? window : new ClientWindow();
+            isAllowed[0] = clientWindow.tryAcquire(currentSubWindow);
+            return clientWindow;
+        });
+        return isAllowed[0];
+    }
+
+    /**
+     * Flushes deltas every {@code flushInterval} on a background thread until {@link #close()}.
+     * Failed flushes keep their deltas for the next attempt.
+     */
+    public synchronized void start(Duration flushInterval) {
+        if (flusher != null) {
+            throw new IllegalStateException("Already started");
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rate-limit-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (JedisException e) {
+                // Deltas were restored, the next run retries them
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pushes the locally admitted requests to Redis and refreshes the global counts of the clients
+     * that had any, all in a single pipeline.
+     */
+    public synchronized void flush() {
+        long oldestSubWindow = currentSubWindow() - subWindowsPerWindow + 1;
+        Map<String, Map<Long, Long>> deltas = new HashMap<>();
+        for (String clientId : clients.keySet()) {
+            clients.computeIfPresent(clientId, (id, window) -> {
+                Map<Long, Long> pending = window.drainPending();
+                if (!pending.isEmpty()) {
+                    deltas.put(id, pending);
+                }
+                return pending.isEmpty() && window.isIdle(oldestSubWindow) ? null : window;
+            });
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        Map<String, Response<Map<String, String>>> globalCounts = new HashMap<>();
+        Pipeline pipeline = jedis.pipelined();
+        deltas.forEach((clientId, pending) -> {
+            String key = keyPrefix + clientId;
+            pending.forEach((subWindow, delta) -> {
+                pipeline.hincrBy(key, Long.toString(subWindow), delta);
+                pipeline.hexpire(key, windowSize, NX, Long.toString(subWindow));
+            });
+            globalCounts.put(clientId, pipeline.hgetAll(key));
+        });
+        try {
+            pipeline.sync();
+        } catch (JedisException e) {
+            deltas.forEach((clientId, pending) -> clients.get(clientId).restorePending(pending));
+            throw e;
+        }
+
+        globalCounts.forEach((clientId, counts) -> clients.get(clientId).updateGlobal(counts.get()));
+    }
+
+    @Override
+    public synchronized void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        flush();
+    }
+
+    private long currentSubWindow() {
+        return clock.millis() / (subWindowSize * 1000);
+    }
+
+    private class ClientWindow {
+        // Sub-window index -> count, as last read from Redis and as admitted locally since
+        private final TreeMap<Long, Long> global = new TreeMap<>();
+        private final TreeMap<Long, Long> pending = new TreeMap<>();
+        // Deltas being flushed: no longer pending, but not yet part of the global counts either
+        private final TreeMap<Long, Long> inFlight = new TreeMap<>();
+
+        synchronized boolean tryAcquire(long currentSubWindow) {
+            long oldestSubWindow = currentSubWindow - subWindowsPerWindow + 1;
+            global.headMap(oldestSubWindow).clear();
+
+            long totalCount = sum(global.tailMap(oldestSubWindow)) + sum(pending.tailMap(oldestSubWindow))
+                    + sum(inFlight.tailMap(oldestSubWindow));
+            boolean isAllowed = totalCount < limit;
+            if (isAllowed) {
+                pending.merge(currentSubWindow, 1L, Long::sum);
+            }
+            return isAllowed;
+        }
+
+        synchronized Map<Long, Long> drainPending() {
+            Map<Long, Long> drained = new TreeMap<>(pending);
+            drained.forEach((subWindow, delta) -> inFlight.merge(subWindow, delta, Long::sum));
+            pending.clear();
+            return drained;
+        }
+
+        synchronized void restorePending(Map<Long, Long> drained) {
+            drained.forEach((subWindow, delta) -> pending.merge(subWindow, delta, Long::sum));
+            inFlight.clear();
+        }
+
+        // The Redis counts already include our flushed deltas
+        synchronized void updateGlobal(Map<String, String> counts) {
+            global.clear();
+            inFlight.clear();
+            counts.forEach((subWindow, count) -> global.put(Long.parseLong(subWindow), Long.parseLong(count)));
+        }
+
+        synchronized boolean isIdle(long oldestSubWindow) {
+            return pending.isEmpty() && inFlight.isEmpty() && (global.isEmpty() || global.lastKey() < oldestSubWindow);
+        }
+
+        private long sum(Map<Long, Long> counts) {
+            return counts.values().stream().mapToLong(Long::longValue).sum();
+        }
+    }
+}
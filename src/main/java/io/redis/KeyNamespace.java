@@ -0,0 +1,126 @@
+package io.redis;
+
+import java.util.List;
+
+/**
+ * Key prefixes of the limiters. Without a namespace a limiter keeps a client's state under
+ * {@code rate_limit:<clientId>}; with one, under {@code rate_limit_ns:<namespace>:<clientId>}. Limiters
+ * in different namespaces can then serve the same client IDs even when their keys have different
+ * types, and each namespace can be sized and purged on its own, see {@link io.redis.admin.KeyspaceAdmin}.
+ * <p>
+ * Namespaces have a root of their own, so no client ID under the default prefix, however many colons
+ * it contains, can produce a key inside a namespace, and the default prefix never covers them either.
+ * <p>
+ * Namespaces starting with {@code ~} are reserved for the library: {@link #shadow(String)} names the
+ * namespace where a {@link ShadowRateLimiter} candidate keeps its state, {@link #warmUp(String)} the one
+ * where limiter-wide {@link WarmUp}s start, and {@link #sketch(String)}, {@link #adaptive(String)} and
+ * {@link #quota(String)} the ones of the keys that are shared rather than kept per client. No client ID
+ * or other namespace can reach them.
+ */
+public final class KeyNamespace {
+
+    public static final String DEFAULT_PREFIX = "rate_limit:";
+    public static final String NAMESPACE_ROOT = "rate_limit_ns:";
+
+    private static final String SHADOW = "~shadow";
+    private static final String WARM_UP = "~warmUp";
+    private static final String SKETCH = "~sketch";
+    private static final String ADAPTIVE = "~adaptive";
+    private static final String QUOTA = "~quota";
+    private static final List<String> RESERVED = List.of(SHADOW, WARM_UP, SKETCH, ADAPTIVE, QUOTA);
+
+    private KeyNamespace() {
+    }
+
+    /**
+     * @param namespace null for the default prefix; may not contain {@code :} or glob characters, so its
+     *                  keys match exactly one pattern
+     */
+    public static String prefix(String namespace) {
+        if (namespace == null) {
+            return DEFAULT_PREFIX;
+        }
+        if (RESERVED.stream().noneMatch(family -> isReserved(namespace, family)) && !isUserNamespace(namespace)) {
+            throw new IllegalArgumentException("Invalid namespace '" + namespace + "'");
+        }
+        return NAMESPACE_ROOT + namespace + ":";
+    }
+
+    /**
+     * @param namespace of the limiter being shadowed, null for the default prefix
+     * @return the reserved namespace for the candidate shadowing it
+     */
+    public static String shadow(String namespace) {
+        return reserved(SHADOW, namespace);
+    }
+
+    /**
+     * @param namespace of the limiters warming up, null for the default prefix
+     * @return the reserved namespace for the start of their limiter-wide warm-ups
+     */
+    public static String warmUp(String namespace) {
+        return reserved(WARM_UP, namespace);
+    }
+
+    /**
+     * @param namespace of the {@link CountMinSketchRateLimiter}, null for the default prefix
+     * @return the reserved namespace of its per-window sketches
+     */
+    public static String sketch(String namespace) {
+        return reserved(SKETCH, namespace);
+    }
+
+    /**
+     * @param namespace of the {@link AdaptiveRateLimiter}, null for the default prefix
+     * @return the reserved namespace of the rates its nodes share
+     */
+    public static String adaptive(String namespace) {
+        return reserved(ADAPTIVE, namespace);
+    }
+
+    /**
+     * @param namespace of the {@link GlobalQuotaRateLimiter}, null for the default prefix
+     * @return the reserved namespace of the node registry and demand of its quotas
+     */
+    public static String quota(String namespace) {
+        return reserved(QUOTA, namespace);
+    }
+
+    /**
+     * @return the SCAN pattern matching every key of the namespace
+     */
+    public static String pattern(String namespace) {
+        return prefix(namespace) + "*";
+    }
+
+    /**
+     * @return the namespace of a key, null if it is not in one
+     */
+    public static String namespaceOf(String key) {
+        if (!key.startsWith(NAMESPACE_ROOT)) {
+            return null;
+        }
+        int end = key.indexOf(':', NAMESPACE_ROOT.length());
+        return end < 0 ? null : key.substring(NAMESPACE_ROOT.length(), end);
+    }
+
+    private static String reserved(String family, String namespace) {
+        if (namespace == null) {
+            return family;
+        }
+        if (!isUserNamespace(namespace)) {
+            throw new IllegalArgumentException("Invalid namespace '" + namespace + "'");
+        }
+        return family + "." + namespace;
+    }
+
+    private static boolean isReserved(String namespace, String family) {
+        return namespace.equals(family)
+                || namespace.startsWith(family + ".") && isUserNamespace(namespace.substring(family.length() + 1));
+    }
+
+    private static boolean isUserNamespace(String namespace) {
+        return !namespace.isEmpty() && !namespace.startsWith("~")
+                && namespace.chars().noneMatch(c -> ":*?[]\\".indexOf(c) >= 0);
+    }
+}
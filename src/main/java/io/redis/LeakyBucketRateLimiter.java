@@ -1,52 +1,62 @@
 package io.redis;
 
+import io.redis.store.JedisStateStore;
+import io.redis.store.StateStore;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
-
-public class LeakyBucketRateLimiter {
-    private final Jedis jedis;
-    private final int bucketCapacity; // Maximum requests the bucket can hold
-    private final double leakRate;   // Requests leaked per second
 
+/**
+ * Leaky bucket with its state in two keys per client: the requests in the bucket and the time of the
+ * last leak, in microseconds. The leak time only moves forward by the time the leaked requests took
+ * to drain, so callers polling faster than one leak interval still get the configured rate.
+ * <p>
+ * The state lives in any {@link StateStore}, and every decision is one atomic update of it, whichever
+ * store that is. Batches of decisions can still be read and written in bulk through {@link PipelinedDecisions}.
+ * Requests reserved through {@link #acquire} beyond the capacity stay in the bucket until they leak out.
+ */
+public class LeakyBucketRateLimiter extends BucketRateLimiter {
+
+    /**
+     * @param bucketCapacity maximum requests the bucket can hold
+     * @param leakRate       requests leaked per second
+     */
     public LeakyBucketRateLimiter(Jedis jedis, int bucketCapacity, double leakRate) {
-        this.jedis = jedis;
-        this.bucketCapacity = bucketCapacity;
-        this.leakRate = leakRate;
+        this(jedis, bucketCapacity, leakRate, BucketOptions.DEFAULT);
     }
 
-    public boolean isAllowed(String clientId) {
-        String keyCount = "rate_limit:" + clientId + ":count";
-        String keyLastLeak = "rate_limit:" + clientId + ":lastLeak";
-
-        long currentTime = System.currentTimeMillis();
+    public LeakyBucketRateLimiter(Jedis jedis, int bucketCapacity, double leakRate, BucketOptions options) {
+        this(new JedisStateStore(jedis), bucketCapacity, leakRate, options);
+    }
 
-        // Fetch current state
-        Transaction transaction = jedis.multi();
-        transaction.get(keyLastLeak);
-        transaction.get(keyCount);
-        var results = transaction.exec();
+    public LeakyBucketRateLimiter(StateStore store, int bucketCapacity, double leakRate) {
+        this(store, bucketCapacity, leakRate, BucketOptions.DEFAULT);
+    }
 
-        long lastLeakTime = results.get(0) != null ? Long.parseLong((String) results.get(0)) : currentTime;
-        int requestCount = results.get(1) != null ? Integer.parseInt((String) results.get(1)) : 0;
+    public LeakyBucketRateLimiter(StateStore store, int bucketCapacity, double leakRate, BucketOptions options) {
+        super(store, bucketCapacity, leakRate, options, ":lastLeak");
+    }
 
-        // Leak requests
-        long elapsedTimeMs = currentTime - lastLeakTime;
-        double elapsedTimeSecs = elapsedTimeMs / 1000.0;
-        int requestsToLeak = (int) (elapsedTimeSecs * leakRate);
-        requestCount = Math.max(0, requestCount - requestsToLeak);
+    int initialCount(int capacity) {
+        return 0;
+    }
 
-        // Check if the request is allowed
-        boolean isAllowed = requestCount < bucketCapacity;
-        if (isAllowed) {
-            requestCount++; // Add the new request
+    Bucket advance(int requestCount, long lastLeak, int capacity, double leakRate, long currentTime) {
+        // Leak whole requests only, and move the leak time forward by exactly what they took to drain
+        // so the fraction of the next request carries over to the next call instead of being thrown away
+        long elapsedTimeMicros = Math.max(0, currentTime - lastLeak);
+        long requestsToLeak = (long) (elapsedTimeMicros * leakRate / 1_000_000);
+        if (requestsToLeak >= requestCount) {
+            // An empty bucket does not bank time
+            return new Bucket(0, currentTime, capacity, leakRate);
         }
+        long leakTimeMicros = Math.round(requestsToLeak * 1_000_000 / leakRate);
+        return new Bucket(requestCount - (int) requestsToLeak, lastLeak + leakTimeMicros, capacity, leakRate);
+    }
 
-        // Update Redis state
-        transaction = jedis.multi();
-        transaction.set(keyLastLeak, String.valueOf(currentTime));
-        transaction.set(keyCount, String.valueOf(requestCount));
-        transaction.exec();
+    int available(Bucket bucket, int requestCount) {
+        return bucket.capacity() - requestCount;
+    }
 
-        return isAllowed;
+    int take(int requestCount) {
+        return requestCount + 1; // Add the new request
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,46 @@
+package io.redis;
+
+/**
+ * A single in-process token bucket. Tokens are kept as a double so that no refill is lost between
+ * calls, which matters when the bucket is consulted far more often than once per token.
+ */
+class LocalTokenBucket {
+    private double capacity;
+    private double refillRate; // Tokens refilled per second
+    private double tokens;
+    private long lastRefill;
+
+    LocalTokenBucket(double capacity, double refillRate, long currentTime) {
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.tokens = capacity;
+        this.lastRefill = currentTime;
+    }
+
+    synchronized boolean tryConsume(long currentTime) {
+        refill(currentTime);
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    synchronized boolean isFull(long currentTime) {
+        refill(currentTime);
+        return tokens >= capacity;
+    }
+
+    synchronized void reconfigure(double capacity, double refillRate, long currentTime) {
+        refill(currentTime);
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    private void refill(long currentTime) {
+        long elapsedTimeMs = Math.max(0, currentTime - lastRefill);
+        tokens = Math.min(capacity, tokens + elapsedTimeMs / 1000.0 * refillRate);
+        lastRefill = currentTime;
+    }
+}
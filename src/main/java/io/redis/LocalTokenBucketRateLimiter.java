@@ -0,0 +1,58 @@
+package io.redis;
+
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token bucket kept entirely in process memory. It does not coordinate with other nodes, so on its
+ * own it only approximates a fleet-wide limit, but it costs no network round trip and keeps working
+ * when Redis does not. Meant as the fallback of {@link ResilientRateLimiter}.
+ * <p>
+ * At most {@code maxClients} buckets are kept; beyond that the least recently used one is forgotten,
+ * so a client idle for long enough starts over with a full bucket.
+ */
+public class LocalTokenBucketRateLimiter implements RateLimiter {
+    private static final int DEFAULT_MAX_CLIENTS = 100_000;
+
+    private final Map<String, LocalTokenBucket> buckets;
+    private final int bucketCapacity;
+    private final double refillRate;
+    private final Clock clock;
+
+    public LocalTokenBucketRateLimiter(int bucketCapacity, double refillRate) {
+        this(bucketCapacity, refillRate, DEFAULT_MAX_CLIENTS);
+    }
+
+    public LocalTokenBucketRateLimiter(int bucketCapacity, double refillRate, int maxClients) {
+        this(bucketCapacity, refillRate, maxClients, Clock.systemUTC());
+    }
+
+    public LocalTokenBucketRateLimiter(int bucketCapacity, double refillRate, int maxClients, Clock clock) {
+        this.bucketCapacity = bucketCapacity;
+        this.refillRate = refillRate;
+        this.clock = clock;
+        // Access ordered, so the eldest entry is the least recently used client
+        this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalTokenBucket> eldest) {
+                return size() > maxClients;
+            }
+        };
+    }
+
+    public boolean isAllowed(String clientId) {
+        long currentTime = clock.millis();
+        LocalTokenBucket bucket;
+        synchronized (buckets) {
+            bucket = buckets.computeIfAbsent(clientId, id -> new LocalTokenBucket(bucketCapacity, refillRate, currentTime));
+        }
+        return bucket.tryConsume(currentTime);
+    }
+
+    int size() {
+        synchronized (buckets) {
+            return buckets.size();
+        }
+    }
+}
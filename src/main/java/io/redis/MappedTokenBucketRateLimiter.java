@@ -0,0 +1,211 @@
+package io.redis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+
+/**
+ * Token bucket kept in process like {@link LocalTokenBucketRateLimiter}, but in a memory-mapped file,
+ * so quotas survive restarts: a client that emptied its bucket before a deploy still finds it empty
+ * afterwards. The file is a fixed-size open-addressing table of primitive slots keyed by a 64-bit
+ * hash of the client ID, so the heap holds no per-client objects, and deciding allocates nothing as long
+ * as the clock's {@link Clock#millis()} does not, as with the system clock.
+ * <p>
+ * Slot layout, 32 bytes: client hash (0 marks a free slot), last refill in microseconds (of millisecond
+ * resolution), tokens as a double. Two clients whose hashes collide share a bucket. When no free slot is within reach of a
+ * new client, it takes over the nearby bucket closest to full, which forgets the least.
+ * <p>
+ * Writes reach the OS page cache immediately, so the state survives the process; {@link #close()}
+ * also flushes it to disk. The slot locks only work within one process, so the file is locked
+ * exclusively while open and a second limiter, in this process or another, fails to open it.
+ */
+public class MappedTokenBucketRateLimiter implements RateLimiter, AutoCloseable {
+    private static final long MAGIC = 0x524c_4d41_5042_4b54L; // "RLMAPBKT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int SLOT_SIZE = 32;
+    private static final int KEY_OFFSET = 0;
+    private static final int LAST_REFILL_OFFSET = 8;
+    private static final int TOKENS_OFFSET = 16;
+    private static final long EMPTY = 0;
+    private static final int MAX_PROBES = 16;
+    private static final int LOCK_STRIPES = 256;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final int mask;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final Object insertLock = new Object();
+    private final int bucketCapacity;
+    private final double refillRate; // Tokens refilled per second
+    private final Clock clock;
+
+    public MappedTokenBucketRateLimiter(Path file, int slots, int bucketCapacity, double refillRate) {
+        this(file, slots, bucketCapacity, refillRate, Clock.systemUTC());
+    }
+
+    /**
+     * @param file  created if missing, otherwise reopened with the state it holds
+     * @param slots clients the table can hold, rounded up to a power of two; must match the file's
+     */
+    public MappedTokenBucketRateLimiter(Path file, int slots, int bucketCapacity, double refillRate, Clock clock) {
+        if (slots < 1 || slots > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("slots must be between 1 and " + (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE);
+        }
+        int slotCount = slots == 1 ? 1 : Integer.highestOneBit(slots - 1) << 1;
+        this.mask = slotCount - 1;
+        this.bucketCapacity = bucketCapacity;
+        this.refillRate = refillRate;
+        this.clock = clock;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+
+        int size = HEADER_SIZE + slotCount * SLOT_SIZE;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock(file);
+            long existingSize = channel.size();
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (existingSize == 0) {
+                // New files read as zeros, which is an empty table
+                table.putLong(0, MAGIC);
+                table.putInt(8, VERSION);
+                table.putInt(12, slotCount);
+            } else if (table.getLong(0) != MAGIC || table.getInt(8) != VERSION) {
+                channel.close();
+                throw new IllegalStateException(file + " is not a bucket table");
+            } else if (table.getInt(12) != slotCount) {
+                channel.close();
+                throw new IllegalStateException(file + " was created with " + table.getInt(12) + " slots, not " + slotCount);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + file, e);
+        }
+    }
+
+    public boolean isAllowed(String clientId) {
+        long hash = Hashing.hash64(clientId);
+        long key = hash != EMPTY ? hash : 1;
+        long currentTime = clock.millis() * 1000; // Unlike instant(), millis() allocates nothing
+        int home = (int) hash & mask;
+
+        while (true) {
+            for (int probe = 0; probe < MAX_PROBES && probe <= mask; probe++) {
+                int slot = (home + probe) & mask;
+                synchronized (lockFor(slot)) {
+                    long slotKey = table.getLong(offset(slot) + KEY_OFFSET);
+                    if (slotKey == key) {
+                        return tryConsume(slot, currentTime);
+                    }
+                    if (slotKey == EMPTY) {
+                        break;
+                    }
+                }
+            }
+
+            int slot = claim(key, home, currentTime);
+            synchronized (lockFor(slot)) {
+                if (table.getLong(offset(slot) + KEY_OFFSET) == key) {
+                    return tryConsume(slot, currentTime);
+                }
+            }
+            // Another new client took the slot over in between, look again
+        }
+    }
+
+    /**
+     * Flushes the table to disk and releases the file. The mapping itself is released by the GC.
+     */
+    @Override
+    public void close() throws IOException {
+        table.force();
+        channel.close();
+    }
+
+    // Held until the channel is closed
+    private void lock(Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IllegalStateException(file + " is already open in another limiter");
+        }
+    }
+
+    // Inserts are serialised so the same client cannot be inserted twice in different slots
+    private int claim(long key, int home, long currentTime) {
+        synchronized (insertLock) {
+            int candidate = -1;
+            double candidateTokens = -1;
+            for (int probe = 0; probe < MAX_PROBES && probe <= mask; probe++) {
+                int slot = (home + probe) & mask;
+                synchronized (lockFor(slot)) {
+                    long slotKey = table.getLong(offset(slot) + KEY_OFFSET);
+                    if (slotKey == key) {
+                        return slot;
+                    }
+                    if (slotKey == EMPTY) {
+                        initialize(slot, key, currentTime);
+                        return slot;
+                    }
+                    double tokens = refilledTokens(slot, currentTime);
+                    if (tokens > candidateTokens) {
+                        candidate = slot;
+                        candidateTokens = tokens;
+                    }
+                }
+            }
+
+            // No free slot within reach, take over the bucket closest to full
+            synchronized (lockFor(candidate)) {
+                initialize(candidate, key, currentTime);
+            }
+            return candidate;
+        }
+    }
+
+    private void initialize(int slot, long key, long currentTime) {
+        int offset = offset(slot);
+        table.putLong(offset + LAST_REFILL_OFFSET, currentTime);
+        table.putDouble(offset + TOKENS_OFFSET, bucketCapacity);
+        table.putLong(offset + KEY_OFFSET, key);
+    }
+
+    private boolean tryConsume(int slot, long currentTime) {
+        int offset = offset(slot);
+        double tokens = refilledTokens(slot, currentTime);
+        table.putLong(offset + LAST_REFILL_OFFSET, Math.max(currentTime, table.getLong(offset + LAST_REFILL_OFFSET)));
+        if (tokens < 1) {
+            table.putDouble(offset + TOKENS_OFFSET, tokens);
+            return false;
+        }
+        table.putDouble(offset + TOKENS_OFFSET, tokens - 1);
+        return true;
+    }
+
+    private double refilledTokens(int slot, long currentTime) {
+        int offset = offset(slot);
+        long elapsedTimeMicros = Math.max(0, currentTime - table.getLong(offset + LAST_REFILL_OFFSET));
+        // Capacity may have been lowered since the file was written
+        return Math.min(bucketCapacity, table.getDouble(offset + TOKENS_OFFSET) + elapsedTimeMicros / 1e6 * refillRate);
+    }
+
+    private Object lockFor(int slot) {
+        return locks[slot & (LOCK_STRIPES - 1)];
+    }
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+}
@@ -0,0 +1,107 @@
+package io.redis;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Transaction;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides a batch of requests in two round trips, however many clients and limiters it spans: one
+ * pipeline WATCHes every key of the batch and reads every client's state, decisions are made in memory
+ * in request order, and one transaction writes back the states that changed (none, if nothing did).
+ * Redis aborts that transaction if any other client wrote one of the keys after the WATCH, and the
+ * whole batch is then decided again on the fresh state, so limiters writing absolute values never lose
+ * another writer's update. Requests of the same client for the same limiter are decided one after the
+ * other on a single read, so a batch never admits more than the limit.
+ */
+public final class PipelinedDecisions {
+
+    public record Request(PipelinedRateLimiter limiter, String clientId) {
+    }
+
+    private static final int MAX_ATTEMPTS = 100;
+
+    private PipelinedDecisions() {
+    }
+
+    /**
+     * Decides a single request as a batch of one.
+     */
+    public static PipelinedRateLimiter.Decision decide(Jedis jedis, PipelinedRateLimiter limiter, String clientId) {
+        return decideAll(jedis, List.of(new Request(limiter, clientId)))[0];
+    }
+
+    public static boolean[] decide(Jedis jedis, List<Request> requests) {
+        PipelinedRateLimiter.Decision[] decisions = decideAll(jedis, requests);
+        boolean[] allowed = new boolean[decisions.length];
+        for (int i = 0; i < decisions.length; i++) {
+            allowed[i] = decisions[i].allowed();
+        }
+        return allowed;
+    }
+
+    public static PipelinedRateLimiter.Decision[] decideAll(Jedis jedis, List<Request> requests) {
+        if (requests.isEmpty()) {
+            return new PipelinedRateLimiter.Decision[0];
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (Request request : requests) {
+            keys.addAll(request.limiter().keys(request.clientId()));
+        }
+        String[] keyArray = keys.toArray(String[]::new);
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            // WATCH before the reads in the same pipeline, so the reads already see the watched state
+            Map<Request, PipelinedRateLimiter.ClientState> states = new LinkedHashMap<>();
+            Pipeline reads = jedis.pipelined();
+            watch(reads, keyArray);
+            for (Request request : requests) {
+                states.computeIfAbsent(request, r -> r.limiter().read(reads, r.clientId()));
+            }
+
+            PipelinedRateLimiter.Decision[] decisions = new PipelinedRateLimiter.Decision[requests.size()];
+            try {
+                reads.sync();
+                for (int i = 0; i < decisions.length; i++) {
+                    PipelinedRateLimiter.ClientState state = states.get(requests.get(i));
+                    boolean allowed = state.tryAcquire();
+                    decisions[i] = new PipelinedRateLimiter.Decision(allowed, state.remaining());
+                }
+            } catch (RuntimeException e) {
+                jedis.unwatch();
+                throw e;
+            }
+
+            // Even with nothing to write, EXEC checks the WATCH, so the batch never stands on reads
+            // that another client's write tore apart
+            Transaction writes = jedis.multi();
+            for (PipelinedRateLimiter.ClientState state : states.values()) {
+                if (state.isModified()) {
+                    state.write(writes);
+                }
+            }
+            if (writes.exec() != null) {
+                states.values().forEach(PipelinedRateLimiter.ClientState::committed);
+                return decisions;
+            }
+            // Another client changed a state after our read, decide the whole batch again on fresh values
+        }
+        throw new IllegalStateException("Gave up deciding a batch of " + requests.size() + " after " + MAX_ATTEMPTS
+                + " conflicts");
+    }
+
+    private static void watch(PipeliningBase pipeline, String[] keys) {
+        pipeline.executeCommand(new CommandObject<>(
+                new CommandArguments(Protocol.Command.WATCH).keys((Object[]) keys), BuilderFactory.STRING));
+    }
+}
@@ -0,0 +1,69 @@
+package io.redis;
+
+import redis.clients.jedis.PipeliningBase;
+
+import java.util.List;
+
+/**
+ * A limiter whose decision is split into phases that can be queued on a shared transaction: the state
+ * of a client is read in one round trip with its {@link #keys} WATCHed, decided on in memory and
+ * written back in a second one, which Redis aborts if another client wrote the keys meanwhile.
+ * Decisions for many clients, or by several limiters, then share those two round trips, see
+ * {@link PipelinedDecisions}.
+ * <p>
+ * The phases always address Redis through the given transaction, whatever
+ * {@link io.redis.store.StateStore} the limiter was built on; limiters on other stores are decided
+ * through {@link #decide(String)}.
+ */
+public interface PipelinedRateLimiter extends RateLimiter {
+
+    /**
+     * @param remaining requests the client could still make right after this decision
+     */
+    record Decision(boolean allowed, long remaining) {
+    }
+
+    /**
+     * Decides like {@link #isAllowed(String)}, also reporting what is left for the client.
+     */
+    Decision decide(String clientId);
+
+    /**
+     * @return every key {@link #read} and {@link ClientState#write} touch for the client, so they can
+     * be WATCHed while the decision is made
+     */
+    List<String> keys(String clientId);
+
+    /**
+     * Queues the reads of the client's state, and nothing that writes. The returned state can only be used once the
+     * transaction was executed.
+     */
+    ClientState read(PipeliningBase transaction, String clientId);
+
+    /**
+     * The state of one client as read from Redis, updated in memory by every decision.
+     */
+    interface ClientState {
+
+        boolean tryAcquire();
+
+        /**
+         * @return requests the client could still make, after the decisions so far
+         */
+        long remaining();
+
+        /**
+         * @return whether the decisions so far changed anything that needs to be written back
+         */
+        boolean isModified();
+
+        void write(PipeliningBase transaction);
+
+        /**
+         * Called once the decisions made on this state took effect. A state whose write was aborted
+         * by a conflict is dropped without it and the decisions are made again on a fresh read.
+         */
+        default void committed() {
+        }
+    }
+}
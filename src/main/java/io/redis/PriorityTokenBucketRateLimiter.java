@@ -0,0 +1,66 @@
+package io.redis;
+
+/**
+ * Shares one token bucket per client between priority classes, 0 being the highest, so that under
+ * overload the lowest classes are shed first instead of everyone competing for the same tokens. Every
+ * class reserves a fraction of the bucket capacity; a class may only take tokens above the reserves
+ * of the classes before it, while the highest class may drain the bucket.
+ * <p>
+ * With reserves of 0.5 for interactive and 0.5 for batch traffic on a bucket of 100, batch requests
+ * are denied once 50 tokens are left, and interactive requests get those 50 to themselves.
+ * <p>
+ * The reserve check and the token consumption are one atomic update of the bucket's state, so
+ * concurrent callers of different classes cannot take the same token. Reserves are shares of the
+ * capacity in effect at that moment, so while the bucket is in a {@link WarmUp} they shrink with it
+ * and every class keeps its share.
+ */
+public class PriorityTokenBucketRateLimiter {
+
+    private final TokenBucketRateLimiter bucket;
+    private final double[] reservedShares; // Share of the capacity a class has to leave in the bucket
+
+    /**
+     * @param reservedFractions share of the bucket capacity reserved for each class, in priority order;
+     *                          together at most 1
+     */
+    public PriorityTokenBucketRateLimiter(TokenBucketRateLimiter bucket, double... reservedFractions) {
+        if (reservedFractions.length == 0) {
+            throw new IllegalArgumentException("At least one priority class is required");
+        }
+        this.bucket = bucket;
+        this.reservedShares = new double[reservedFractions.length];
+
+        double reservedAbove = 0;
+        for (int priority = 0; priority < reservedFractions.length; priority++) {
+            if (reservedFractions[priority] < 0) {
+                throw new IllegalArgumentException("Reserved fractions cannot be negative");
+            }
+            reservedShares[priority] = reservedAbove;
+            reservedAbove += reservedFractions[priority];
+        }
+        if (reservedAbove > 1 + 1e-9) {
+            throw new IllegalArgumentException("Reserved fractions add up to more than the bucket");
+        }
+    }
+
+    public boolean isAllowed(String clientId, int priority) {
+        return decide(clientId, priority).allowed();
+    }
+
+    /**
+     * @return the decision, with the tokens still available to this class as remaining
+     */
+    public PipelinedRateLimiter.Decision decide(String clientId, int priority) {
+        if (priority < 0 || priority >= reservedShares.length) {
+            throw new IllegalArgumentException("Unknown priority class " + priority);
+        }
+        return bucket.decide(clientId, reservedShares[priority]);
+    }
+
+    /**
+     * A limiter that decides every request at one priority, for callers that only know {@link RateLimiter}.
+     */
+    public RateLimiter forPriority(int priority) {
+        return clientId -> isAllowed(clientId, priority);
+    }
+}
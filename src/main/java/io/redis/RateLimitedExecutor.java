@@ -0,0 +1,172 @@
+package io.redis;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs tasks for a client no faster than the limiter allows, e.g. calls to a partner API. Every task
+ * takes a single {@link ReservingRateLimiter#acquire} on submission, which reserves its slot and says
+ * when that slot comes up; the task then waits on its own virtual thread and starts on time, so
+ * neither the caller nor the executor polls the limiter.
+ * <p>
+ * Reservations are made one at a time by a dispatcher thread, since the limiter's connection cannot
+ * be shared, and in submission order, so a client's tasks start in the order they were submitted.
+ * A task whose slot lies further ahead than {@code maxWait} is rejected without reserving anything,
+ * which keeps a backlog from piling up behind a slow quota.
+ */
+public class RateLimitedExecutor implements AutoCloseable {
+
+    private static final Submission<?> SHUTDOWN = new Submission<>(null, null, null);
+
+    private record Submission<T>(String clientId, Callable<T> task, CompletableFuture<T> future) {
+
+        void run() {
+            if (future.isDone()) {
+                // Cancelled while waiting, the reserved slot goes unused
+                return;
+            }
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final ReservingRateLimiter limiter;
+    private final Duration maxWait;
+    private final BlockingQueue<Submission<?>> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService tasks = Executors.newVirtualThreadPerTaskExecutor();
+    private final Thread dispatcher;
+    private final AtomicLong reservations = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private boolean closed;
+
+    public RateLimitedExecutor(ReservingRateLimiter limiter) {
+        this(limiter, Duration.ofMinutes(1));
+    }
+
+    /**
+     * @param maxWait longest a task may wait for its slot before it is rejected instead
+     */
+    public RateLimitedExecutor(ReservingRateLimiter limiter, Duration maxWait) {
+        this.limiter = limiter;
+        this.maxWait = maxWait;
+        this.dispatcher = Thread.ofVirtual().name("rate-limited-executor").start(this::dispatch);
+    }
+
+    /**
+     * @return completes with the task's result once it ran, or exceptionally with a
+     * {@link RejectedExecutionException} if its slot was more than {@code maxWait} away
+     */
+    public synchronized <T> CompletableFuture<T> submit(String clientId, Callable<T> task) {
+        if (closed) {
+            throw new RejectedExecutionException("Executor is closed");
+        }
+        CompletableFuture<T> future = new CompletableFuture<>();
+        queue.add(new Submission<>(clientId, task, future));
+        return future;
+    }
+
+    public CompletableFuture<Void> execute(String clientId, Runnable task) {
+        return submit(clientId, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * An {@link Executor} for one client, e.g. for {@link CompletableFuture#runAsync(Runnable, Executor)}.
+     */
+    public Executor forClient(String clientId) {
+        return task -> execute(clientId, task);
+    }
+
+    /**
+     * @return calls made to the limiter, one per submitted task
+     */
+    public long getReservations() {
+        return reservations.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops accepting tasks and waits until the submitted ones have run or were rejected.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(SHUTDOWN);
+        }
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tasks.close();
+    }
+
+    private void dispatch() {
+        while (true) {
+            Submission<?> submission;
+            try {
+                submission = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (submission == SHUTDOWN) {
+                return;
+            }
+            if (submission.future().isDone()) {
+                // Cancelled before its turn, no need to reserve anything
+                continue;
+            }
+
+            Optional<Duration> wait;
+            try {
+                wait = limiter.acquire(submission.clientId(), maxWait);
+                reservations.incrementAndGet();
+            } catch (RuntimeException e) {
+                submission.future().completeExceptionally(e);
+                continue;
+            }
+            if (wait.isEmpty()) {
+                rejected.incrementAndGet();
+                submission.future().completeExceptionally(new RejectedExecutionException(
+                        "No capacity for " + submission.clientId() + " within " + maxWait));
+                continue;
+            }
+
+            // The wait counts from the reservation, so measure it from now rather than when the thread starts
+            long startAt = System.nanoTime() + wait.get().toNanos();
+            tasks.execute(() -> {
+                long delay = startAt - System.nanoTime();
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(Duration.ofNanos(delay));
+                    } catch (InterruptedException e) {
+                        submission.future().completeExceptionally(e);
+                        return;
+                    }
+                }
+                submission.run();
+            });
+        }
+    }
+}
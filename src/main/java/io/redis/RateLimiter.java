@@ -0,0 +1,11 @@
+package io.redis;
+
+/**
+ * Common contract of the rate limiting algorithms, so they can be wrapped and swapped without the
+ * caller knowing which one sits behind it.
+ */
+@FunctionalInterface
+public interface RateLimiter {
+
+    boolean isAllowed(String clientId);
+}
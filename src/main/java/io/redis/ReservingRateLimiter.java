@@ -0,0 +1,19 @@
+package io.redis;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * A limiter that can reserve capacity ahead of time instead of only answering yes or no, so callers
+ * wait exactly as long as the limiter says rather than polling {@link #isAllowed(String)}.
+ */
+public interface ReservingRateLimiter extends RateLimiter {
+
+    /**
+     * Reserves capacity for one request of the client.
+     *
+     * @return the time to wait before using the reservation, or empty if the wait would exceed the
+     * timeout, in which case nothing is reserved
+     */
+    Optional<Duration> acquire(String clientId, Duration timeout);
+}
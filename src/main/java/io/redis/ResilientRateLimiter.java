@@ -0,0 +1,62 @@
+package io.redis;
+
+import java.time.Duration;
+
+/**
+ * Keeps a Redis hiccup from turning into an outage of the request path. Decisions go to the Redis
+ * backed delegate while it is healthy; failed calls and calls slower than the latency budget trip the
+ * circuit breaker, and while it is open every decision is made by the fallback instead. Once the
+ * breaker lets a trial call succeed, traffic returns to Redis.
+ * <p>
+ * The latency budget only classifies calls, it cannot interrupt them. To bound how long a single
+ * call may block, give the delegate's {@code Jedis} a socket timeout close to the budget, e.g.
+ * {@code new Jedis(host, port, (int) budget.toMillis())}; a timed out call then fails fast and falls
+ * back like any other Redis error.
+ */
+public class ResilientRateLimiter implements RateLimiter {
+
+    // Static policies for when even an approximate decision is not wanted
+    public static final RateLimiter FAIL_OPEN = clientId -> true;
+    public static final RateLimiter FAIL_CLOSED = clientId -> false;
+
+    private final RateLimiter delegate;
+    private final RateLimiter fallback;
+    private final CircuitBreaker circuitBreaker;
+    private final long latencyBudgetNanos;
+
+    public ResilientRateLimiter(RateLimiter delegate, RateLimiter fallback, CircuitBreaker circuitBreaker,
+                                Duration latencyBudget) {
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.circuitBreaker = circuitBreaker;
+        this.latencyBudgetNanos = latencyBudget.toNanos();
+    }
+
+    public boolean isAllowed(String clientId) {
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return fallback.isAllowed(clientId);
+        }
+
+        long start = System.nanoTime();
+        boolean isAllowed;
+        try {
+            isAllowed = delegate.isAllowed(clientId);
+        } catch (RuntimeException e) {
+            // Any failure counts, a half-open breaker has to hear back from its trial call
+            circuitBreaker.onFailure();
+            return fallback.isAllowed(clientId);
+        }
+
+        // A slow answer is still an answer, but enough of them in a row mean Redis is not healthy
+        if (System.nanoTime() - start > latencyBudgetNanos) {
+            circuitBreaker.onFailure();
+        } else {
+            circuitBreaker.onSuccess();
+        }
+        return isAllowed;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
+    }
+}
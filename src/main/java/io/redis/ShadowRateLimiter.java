@@ -0,0 +1,165 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.PipeliningBase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Dry-runs a candidate limiter next to the one in force, to see how decisions would change before
+ * switching. Both read their state in the same round trip, under one WATCH of both limiters' keys, and
+ * write it back in the same transaction, so the primary stays exact under concurrency and the candidate
+ * adds commands but no round trips. Only the primary's decision is returned; the candidate's is
+ * compared to it and counted once the decision took effect.
+ * <p>
+ * The candidate is built in the reserved namespace {@link KeyNamespace#shadow(String)}, so it never
+ * touches the primary's keys, even when both algorithms would use the same key with a different type,
+ * and no client ID or user namespace can reach its state. Both limiters must be built on the same Redis
+ * as the {@code jedis} given here.
+ */
+public class ShadowRateLimiter implements PipelinedRateLimiter {
+
+    private final Jedis jedis;
+    private final PipelinedRateLimiter primary;
+    private final PipelinedRateLimiter candidate;
+
+    private final LongAdder bothAllowed = new LongAdder();
+    private final LongAdder bothDenied = new LongAdder();
+    private final LongAdder onlyPrimaryAllowed = new LongAdder();
+    private final LongAdder onlyCandidateAllowed = new LongAdder();
+    private final LongAdder candidateErrors = new LongAdder();
+
+    /**
+     * @param bothAllowed          decisions both limiters allowed
+     * @param bothDenied           decisions both limiters denied
+     * @param onlyPrimaryAllowed   requests the candidate would have denied
+     * @param onlyCandidateAllowed requests the candidate would have let through
+     * @param candidateErrors      decisions the candidate failed to make, not counted above
+     */
+    public record Stats(long bothAllowed, long bothDenied, long onlyPrimaryAllowed, long onlyCandidateAllowed,
+                        long candidateErrors) {
+
+        public long compared() {
+            return bothAllowed + bothDenied + onlyPrimaryAllowed + onlyCandidateAllowed;
+        }
+
+        public double agreementRate() {
+            return compared() == 0 ? 1 : (double) (bothAllowed + bothDenied) / compared();
+        }
+    }
+
+    /**
+     * @param candidate builds the candidate in the namespace it is given, e.g.
+     *                  {@code namespace -> new FixedWindowRateLimiter(jedis, 60, 10, namespace)}
+     */
+    public ShadowRateLimiter(Jedis jedis, PipelinedRateLimiter primary,
+                             Function<String, PipelinedRateLimiter> candidate) {
+        this(jedis, primary, null, candidate);
+    }
+
+    /**
+     * @param namespace the primary's namespace, so shadows of different namespaces stay apart
+     */
+    public ShadowRateLimiter(Jedis jedis, PipelinedRateLimiter primary, String namespace,
+                             Function<String, PipelinedRateLimiter> candidate) {
+        this.jedis = jedis;
+        this.primary = primary;
+        this.candidate = candidate.apply(KeyNamespace.shadow(namespace));
+    }
+
+    public boolean isAllowed(String clientId) {
+        return decide(clientId).allowed();
+    }
+
+    public Decision decide(String clientId) {
+        return PipelinedDecisions.decide(jedis, this, clientId);
+    }
+
+    public List<String> keys(String clientId) {
+        List<String> keys = new ArrayList<>(primary.keys(clientId));
+        keys.addAll(candidate.keys(clientId));
+        return keys;
+    }
+
+    public ClientState read(PipeliningBase transaction, String clientId) {
+        ClientState primaryState = primary.read(transaction, clientId);
+        ClientState candidateState = candidate.read(transaction, clientId);
+
+        return new ClientState() {
+            private boolean candidateFailed;
+            // Added to the stats once the decisions took effect, so a decision made again after a
+            // conflict is only counted once
+            private long allowedByBoth;
+            private long deniedByBoth;
+            private long allowedByPrimaryOnly;
+            private long allowedByCandidateOnly;
+            private long errors;
+
+            public boolean tryAcquire() {
+                boolean isAllowed = primaryState.tryAcquire();
+                if (candidateFailed) {
+                    errors++;
+                    return isAllowed;
+                }
+
+                boolean wouldAllow;
+                try {
+                    wouldAllow = candidateState.tryAcquire();
+                } catch (RuntimeException e) {
+                    // The candidate is only observed, its failures must not affect enforcement
+                    candidateFailed = true;
+                    errors++;
+                    return isAllowed;
+                }
+
+                if (isAllowed && wouldAllow) {
+                    allowedByBoth++;
+                } else if (isAllowed) {
+                    allowedByPrimaryOnly++;
+                } else if (wouldAllow) {
+                    allowedByCandidateOnly++;
+                } else {
+                    deniedByBoth++;
+                }
+                return isAllowed;
+            }
+
+            public long remaining() {
+                return primaryState.remaining();
+            }
+
+            public boolean isModified() {
+                return primaryState.isModified() || !candidateFailed && candidateState.isModified();
+            }
+
+            public void write(PipeliningBase transaction) {
+                if (primaryState.isModified()) {
+                    primaryState.write(transaction);
+                }
+                if (!candidateFailed && candidateState.isModified()) {
+                    candidateState.write(transaction);
+                }
+            }
+
+            public void committed() {
+                primaryState.committed();
+                if (!candidateFailed) {
+                    candidateState.committed();
+                }
+                bothAllowed.add(allowedByBoth);
+                bothDenied.add(deniedByBoth);
+                onlyPrimaryAllowed.add(allowedByPrimaryOnly);
+                onlyCandidateAllowed.add(allowedByCandidateOnly);
+                candidateErrors.add(errors);
+            }
+        };
+    }
+
+    public Stats getStats() {
+        return new Stats(bothAllowed.sum(), bothDenied.sum(), onlyPrimaryAllowed.sum(), onlyCandidateAllowed.sum(),
+                candidateErrors.sum());
+    }
+}
@@ -0,0 +1,68 @@
+package io.redis;
+
+import redis.clients.jedis.Jedis;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Spreads clients over independent Redis nodes without Redis Cluster. Each node gets its own instance
+ * of the limiter, built by the factory on that node's connection, and a {@link ConsistentHashRing}
+ * routes every client to one of them. All of a client's keys therefore live on a single node, so the
+ * limiters' MULTI blocks stay single-node, and adding a node only moves about 1/n of the clients,
+ * which start over with fresh state on their new node.
+ *
+ * @param <L> limiter type, so callers can reach algorithm-specific calls such as
+ *            {@link TokenBucketRateLimiter#acquire} through {@link #limiterFor(String)}
+ */
+public class ShardedRateLimiter<L extends RateLimiter> implements RateLimiter {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final Function<Jedis, L> limiterFactory;
+    private final ConsistentHashRing<L> ring;
+
+    /**
+     * @param nodes          connections by a node ID that is stable across processes, such as
+     *                       {@code host:port}; the ID, not the connection, decides which clients land where
+     * @param limiterFactory builds the limiter for one node, e.g. {@code jedis -> new TokenBucketRateLimiter(jedis, 10, 1)}
+     */
+    public ShardedRateLimiter(Map<String, Jedis> nodes, Function<Jedis, L> limiterFactory) {
+        this(nodes, limiterFactory, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ShardedRateLimiter(Map<String, Jedis> nodes, Function<Jedis, L> limiterFactory, int virtualNodes) {
+        this.limiterFactory = limiterFactory;
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        // Not through addNode, which a subclass could override before it is initialized
+        for (Map.Entry<String, Jedis> node : nodes.entrySet()) {
+            ring.add(node.getKey(), limiterFactory.apply(node.getValue()));
+        }
+    }
+
+    public boolean isAllowed(String clientId) {
+        return limiterFor(clientId).isAllowed(clientId);
+    }
+
+    public L limiterFor(String clientId) {
+        return ring.nodeFor(clientId);
+    }
+
+    public String nodeFor(String clientId) {
+        return ring.nodeIdFor(clientId);
+    }
+
+    public void addNode(String nodeId, Jedis jedis) {
+        ring.add(nodeId, limiterFactory.apply(jedis));
+    }
+
+    /**
+     * Stops routing to the node. Its clients move to the remaining nodes; closing the connection is
+     * left to the caller.
+     */
+    public void removeNode(String nodeId) {
+        if (ring.remove(nodeId) == null) {
+            throw new IllegalArgumentException("Unknown node: " + nodeId);
+        }
+    }
+}
@@ -1,52 +1,199 @@
 package io.redis;
 
+import io.redis.store.JedisStateStore;
+import io.redis.store.StateStore;
+import io.redis.store.StateUpdate;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
-import static redis.clients.jedis.args.ExpiryOption.NX;
-
-public class SlidingWindowCounterRateLimiter {
+/**
+ * Sliding window counter with its state in one key per client: the requests admitted in each
+ * sub-window still inside the window, as comma-separated {@code <sub-window>:<count>} pairs, oldest
+ * first. Sub-windows that left the window are dropped whenever the counter is written.
+ * <p>
+ * The state lives in any {@link StateStore}, and every decision is one atomic update of it, whichever
+ * store that is. Batches of decisions can still be read and written in bulk through {@link PipelinedDecisions}.
+ */
+public class SlidingWindowCounterRateLimiter implements PipelinedRateLimiter {
 
-    private final Jedis jedis;
+    private final StateStore store;
     private final int limit;
     private final long windowSize;
     private final long subWindowSize;
+    private final Clock clock;
+    private final TimeSource timeSource;
+    private final String keyPrefix;
 
     public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize) {
-        this.jedis = jedis;
+        this(jedis, limit, windowSize, subWindowSize, Clock.systemUTC());
+    }
+
+    /**
+     * @param namespace keeps the counters under {@code rate_limit_ns:<namespace>:}, see {@link KeyNamespace}
+     */
+    public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize,
+                                           String namespace) {
+        this(jedis, limit, windowSize, subWindowSize, Clock.systemUTC(), TimeSource.CLIENT, namespace);
+    }
+
+    public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, Clock clock) {
+        this(jedis, limit, windowSize, subWindowSize, clock, TimeSource.CLIENT);
+    }
+
+    /**
+     * @param timeSource {@link TimeSource#REDIS} picks sub-windows by the Redis server's clock instead of {@code clock}
+     */
+    public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize,
+                                           TimeSource timeSource) {
+        this(jedis, limit, windowSize, subWindowSize, Clock.systemUTC(), timeSource);
+    }
+
+    public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, Clock clock,
+                                           TimeSource timeSource) {
+        this(jedis, limit, windowSize, subWindowSize, clock, timeSource, null);
+    }
+
+    public SlidingWindowCounterRateLimiter(Jedis jedis, int limit, long windowSize, long subWindowSize, Clock clock,
+                                           TimeSource timeSource, String namespace) {
+        this(new JedisStateStore(jedis), limit, windowSize, subWindowSize, clock, timeSource, namespace);
+    }
+
+    public SlidingWindowCounterRateLimiter(StateStore store, int limit, long windowSize, long subWindowSize) {
+        this(store, limit, windowSize, subWindowSize, Clock.systemUTC(), TimeSource.CLIENT, null);
+    }
+
+    public SlidingWindowCounterRateLimiter(StateStore store, int limit, long windowSize, long subWindowSize,
+                                           Clock clock, TimeSource timeSource, String namespace) {
+        this.store = store;
         this.limit = limit;
         this.windowSize = windowSize;
         this.subWindowSize = subWindowSize;
+        this.clock = clock;
+        this.timeSource = timeSource;
+        this.keyPrefix = KeyNamespace.prefix(namespace);
     }
 
     public boolean isAllowed(String clientId) {
-        String key = "rate_limit:" + clientId;
-        Map<String, String> subWindowCounts = jedis.hgetAll(key);
-        long totalCount = subWindowCounts.values().stream()
-                .mapToLong(Long::parseLong)
-                .sum();
-
-        boolean isAllowed = totalCount < limit;
-
-        if (isAllowed) {
-            // Calculate the current sub-window index based on the time
-            long currentTime = System.currentTimeMillis();
-            long subWindowSizeMillis = subWindowSize * 1000;
-            long currentSubWindow = currentTime / subWindowSizeMillis;
-
-            // Start a transaction to increment the current sub-window count and set TTL
-            Transaction transaction = jedis.multi();
-            transaction.hincrBy(key, Long.toString(currentSubWindow), 1);
-            transaction.hexpire(key, windowSize, NX, String.valueOf(currentSubWindow));
-            List<Object> result = transaction.exec();
-
-            if (result == null || result.isEmpty()) {
-                throw new IllegalStateException("Empty result from Redis transaction");
+        return decide(clientId).allowed();
+    }
+
+    public Decision decide(String clientId) {
+        String key = keyPrefix + clientId;
+        StateUpdate.Timed<Decision> update = (values, currentTime) -> {
+            CounterState state = new CounterState(key, () -> values.get(0), () -> currentTime);
+            Decision decision = new Decision(state.tryAcquire(), state.remaining());
+            return state.isModified()
+                    ? new StateUpdate.Result<>(decision, List.of(state.encode()), Duration.ofSeconds(windowSize))
+                    : StateUpdate.Result.unchanged(decision);
+        };
+        if (timeSource == TimeSource.REDIS) {
+            return store.updateAtStoreTime(keys(clientId), clock, update);
+        }
+        long currentTime = ChronoUnit.MICROS.between(Instant.EPOCH, clock.instant());
+        return store.update(keys(clientId), values -> update.apply(values, currentTime));
+    }
+
+    public List<String> keys(String clientId) {
+        return List.of(keyPrefix + clientId);
+    }
+
+    public ClientState read(PipeliningBase transaction, String clientId) {
+        String key = keyPrefix + clientId;
+        LongSupplier currentTimeMicros = timeSource.queueMicros(transaction, clock);
+        return new CounterState(key, transaction.get(key)::get, currentTimeMicros);
+    }
+
+    private final class CounterState implements ClientState {
+        private final String key;
+        private final Supplier<String> counter;
+        private final LongSupplier currentTimeMicros;
+        private long currentSubWindow;
+        private Map<Long, Long> subWindowCounts; // Inside the window, oldest first
+        private long totalCount;
+        private int admitted;
+
+        CounterState(String key, Supplier<String> counter, LongSupplier currentTimeMicros) {
+            this.key = key;
+            this.counter = counter;
+            this.currentTimeMicros = currentTimeMicros;
+        }
+
+        private Map<Long, Long> subWindowCounts() {
+            if (subWindowCounts == null) {
+                // Calculate the current sub-window index based on the time
+                long currentTime = currentTimeMicros.getAsLong() / 1000;
+                long subWindowSizeMillis = subWindowSize * 1000;
+                currentSubWindow = currentTime / subWindowSizeMillis;
+
+                // Keep the sub-windows that started less than a window ago
+                subWindowCounts = new LinkedHashMap<>();
+                if (counter.get() != null) {
+                    for (String entry : counter.get().split(",")) {
+                        int separator = entry.indexOf(':');
+                        long subWindow = Long.parseLong(entry.substring(0, separator));
+                        long count = Long.parseLong(entry.substring(separator + 1));
+                        if (subWindow * subWindowSizeMillis + windowSize * 1000 > currentTime) {
+                            subWindowCounts.put(subWindow, count);
+                            totalCount += count;
+                        }
+                    }
+                }
             }
+            return subWindowCounts;
         }
 
-        return isAllowed;
+        public boolean tryAcquire() {
+            subWindowCounts();
+            boolean isAllowed = totalCount < limit;
+
+            if (isAllowed) {
+                totalCount++;
+                admitted++;
+            }
+
+            return isAllowed;
+        }
+
+        public long remaining() {
+            subWindowCounts();
+            return Math.max(0, limit - totalCount);
+        }
+
+        public boolean isModified() {
+            return admitted > 0;
+        }
+
+        public void write(PipeliningBase transaction) {
+            transaction.set(key, encode(), SetParams.setParams().px(windowSize * 1000));
+        }
+
+        // The sub-windows still inside the window, with the current one incremented by the requests admitted now
+        String encode() {
+            StringBuilder encoded = new StringBuilder();
+            boolean counted = false;
+            for (Map.Entry<Long, Long> entry : subWindowCounts().entrySet()) {
+                long count = entry.getValue();
+                if (entry.getKey() == currentSubWindow) {
+                    count += admitted;
+                    counted = true;
+                }
+                encoded.append(entry.getKey()).append(':').append(count).append(',');
+            }
+            if (!counted) {
+                encoded.append(currentSubWindow).append(':').append(admitted).append(',');
+            }
+            return encoded.substring(0, encoded.length() - 1);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,54 +1,196 @@
 package io.redis;
 
+import io.redis.store.JedisStateStore;
+import io.redis.store.StateStore;
+import io.redis.store.StateUpdate;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.PipeliningBase;
 import redis.clients.jedis.Transaction;
+import redis.clients.jedis.params.SetParams;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-
-public class SlidingWindowLogRateLimiter {
-
-    private final Jedis jedis;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Sliding window log with its state in one key per client: the times of the requests admitted in the
+ * window, in milliseconds, oldest first and comma-separated. Entries that left the window are dropped
+ * whenever the log is written, so it never holds more than {@code limit} of them; every admitted
+ * request rewrites the whole log, which suits limits up to a few hundred, the counter being the cheaper
+ * choice above that.
+ * <p>
+ * The state lives in any {@link StateStore}, and every decision is one atomic update of it, whichever
+ * store that is. Batches of decisions can still be read and written in bulk through {@link PipelinedDecisions}.
+ */
+public class SlidingWindowLogRateLimiter implements PipelinedRateLimiter {
+
+    private final Jedis jedis; // Only for isAllowedHashAlternative, null when built on a store
+    private final StateStore store;
     private final int limit;
     private final long windowSize;
+    private final Clock clock;
+    private final TimeSource timeSource;
+    private final String keyPrefix;
 
     public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize) {
+        this(jedis, limit, windowSize, Clock.systemUTC());
+    }
+
+    /**
+     * @param namespace keeps the logs under {@code rate_limit_ns:<namespace>:}, see {@link KeyNamespace}
+     */
+    public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize, String namespace) {
+        this(jedis, limit, windowSize, Clock.systemUTC(), TimeSource.CLIENT, namespace);
+    }
+
+    public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize, Clock clock) {
+        this(jedis, limit, windowSize, clock, TimeSource.CLIENT);
+    }
+
+    /**
+     * @param timeSource {@link TimeSource#REDIS} stamps and ages the log by the Redis server's clock instead of {@code clock}
+     */
+    public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize, TimeSource timeSource) {
+        this(jedis, limit, windowSize, Clock.systemUTC(), timeSource);
+    }
+
+    public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize, Clock clock, TimeSource timeSource) {
+        this(jedis, limit, windowSize, clock, timeSource, null);
+    }
+
+    public SlidingWindowLogRateLimiter(Jedis jedis, int limit, long windowSize, Clock clock, TimeSource timeSource,
+                                       String namespace) {
+        this(jedis, new JedisStateStore(jedis), limit, windowSize, clock, timeSource, namespace);
+    }
+
+    public SlidingWindowLogRateLimiter(StateStore store, int limit, long windowSize) {
+        this(store, limit, windowSize, Clock.systemUTC(), TimeSource.CLIENT, null);
+    }
+
+    public SlidingWindowLogRateLimiter(StateStore store, int limit, long windowSize, Clock clock,
+                                       TimeSource timeSource, String namespace) {
+        this(null, store, limit, windowSize, clock, timeSource, namespace);
+    }
+
+    private SlidingWindowLogRateLimiter(Jedis jedis, StateStore store, int limit, long windowSize, Clock clock,
+                                        TimeSource timeSource, String namespace) {
         this.jedis = jedis;
+        this.store = store;
         this.limit = limit;
         this.windowSize = windowSize;
+        this.clock = clock;
+        this.timeSource = timeSource;
+        this.keyPrefix = KeyNamespace.prefix(namespace);
     }
 
     public boolean isAllowed(String clientId) {
-        String key = "rate_limit:" + clientId;
+        return decide(clientId).allowed();
+    }
 
-        long currentTime = System.currentTimeMillis();
-        long windowStartTime = currentTime - windowSize * 1000;
+    public Decision decide(String clientId) {
+        String key = keyPrefix + clientId;
+        StateUpdate.Timed<Decision> update = (values, currentTime) -> {
+            LogState state = new LogState(key, () -> values.get(0), () -> currentTime);
+            Decision decision = new Decision(state.tryAcquire(), state.remaining());
+            return state.isModified()
+                    ? new StateUpdate.Result<>(decision, List.of(state.encode()), Duration.ofSeconds(windowSize))
+                    : StateUpdate.Result.unchanged(decision);
+        };
+        if (timeSource == TimeSource.REDIS) {
+            return store.updateAtStoreTime(keys(clientId), clock, update);
+        }
+        long currentTime = ChronoUnit.MICROS.between(Instant.EPOCH, clock.instant());
+        return store.update(keys(clientId), values -> update.apply(values, currentTime));
+    }
+
+    public List<String> keys(String clientId) {
+        return List.of(keyPrefix + clientId);
+    }
+
+    public ClientState read(PipeliningBase transaction, String clientId) {
+        String key = keyPrefix + clientId;
+        LongSupplier currentTimeMicros = timeSource.queueMicros(transaction, clock);
+        return new LogState(key, transaction.get(key)::get, currentTimeMicros);
+    }
 
-        Transaction transaction = jedis.multi();
-        transaction.zremrangeByScore(key, 0, windowStartTime);
-        transaction.zcard(key);
-        List<Object> result = transaction.exec();
+    private final class LogState implements ClientState {
+        private final String key;
+        private final Supplier<String> log;
+        private final LongSupplier currentTimeMicros;
+        private long currentTime;
+        private List<Long> entries; // Inside the window, oldest first
+        private int admitted;
+
+        LogState(String key, Supplier<String> log, LongSupplier currentTimeMicros) {
+            this.key = key;
+            this.log = log;
+            this.currentTimeMicros = currentTimeMicros;
+        }
 
-        if (result.isEmpty()) {
-            throw new IllegalStateException("Empty result from Redis pipeline");
+        private List<Long> entries() {
+            if (entries == null) {
+                currentTime = currentTimeMicros.getAsLong() / 1000;
+                long windowStartTime = currentTime - windowSize * 1000;
+                entries = new ArrayList<>();
+                if (log.get() != null) {
+                    for (String entry : log.get().split(",")) {
+                        long time = Long.parseLong(entry);
+                        if (time > windowStartTime) {
+                            entries.add(time);
+                        }
+                    }
+                }
+            }
+            return entries;
         }
 
-        long requestCount = (Long) result.get(1);
-        boolean isAllowed = requestCount < limit;
+        public boolean tryAcquire() {
+            boolean isAllowed = entries().size() + admitted < limit;
 
-        if (isAllowed) {
-            String uniqueMember = currentTime + "-" + UUID.randomUUID();
-            transaction = jedis.multi();
-            transaction.zadd(key, currentTime, uniqueMember);
-            transaction.expire(key, (int) windowSize);
-            transaction.exec();
+            if (isAllowed) {
+                admitted++;
+            }
+
+            return isAllowed;
         }
 
-        return isAllowed;
+        public long remaining() {
+            return Math.max(0, limit - entries().size() - admitted);
+        }
+
+        public boolean isModified() {
+            return admitted > 0;
+        }
+
+        public void write(PipeliningBase transaction) {
+            transaction.set(key, encode(), SetParams.setParams().px(windowSize * 1000));
+        }
+
+        // The entries still inside the window, then the ones admitted now
+        String encode() {
+            StringBuilder encoded = new StringBuilder();
+            for (long entry : entries()) {
+                encoded.append(entry).append(',');
+            }
+            for (int i = 0; i < admitted; i++) {
+                encoded.append(currentTime).append(',');
+            }
+            return encoded.substring(0, encoded.length() - 1);
+        }
     }
 
+    /**
+     * The log as one hash field per request, each expiring on its own with HEXPIRE. Only on limiters
+     * built on a Jedis connection.
+     */
     public boolean isAllowedHashAlternative(String clientId) {
-        String key = "rate_limit:" + clientId;
+        String key = keyPrefix + clientId;
         String fieldKey = UUID.randomUUID().toString();
 
         long requestCount = jedis.hlen(key);
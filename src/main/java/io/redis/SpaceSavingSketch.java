@@ -0,0 +1,129 @@
+package io.redis;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving top-K sketch (Metwally et al.). Keeps at most {@code capacity} counters; when a new
+ * item arrives and the sketch is full, it takes over the counter of the current minimum and inherits
+ * its count as the error bound. Any item whose true count exceeds total / capacity is guaranteed to
+ * be tracked, and counts are never underestimated.
+ * <p>
+ * Large sketches are split into stripes by item hash, each with its own lock and share of the
+ * capacity, so concurrent decisions for different clients rarely contend. An item always lands in the
+ * same stripe, so {@link #top(int)} merges the stripes without adding error; the guarantee then holds
+ * per stripe, against that stripe's traffic and capacity.
+ */
+class SpaceSavingSketch {
+
+    // Fewer counters per stripe than this would loosen the error bounds noticeably
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    record Entry(String item, long count, long error) {
+    }
+
+    private static class Counter {
+        final String item;
+        long count;
+        long error;
+
+        Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Counter> BY_COUNT =
+            Comparator.<Counter>comparingLong(counter -> counter.count).thenComparing(counter -> counter.item);
+
+    private static final Comparator<Entry> BY_COUNT_DESCENDING =
+            Comparator.comparingLong(Entry::count).thenComparing(Entry::item).reversed();
+
+    private final Stripe[] stripes;
+
+    SpaceSavingSketch(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors());
+    }
+
+    SpaceSavingSketch(int capacity, int maxStripes) {
+        int stripeCount = Math.max(1, Math.min(maxStripes, capacity / MIN_STRIPE_CAPACITY));
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            // Spread the remainder, so the stripes add up to the capacity exactly
+            stripes[i] = new Stripe(capacity / stripeCount + (i < capacity % stripeCount ? 1 : 0));
+        }
+    }
+
+    void add(String item) {
+        stripeOf(item).add(item);
+    }
+
+    List<Entry> top(int k) {
+        List<Entry> top = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            top.addAll(stripe.top(k));
+        }
+        top.sort(BY_COUNT_DESCENDING);
+        return top.size() > k ? List.copyOf(top.subList(0, k)) : top;
+    }
+
+    void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private Stripe stripeOf(String item) {
+        int hash = item.hashCode();
+        return stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)];
+    }
+
+    private static class Stripe {
+        private final int capacity;
+        private final Map<String, Counter> counters = new HashMap<>();
+        private final TreeSet<Counter> byCount = new TreeSet<>(BY_COUNT);
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void add(String item) {
+            Counter counter = counters.get(item);
+            if (counter == null) {
+                if (counters.size() < capacity) {
+                    counter = new Counter(item, 0, 0);
+                } else {
+                    Counter minimum = byCount.pollFirst();
+                    counters.remove(minimum.item);
+                    counter = new Counter(item, minimum.count, minimum.count);
+                }
+                counters.put(item, counter);
+            } else {
+                byCount.remove(counter);
+            }
+            counter.count++;
+            byCount.add(counter);
+        }
+
+        synchronized List<Entry> top(int k) {
+            List<Entry> top = new ArrayList<>(Math.min(k, counters.size()));
+            Iterator<Counter> iterator = byCount.descendingIterator();
+            while (iterator.hasNext() && top.size() < k) {
+                Counter counter = iterator.next();
+                top.add(new Entry(counter.item, counter.count, counter.error));
+            }
+            return top;
+        }
+
+        synchronized void clear() {
+            counters.clear();
+            byCount.clear();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package io.redis;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.PipeliningBase;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Where limiters get "now" from when they stamp and age their state.
+ */
+public enum TimeSource {
+
+    /**
+     * The limiter's own {@link Clock}. Nodes whose clocks are skewed disagree on refills and window
+     * boundaries for the same client.
+     */
+    CLIENT,
+
+    /**
+     * Redis TIME, queued in the transaction that reads the client's state, so every node uses the
+     * same clock at no extra round trip.
+     */
+    REDIS;
+
+    /**
+     * Queues whatever is needed to know the time of the decision in the transaction.
+     *
+     * @return the time in microseconds, only readable once the transaction was executed
+     */
+    LongSupplier queueMicros(PipeliningBase transaction, Clock clock) {
+        if (this == REDIS) {
+            Response<List<String>> time = transaction.executeCommand(
+                    new CommandObject<>(new CommandArguments(Protocol.Command.TIME), BuilderFactory.STRING_LIST));
+            return () -> toMicros(time.get());
+        }
+        long currentTime = ChronoUnit.MICROS.between(Instant.EPOCH, clock.instant());
+        return () -> currentTime;
+    }
+
+    /**
+     * @param time reply of Redis TIME: seconds and microseconds
+     */
+    static long toMicros(List<String> time) {
+        return Long.parseLong(time.get(0)) * 1_000_000 + Long.parseLong(time.get(1));
+    }
+}
@@ -1,53 +1,61 @@
 package io.redis;
 
+import io.redis.store.JedisStateStore;
+import io.redis.store.StateStore;
 import redis.clients.jedis.Jedis;
-import redis.clients.jedis.Transaction;
-
-public class TokenBucketRateLimiter {
-    private final Jedis jedis;
-    private final int bucketCapacity; // Maximum tokens the bucket can hold
-    private final double refillRate; // Tokens refilled per second
 
+/**
+ * Token bucket with its state in two keys per client: the whole tokens left and the time of the last
+ * refill, in microseconds. The refill time only moves forward by the time the added tokens took to
+ * accrue, so callers polling faster than one token interval still get the configured rate.
+ * <p>
+ * The state lives in any {@link StateStore}, and every decision is one atomic update of it, whichever
+ * store that is. Batches of decisions can still be read and written in bulk through {@link PipelinedDecisions}.
+ */
+public class TokenBucketRateLimiter extends BucketRateLimiter {
+
+    /**
+     * @param bucketCapacity maximum tokens the bucket can hold
+     * @param refillRate     tokens refilled per second
+     */
     public TokenBucketRateLimiter(Jedis jedis, int bucketCapacity, double refillRate) {
-        this.jedis = jedis;
-        this.bucketCapacity = bucketCapacity;
-        this.refillRate = refillRate;
+        this(jedis, bucketCapacity, refillRate, BucketOptions.DEFAULT);
     }
 
-    public boolean isAllowed(String clientId) {
-        String keyCount = "rate_limit:" + clientId + ":count";
-        String keyLastRefill = "rate_limit:" + clientId + ":lastRefill";
-
-        long currentTime = System.currentTimeMillis();
-
-        // Fetch current state
-        Transaction transaction = jedis.multi();
-        transaction.get(keyLastRefill);
-        transaction.get(keyCount);
-        var results = transaction.exec();
+    public TokenBucketRateLimiter(Jedis jedis, int bucketCapacity, double refillRate, BucketOptions options) {
+        this(new JedisStateStore(jedis), bucketCapacity, refillRate, options);
+    }
 
-        long lastRefillTime = results.get(0) != null ? Long.parseLong((String) results.get(0)) : currentTime;
-        int tokenCount = results.get(1) != null ? Integer.parseInt((String) results.get(1)) : bucketCapacity;
+    public TokenBucketRateLimiter(StateStore store, int bucketCapacity, double refillRate) {
+        this(store, bucketCapacity, refillRate, BucketOptions.DEFAULT);
+    }
 
-        // Refill tokens
-        long elapsedTimeMs = currentTime - lastRefillTime;
-        double elapsedTimeSecs = elapsedTimeMs / 1000.0;
-        int tokensToAdd = (int) (elapsedTimeSecs * refillRate);
-        tokenCount = Math.min(bucketCapacity, tokenCount + tokensToAdd);
+    public TokenBucketRateLimiter(StateStore store, int bucketCapacity, double refillRate, BucketOptions options) {
+        super(store, bucketCapacity, refillRate, options, ":lastRefill");
+    }
 
-        // Check if the request is allowed
-        boolean isAllowed = tokenCount > 0;
+    int initialCount(int capacity) {
+        return capacity;
+    }
 
-        if (isAllowed) {
-            tokenCount--; // Consume one token
+    Bucket advance(int tokenCount, long lastRefill, int capacity, double refillRate, long currentTime) {
+        // Refill whole tokens only, and move the refill time forward by exactly what they took to accrue
+        // so the fraction of the next token carries over to the next call instead of being thrown away
+        long elapsedTimeMicros = Math.max(0, currentTime - lastRefill);
+        long tokensToAdd = (long) (elapsedTimeMicros * refillRate / 1_000_000);
+        if (tokenCount + tokensToAdd >= capacity) {
+            // A full bucket does not bank time
+            return new Bucket(capacity, currentTime, capacity, refillRate);
         }
+        long refillTimeMicros = Math.round(tokensToAdd * 1_000_000 / refillRate);
+        return new Bucket(tokenCount + (int) tokensToAdd, lastRefill + refillTimeMicros, capacity, refillRate);
+    }
 
-        // Update Redis state
-        transaction = jedis.multi();
-        transaction.set(keyLastRefill, String.valueOf(currentTime));
-        transaction.set(keyCount, String.valueOf(tokenCount));
-        transaction.exec();
+    int available(Bucket bucket, int tokenCount) {
+        return tokenCount;
+    }
 
-        return isAllowed;
+    int take(int tokenCount) {
+        return tokenCount - 1; // Consume one token
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,91 @@
+package io.redis;
+
+import java.time.Duration;
+
+/**
+ * Slow start for the token and leaky buckets, so a fleet of fresh buckets after a deploy or a flush
+ * does not hit cold downstreams with full bursts at once. Like Guava's SmoothWarmingUp, the rate
+ * starts low and rises, but the ramp is driven by a start time kept in Redis, so every node sees the
+ * same stage of the warm-up: the effective rate and capacity grow linearly from {@code floor} times the
+ * configured values to the configured values over {@code period}.
+ * <p>
+ * The start is written the first time a bucket is used. For {@link Scope#CLIENT} it is kept under
+ * {@code <prefix><clientId>:warmUp} and expires when the warm-up is over; from then on a bucket that
+ * already exists counts as warm, and only a new bucket, or one that was deleted, starts over. For
+ * {@link Scope#LIMITER} it is kept for good under the limiter's name in the reserved namespace
+ * {@link KeyNamespace#warmUp(String)}, so limiters only share a warm-up if they share a name and a
+ * namespace; deleting the key, or flushing Redis, starts the warm-up over.
+ *
+ * @param floor   share of the configured rate and capacity to start from, between 0 (exclusive) and 1
+ * @param limiter name of the limiter for {@link Scope#LIMITER}, null for {@link Scope#CLIENT}
+ */
+public record WarmUp(Duration period, double floor, Scope scope, String limiter) {
+
+    public enum Scope {
+        /**
+         * Every client ramps up from its own first request.
+         */
+        CLIENT,
+        /**
+         * All clients ramp up together from the first request the limiter sees.
+         */
+        LIMITER
+    }
+
+    public WarmUp {
+        if (period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("Warm-up period must be positive");
+        }
+        if (floor <= 0 || floor > 1) {
+            throw new IllegalArgumentException("Warm-up floor must be in (0, 1]");
+        }
+        if ((scope == Scope.LIMITER) != (limiter != null && !limiter.isEmpty())) {
+            throw new IllegalArgumentException("A limiter name is required for, and only for, a limiter-wide warm-up");
+        }
+    }
+
+    /**
+     * A warm-up of every client on its own.
+     */
+    public WarmUp(Duration period, double floor) {
+        this(period, floor, Scope.CLIENT, null);
+    }
+
+    /**
+     * @param namespace of the limiter warming up, null for the default prefix
+     */
+    String key(String keyPrefix, String namespace, String clientId) {
+        return scope == Scope.CLIENT
+                ? keyPrefix + clientId + ":warmUp"
+                : KeyNamespace.prefix(KeyNamespace.warmUp(namespace)) + limiter;
+    }
+
+    /**
+     * @return expiry of the start, null to keep it for good
+     */
+    Duration keyTtl() {
+        return scope == Scope.CLIENT ? period : null;
+    }
+
+    /**
+     * @param start     warm-up start in microseconds, null when none is kept
+     * @param newBucket whether the bucket has no state yet
+     * @return whether the warm-up starts now, and its start has to be written
+     */
+    boolean starts(String start, boolean newBucket) {
+        return start == null && (scope == Scope.LIMITER || newBucket);
+    }
+
+    /**
+     * @return share of the configured rate and capacity in effect at {@code currentTimeMicros}
+     */
+    double factor(String start, boolean newBucket, long currentTimeMicros) {
+        if (start == null) {
+            // A client bucket without a start has finished its warm-up, unless it is new
+            return starts(start, newBucket) ? floor : 1;
+        }
+        long elapsedMicros = Math.max(0, currentTimeMicros - Long.parseLong(start));
+        double progress = Math.min(1, elapsedMicros / (period.toNanos() / 1000.0));
+        return floor + (1 - floor) * progress;
+    }
+}
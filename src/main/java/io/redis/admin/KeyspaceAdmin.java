@@ -0,0 +1,180 @@
+package io.redis.admin;
+
+import io.redis.KeyNamespace;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sizes and purges the state of the limiters by {@link KeyNamespace} without blocking Redis: keys are
+ * found with incremental SCAN rather than KEYS, sized by MEMORY USAGE on a sample of them, and deleted
+ * with UNLINK, which frees the memory in the background. Every call is a sequence of short commands,
+ * so other clients keep being served while it runs.
+ */
+public class KeyspaceAdmin {
+
+    // Keys a limiter writes next to rate_limit:<clientId> for the same client
+    private static final List<String> CLIENT_KEY_SUFFIXES = List.of("", ":count", ":lastRefill", ":lastLeak", ":warmUp",
+            ":leases");
+
+    /**
+     * @param sampledKeys  keys whose size was measured, the estimate extrapolates from them
+     * @param sampledBytes their total size
+     */
+    public record NamespaceUsage(String namespace, long keys, long sampledKeys, long sampledBytes) {
+
+        public long estimatedBytes() {
+            return sampledKeys == 0 ? 0 : Math.round((double) sampledBytes / sampledKeys * keys);
+        }
+    }
+
+    private final Jedis jedis;
+    private final int scanCount;
+    private final int sampleEvery;
+
+    public KeyspaceAdmin(Jedis jedis) {
+        this(jedis, 1000, 10);
+    }
+
+    /**
+     * @param scanCount   COUNT hint of every SCAN call, and the most keys unlinked at once
+     * @param sampleEvery measures every n-th key found, 1 measures all of them
+     */
+    public KeyspaceAdmin(Jedis jedis, int scanCount, int sampleEvery) {
+        this.jedis = jedis;
+        this.scanCount = scanCount;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * @param namespace null covers the default prefix, which holds no namespace's keys
+     */
+    public NamespaceUsage usage(String namespace) {
+        long[] total = usage(KeyNamespace.pattern(namespace), key -> "").getOrDefault("", new long[3]);
+        return new NamespaceUsage(namespace, total[0], total[1], total[2]);
+    }
+
+    /**
+     * Sizes several namespaces in a single pass over the namespaced keys.
+     *
+     * @param namespaces null among them is sized in a pass of its own
+     */
+    public Map<String, NamespaceUsage> usage(Collection<String> namespaces) {
+        Set<String> wanted = new HashSet<>();
+        for (String namespace : namespaces) {
+            if (namespace != null) {
+                KeyNamespace.prefix(namespace);
+                wanted.add(namespace);
+            }
+        }
+
+        Map<String, long[]> totals = wanted.isEmpty() ? Map.of()
+                : usage(KeyNamespace.NAMESPACE_ROOT + "*", key -> {
+                    String namespace = KeyNamespace.namespaceOf(key);
+                    return wanted.contains(namespace) ? namespace : null;
+                });
+        Map<String, NamespaceUsage> usage = new LinkedHashMap<>();
+        for (String namespace : namespaces) {
+            if (namespace == null) {
+                usage.put(null, usage((String) null));
+                continue;
+            }
+            long[] total = totals.getOrDefault(namespace, new long[3]);
+            usage.put(namespace, new NamespaceUsage(namespace, total[0], total[1], total[2]));
+        }
+        return usage;
+    }
+
+    /**
+     * Deletes every key of the namespace.
+     *
+     * @return keys deleted
+     */
+    public long reset(String namespace) {
+        long[] deleted = {0};
+        scan(KeyNamespace.pattern(namespace), keys -> deleted[0] += jedis.unlink(keys.toArray(String[]::new)));
+        return deleted[0];
+    }
+
+    /**
+     * Deletes the state of the given clients in the namespace, without scanning.
+     *
+     * @return keys deleted
+     */
+    public long resetClients(String namespace, Collection<String> clientIds) {
+        String prefix = KeyNamespace.prefix(namespace);
+        List<String> keys = new ArrayList<>();
+        long deleted = 0;
+        for (String clientId : clientIds) {
+            for (String suffix : CLIENT_KEY_SUFFIXES) {
+                keys.add(prefix + clientId + suffix);
+            }
+            if (keys.size() >= scanCount) {
+                deleted += jedis.unlink(keys.toArray(String[]::new));
+                keys.clear();
+            }
+        }
+        if (!keys.isEmpty()) {
+            deleted += jedis.unlink(keys.toArray(String[]::new));
+        }
+        return deleted;
+    }
+
+    /**
+     * @return per group: keys, sampled keys and sampled bytes
+     */
+    private Map<String, long[]> usage(String pattern, Function<String, String> namespaceOf) {
+        Map<String, long[]> totals = new HashMap<>();
+        scan(pattern, keys -> {
+            // Size the sampled keys of a batch in one round trip
+            Pipeline pipeline = jedis.pipelined();
+            Map<String, Response<Long>> sizes = new HashMap<>();
+            for (String key : keys) {
+                String namespace = namespaceOf.apply(key);
+                if (namespace == null) {
+                    continue;
+                }
+                // Counted per namespace, so even a small one gets its first key measured
+                if (totals.computeIfAbsent(namespace, n -> new long[3])[0]++ % sampleEvery == 0) {
+                    sizes.put(key, pipeline.memoryUsage(key));
+                }
+            }
+            pipeline.sync();
+
+            for (Map.Entry<String, Response<Long>> size : sizes.entrySet()) {
+                // Null when the key expired in between
+                if (size.getValue().get() != null) {
+                    long[] total = totals.get(namespaceOf.apply(size.getKey()));
+                    total[1]++;
+                    total[2] += size.getValue().get();
+                }
+            }
+        });
+        return totals;
+    }
+
+    private void scan(String pattern, Consumer<List<String>> batches) {
+        ScanParams params = new ScanParams().match(pattern).count(scanCount);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, params);
+            if (!result.getResult().isEmpty()) {
+                batches.accept(result.getResult());
+            }
+            cursor = result.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+    }
+}
@@ -0,0 +1,77 @@
+package io.redis.embedded;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * An integer type of the BITFIELD command, {@code i1}..{@code i64} or {@code u1}..{@code u63}. Bits
+ * are numbered from the most significant bit of the first byte, as in Redis.
+ */
+record BitfieldType(boolean signed, int bits) {
+
+    static BitfieldType parse(String type) {
+        boolean signed = type.charAt(0) == 'i' || type.charAt(0) == 'I';
+        if (!signed && type.charAt(0) != 'u' && type.charAt(0) != 'U') {
+            throw new NumberFormatException(type);
+        }
+        int bits = Integer.parseInt(type.substring(1));
+        if (bits < 1 || bits > (signed ? 64 : 63)) {
+            throw new NumberFormatException(type);
+        }
+        return new BitfieldType(signed, bits);
+    }
+
+    long read(byte[] bytes, long offset) {
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            long bit = offset + i;
+            int index = (int) (bit >>> 3);
+            int b = index < bytes.length ? bytes[index] & 0xff : 0;
+            value = (value << 1) | ((b >>> (7 - (bit & 7))) & 1);
+        }
+        if (signed && bits < 64 && (value >>> (bits - 1) & 1) == 1) {
+            value -= 1L << bits; // Sign extend
+        }
+        return value;
+    }
+
+    byte[] write(byte[] bytes, long offset, long value) {
+        int needed = (int) ((offset + bits + 7) >>> 3);
+        byte[] result = needed > bytes.length ? Arrays.copyOf(bytes, needed) : bytes;
+        for (int i = 0; i < bits; i++) {
+            long bit = offset + i;
+            int index = (int) (bit >>> 3);
+            int mask = 1 << (7 - (bit & 7));
+            if ((value >>> (bits - 1 - i) & 1) == 1) {
+                result[index] |= (byte) mask;
+            } else {
+                result[index] &= (byte) ~mask;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Brings a value into range according to the overflow policy.
+     *
+     * @return the value to store, or null when the policy is FAIL and the value does not fit
+     */
+    Long fit(BigInteger value, String overflow) {
+        BigInteger min = signed ? BigInteger.ONE.shiftLeft(bits - 1).negate() : BigInteger.ZERO;
+        BigInteger max = signed ? BigInteger.ONE.shiftLeft(bits - 1).subtract(BigInteger.ONE)
+                : BigInteger.ONE.shiftLeft(bits).subtract(BigInteger.ONE);
+        if (value.compareTo(min) >= 0 && value.compareTo(max) <= 0) {
+            return value.longValue();
+        }
+        switch (overflow) {
+            case "SAT":
+                return (value.signum() < 0 ? min : max).longValue();
+            case "FAIL":
+                return null;
+            default: // WRAP
+                BigInteger range = BigInteger.ONE.shiftLeft(bits);
+                BigInteger wrapped = value.subtract(min).mod(range).add(min);
+                return wrapped.longValue();
+        }
+    }
+}
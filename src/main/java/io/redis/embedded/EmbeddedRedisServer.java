@@ -0,0 +1,127 @@
+package io.redis.embedded;
+
+import redis.clients.jedis.Jedis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Clock;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for a Redis server, speaking RESP2 on a loopback socket. It implements the
+ * commands the limiters in {@code io.redis} use, so tests and benchmarks can run without Docker or
+ * network access; it is not a general purpose Redis replacement.
+ * <p>
+ * Like Redis, commands run one at a time against a single keyspace, which makes MULTI/EXEC and EVAL
+ * atomic. EVAL runs the subset of Lua that {@code LuaScript} implements.
+ * Every connection is served by its own virtual thread. Keys and hash fields expire lazily when
+ * they are touched, measured against the given clock.
+ */
+public class EmbeddedRedisServer implements AutoCloseable {
+
+    private final Keyspace keyspace;
+    private final int requestedPort;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    public EmbeddedRedisServer() {
+        this(0, Clock.systemUTC());
+    }
+
+    /**
+     * @param clock time source for key expiry and TIME, a virtual clock lets simulations skip ahead
+     */
+    public EmbeddedRedisServer(Clock clock) {
+        this(0, clock);
+    }
+
+    /**
+     * @param port port to listen on, 0 picks a free one
+     */
+    public EmbeddedRedisServer(int port, Clock clock) {
+        this.requestedPort = port;
+        this.keyspace = new Keyspace(clock);
+    }
+
+    public synchronized EmbeddedRedisServer start() {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Already started");
+        }
+        try {
+            serverSocket = new ServerSocket(requestedPort, 128, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not bind embedded Redis server", e);
+        }
+        Thread.ofPlatform().daemon().name("embedded-redis-acceptor").start(this::acceptConnections);
+        return this;
+    }
+
+    /**
+     * Opens a connection that bypasses the network: commands run on the calling thread when the
+     * client flushes them. Works whether or not the server was started, and is what simulations use
+     * to push millions of requests through a limiter.
+     */
+    public Jedis connect() {
+        return new Jedis(() -> new InProcessSocket(keyspace));
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Number of commands executed since start, including the ones queued in MULTI. The commands a
+     * script runs count as part of its EVAL.
+     */
+    public long getCommandsProcessed() {
+        return keyspace.getCommandsProcessed();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+            for (Socket connection : connections) {
+                connection.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                return; // Closed
+            }
+            connections.add(socket);
+            Thread.ofVirtual().name("embedded-redis-connection").start(() -> {
+                try (socket) {
+                    new RespConnection(keyspace).serve(new BufferedInputStream(socket.getInputStream()),
+                            new BufferedOutputStream(socket.getOutputStream()));
+                } catch (IOException e) {
+                    // Client went away
+                } finally {
+                    connections.remove(socket);
+                }
+            });
+        }
+    }
+}
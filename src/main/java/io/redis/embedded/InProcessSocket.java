@@ -0,0 +1,140 @@
+package io.redis.embedded;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A socket without a network behind it. Requests are executed on the caller's thread as soon as
+ * the client flushes them, and the replies are waiting in the input stream by the time it reads.
+ */
+class InProcessSocket extends Socket {
+
+    private final RespConnection connection;
+    private final ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream replies = new ByteArrayOutputStream();
+    private byte[] pending = new byte[0];
+    private int position;
+    private int soTimeout;
+    private boolean closed;
+
+    InProcessSocket(Keyspace keyspace) {
+        this.connection = new RespConnection(keyspace);
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                requests.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                requests.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (requests.size() == 0) {
+                    return;
+                }
+                byte[] batch = requests.toByteArray();
+                requests.reset();
+                if (!connection.serve(new ByteArrayInputStream(batch), replies)) {
+                    closed = true;
+                }
+            }
+        };
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                return fill() ? pending[position++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+                int count = Math.min(len, pending.length - position);
+                System.arraycopy(pending, position, b, off, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return pending.length - position + replies.size();
+            }
+        };
+    }
+
+    private boolean fill() throws IOException {
+        if (position < pending.length) {
+            return true;
+        }
+        if (replies.size() == 0) {
+            if (closed) {
+                return false;
+            }
+            // Nothing flushed yet, a real socket would block forever
+            throw new IOException("Read without a pending request");
+        }
+        pending = replies.toByteArray();
+        position = 0;
+        replies.reset();
+        return true;
+    }
+
+    @Override
+    public void setSoTimeout(int timeout) {
+        this.soTimeout = timeout;
+    }
+
+    @Override
+    public int getSoTimeout() {
+        return soTimeout;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public boolean isBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return closed;
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
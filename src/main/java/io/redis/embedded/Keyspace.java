@@ -0,0 +1,1089 @@
+package io.redis.embedded;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * The data and the command implementations of {@link EmbeddedRedisServer}. All public entry points
+ * are synchronized, so every command, and every MULTI block as a whole, runs in isolation.
+ */
+class Keyspace {
+
+    private static final Set<String> COMMANDS = Set.of(
+            "PING", "ECHO", "SELECT", "CLIENT", "INFO", "TIME", "FLUSHALL", "FLUSHDB", "DBSIZE", "KEYS", "SCAN",
+            "MEMORY", "EVAL",
+            "EXISTS", "DEL", "UNLINK", "TYPE", "TTL", "PTTL", "EXPIRE", "PEXPIRE", "PERSIST",
+            "GET", "SET", "MGET", "INCR", "INCRBY", "DECR", "DECRBY", "INCRBYFLOAT", "STRLEN",
+            "BITFIELD", "BITFIELD_RO",
+            "HGET", "HMGET", "HSET", "HDEL", "HLEN", "HGETALL", "HEXISTS", "HINCRBY", "HINCRBYFLOAT",
+            "HEXPIRE", "HPEXPIRE", "HTTL", "HPTTL",
+            "ZADD", "ZREM", "ZCARD", "ZSCORE", "ZRANK", "ZCOUNT", "ZRANGE", "ZREVRANGE", "ZRANGEBYSCORE",
+            "ZREMRANGEBYSCORE", "ZREMRANGEBYRANK");
+
+    private static final long NO_EXPIRY = -1;
+
+    private static class Entry {
+        final Object value; // String, HashValue or SortedSetValue
+        final long version;
+        long expireAt = NO_EXPIRY;
+
+        Entry(Object value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    private static class CommandException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized, the exception does not leave the keyspace
+        final transient Reply.Error error;
+
+        CommandException(Reply.Error error) {
+            super(error.message(), null, false, false);
+            this.error = error;
+        }
+    }
+
+    private final Clock clock;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, LuaScript> scripts = new HashMap<>(); // Compiled once, by source, like Redis caches them
+    private long nextVersion = 1;
+    private long commandsProcessed;
+
+    Keyspace(Clock clock) {
+        this.clock = clock;
+    }
+
+    boolean isKnownCommand(String name) {
+        return COMMANDS.contains(name);
+    }
+
+    synchronized long getCommandsProcessed() {
+        return commandsProcessed;
+    }
+
+    synchronized Object execute(List<String> command) {
+        return run(command);
+    }
+
+    /**
+     * Versions identify a key's incarnation, any write replaces the entry with a newer one.
+     */
+    synchronized Map<String, Long> versions(List<String> keys) {
+        Map<String, Long> versions = new HashMap<>();
+        for (String key : keys) {
+            versions.put(key, version(key));
+        }
+        return versions;
+    }
+
+    /**
+     * Runs a MULTI block, unless one of the watched keys changed since it was watched.
+     *
+     * @return the replies, or null when the transaction was aborted
+     */
+    synchronized List<Object> executeIfUnchanged(Map<String, Long> watched, List<List<String>> commands) {
+        for (Map.Entry<String, Long> watch : watched.entrySet()) {
+            if (version(watch.getKey()) != watch.getValue()) {
+                return null;
+            }
+        }
+        List<Object> replies = new ArrayList<>(commands.size());
+        for (List<String> command : commands) {
+            replies.add(run(command));
+        }
+        return replies;
+    }
+
+    private long version(String key) {
+        Entry entry = lookup(key);
+        return entry != null ? entry.version : 0;
+    }
+
+    private Object run(List<String> command) {
+        commandsProcessed++;
+        return invoke(command);
+    }
+
+    // Commands a script runs are part of its EVAL, they are not counted on their own
+    private Object invoke(List<String> command) {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        List<String> args = command.subList(1, command.size());
+        try {
+            return dispatch(name, args);
+        } catch (CommandException e) {
+            return e.error;
+        } catch (NumberFormatException e) {
+            return Reply.error("value is not an integer or out of range");
+        } catch (IndexOutOfBoundsException e) {
+            return Reply.error("wrong number of arguments for '" + command.get(0) + "' command");
+        }
+    }
+
+    private Object dispatch(String name, List<String> args) {
+        switch (name) {
+            // Connection and server
+            case "PING": return args.isEmpty() ? new Reply.Simple("PONG") : args.get(0);
+            case "ECHO": return args.get(0);
+            case "SELECT": case "CLIENT": return Reply.OK;
+            case "INFO": return info();
+            case "TIME": return time();
+            case "FLUSHALL": case "FLUSHDB": entries.clear(); return Reply.OK;
+            case "DBSIZE": return (long) liveKeys().size();
+            case "KEYS": return keys(args.get(0));
+            case "SCAN": return scan(args);
+            case "MEMORY": return memory(args);
+            case "EVAL": return eval(args);
+            // Generic
+            case "EXISTS": return exists(args);
+            case "DEL": case "UNLINK": return del(args);
+            case "TYPE": return type(args.get(0));
+            case "TTL": return ttl(args.get(0), 1000);
+            case "PTTL": return ttl(args.get(0), 1);
+            case "EXPIRE": return expire(args, 1000);
+            case "PEXPIRE": return expire(args, 1);
+            case "PERSIST": return persist(args.get(0));
+            // Strings
+            case "GET": return Reply.bulk(getString(args.get(0)));
+            case "SET": return set(args);
+            case "MGET": return mget(args);
+            case "INCR": return incrBy(args.get(0), 1);
+            case "INCRBY": return incrBy(args.get(0), Long.parseLong(args.get(1)));
+            case "DECR": return incrBy(args.get(0), -1);
+            case "DECRBY": return incrBy(args.get(0), -Long.parseLong(args.get(1)));
+            case "INCRBYFLOAT": return incrByFloat(args.get(0), args.get(1));
+            case "STRLEN": return strlen(args.get(0));
+            case "BITFIELD": return bitfield(args, false);
+            case "BITFIELD_RO": return bitfield(args, true);
+            // Hashes
+            case "HGET": return hget(args);
+            case "HMGET": return hmget(args);
+            case "HSET": return hset(args);
+            case "HDEL": return hdel(args);
+            case "HLEN": return hlen(args.get(0));
+            case "HGETALL": return hgetall(args.get(0));
+            case "HEXISTS": return hexists(args);
+            case "HINCRBY": return hincrBy(args);
+            case "HINCRBYFLOAT": return hincrByFloat(args);
+            case "HEXPIRE": return hexpire(args, 1000);
+            case "HPEXPIRE": return hexpire(args, 1);
+            case "HTTL": return httl(args, 1000);
+            case "HPTTL": return httl(args, 1);
+            // Sorted sets
+            case "ZADD": return zadd(args);
+            case "ZREM": return zrem(args);
+            case "ZCARD": return zcard(args.get(0));
+            case "ZSCORE": return zscore(args);
+            case "ZRANK": return zrank(args);
+            case "ZCOUNT": return zcount(args);
+            case "ZRANGE": return zrange(args);
+            case "ZREVRANGE": return zrevrange(args);
+            case "ZRANGEBYSCORE": return zrangeByScore(args);
+            case "ZREMRANGEBYSCORE": return zremrangeByScore(args);
+            case "ZREMRANGEBYRANK": return zremrangeByRank(args);
+            default:
+                throw new CommandException(Reply.error("unknown command '" + name.toLowerCase(Locale.ROOT) + "'"));
+        }
+    }
+
+    // ---------------------------------------------------------------- scripting
+
+    private Object eval(List<String> args) {
+        int keyCount = Integer.parseInt(args.get(1));
+        if (keyCount < 0) {
+            throw new CommandException(Reply.error("Number of keys can't be negative"));
+        }
+        if (keyCount > args.size() - 2) {
+            throw new CommandException(Reply.error("Number of keys can't be greater than number of args"));
+        }
+        try {
+            LuaScript script = scripts.get(args.get(0));
+            if (script == null) {
+                script = LuaScript.compile(args.get(0));
+                scripts.put(args.get(0), script);
+            }
+            return script.run(args.subList(2, 2 + keyCount), args.subList(2 + keyCount, args.size()),
+                    this::callFromScript);
+        } catch (LuaScript.LuaException e) {
+            throw new CommandException(e.reply);
+        }
+    }
+
+    private Object callFromScript(List<String> command) {
+        String name = command.get(0).toUpperCase(Locale.ROOT);
+        if (name.equals("EVAL")) {
+            return Reply.error("This Redis command is not allowed from script");
+        }
+        return invoke(command);
+    }
+
+    // ---------------------------------------------------------------- keyspace
+
+    private long now() {
+        return clock.millis();
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt != NO_EXPIRY && now() >= entry.expireAt) {
+            entries.remove(key);
+            return null;
+        }
+        if (entry.value instanceof HashValue hash && hash.purgeExpired(now()) && hash.isEmpty()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private <T> T lookup(String key, Class<T> type) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!type.isInstance(entry.value)) {
+            throw new CommandException(Reply.wrongType());
+        }
+        return type.cast(entry.value);
+    }
+
+    /**
+     * Stores a value under a key, creating a new incarnation for WATCH. The TTL is kept unless the
+     * caller clears it.
+     */
+    private Entry store(String key, Object value) {
+        Entry previous = lookup(key);
+        Entry entry = new Entry(value, nextVersion++);
+        if (previous != null) {
+            entry.expireAt = previous.expireAt;
+        }
+        entries.put(key, entry);
+        return entry;
+    }
+
+    // Collections are mutated in place, the entry is replaced to record the write
+    private void modified(String key) {
+        Entry entry = entries.get(key);
+        if (entry.value instanceof HashValue hash && hash.isEmpty()
+                || entry.value instanceof SortedSetValue zset && zset.isEmpty()) {
+            entries.remove(key);
+        } else {
+            store(key, entry.value);
+        }
+    }
+
+    private HashValue hashForWrite(String key) {
+        HashValue hash = lookup(key, HashValue.class);
+        if (hash == null) {
+            hash = new HashValue();
+            store(key, hash);
+        }
+        return hash;
+    }
+
+    private SortedSetValue sortedSetForWrite(String key) {
+        SortedSetValue zset = lookup(key, SortedSetValue.class);
+        if (zset == null) {
+            zset = new SortedSetValue();
+            store(key, zset);
+        }
+        return zset;
+    }
+
+    private List<String> liveKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String key : new ArrayList<>(entries.keySet())) {
+            if (lookup(key) != null) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private Object info() {
+        long expires = entries.values().stream().filter(entry -> entry.expireAt != NO_EXPIRY).count();
+        return "# Server\r\nredis_version:7.4.0\r\nredis_mode:standalone\r\n"
+                + "# Stats\r\ntotal_commands_processed:" + commandsProcessed + "\r\n"
+                + "# Keyspace\r\ndb0:keys=" + entries.size() + ",expires=" + expires + ",avg_ttl=0\r\n";
+    }
+
+    private Object time() {
+        long micros = Math.multiplyExact(now(), 1000L);
+        return List.of(Long.toString(micros / 1_000_000), Long.toString(micros % 1_000_000));
+    }
+
+    private Object keys(String pattern) {
+        Pattern regex = globToRegex(pattern);
+        List<Object> keys = new ArrayList<>();
+        for (String key : liveKeys()) {
+            if (regex.matcher(key).matches()) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Walks the keys in order of their 32-bit hash, the cursor is the hash to resume at. Keys present
+     * for the whole iteration are returned at least once, whatever is written in between, and like
+     * Redis, a batch may exceed COUNT so keys sharing a hash are never split across batches.
+     */
+    private Object scan(List<String> args) {
+        long cursor = Long.parseLong(args.get(0));
+        Pattern match = null;
+        String type = null;
+        int count = 10;
+        for (int i = 1; i < args.size(); i++) {
+            switch (args.get(i).toUpperCase(Locale.ROOT)) {
+                case "MATCH" -> match = globToRegex(args.get(++i));
+                case "COUNT" -> count = Math.max(1, Integer.parseInt(args.get(++i)));
+                case "TYPE" -> type = args.get(++i).toLowerCase(Locale.ROOT);
+                default -> throw new CommandException(Reply.error("syntax error"));
+            }
+        }
+
+        List<String> remaining = new ArrayList<>();
+        for (String key : liveKeys()) {
+            if (scanHash(key) >= cursor) {
+                remaining.add(key);
+            }
+        }
+        remaining.sort(Comparator.comparingLong(Keyspace::scanHash));
+
+        List<Object> batch = new ArrayList<>();
+        long next = 0;
+        for (int i = 0; i < remaining.size(); i++) {
+            String key = remaining.get(i);
+            if (i >= count && scanHash(key) != scanHash(remaining.get(i - 1))) {
+                next = scanHash(key);
+                break;
+            }
+            // MATCH and TYPE filter after the batch was picked, so a batch may come back empty
+            if ((match == null || match.matcher(key).matches())
+                    && (type == null || type.equals(((Reply.Simple) type(key)).value()))) {
+                batch.add(key);
+            }
+        }
+        return List.of(Long.toString(next), batch);
+    }
+
+    private static long scanHash(String key) {
+        // Offset by one so that no key resumes at cursor 0, which ends the iteration
+        return Integer.toUnsignedLong(key.hashCode()) + 1;
+    }
+
+    private Object memory(List<String> args) {
+        if (!args.get(0).equalsIgnoreCase("USAGE")) {
+            throw new CommandException(Reply.error("unknown subcommand '" + args.get(0) + "'"));
+        }
+        // SAMPLES only bounds how many elements real Redis looks at, the estimate here is exact anyway
+        Entry entry = lookup(args.get(1));
+        return entry != null ? memoryUsage(args.get(1), entry) : Reply.NULL_BULK;
+    }
+
+    // A rough model of Redis' own accounting: key and object headers, plus per element overhead
+    private static long memoryUsage(String key, Entry entry) {
+        long bytes = 48 + key.length();
+        if (entry.value instanceof HashValue hash) {
+            bytes += 64;
+            for (Map.Entry<String, String> field : hash.fields.entrySet()) {
+                bytes += 24 + field.getKey().length() + field.getValue().length();
+            }
+            bytes += 16L * hash.expireAt.size();
+        } else if (entry.value instanceof SortedSetValue sortedSet) {
+            bytes += 128;
+            for (SortedSetValue.Member member : sortedSet.byRank(0, -1, false)) {
+                bytes += 48 + member.name().length();
+            }
+        } else {
+            bytes += 16 + ((String) entry.value).length();
+        }
+        return bytes;
+    }
+
+    static Pattern globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, end);
+                        regex.append('[').append(set.startsWith("^") ? "^" + Pattern.quote(set.substring(1))
+                                : Pattern.quote(set)).append(']');
+                        i = end;
+                    }
+                }
+                case '\\' -> {
+                    if (i + 1 < glob.length()) {
+                        regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                }
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private Object exists(List<String> keys) {
+        long count = 0;
+        for (String key : keys) {
+            if (lookup(key) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object del(List<String> keys) {
+        long count = 0;
+        for (String key : keys) {
+            if (lookup(key) != null) {
+                entries.remove(key);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Object type(String key) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return new Reply.Simple("none");
+        }
+        if (entry.value instanceof HashValue) {
+            return new Reply.Simple("hash");
+        }
+        return new Reply.Simple(entry.value instanceof SortedSetValue ? "zset" : "string");
+    }
+
+    private Object ttl(String key, long unitMs) {
+        Entry entry = lookup(key);
+        if (entry == null) {
+            return -2L;
+        }
+        if (entry.expireAt == NO_EXPIRY) {
+            return -1L;
+        }
+        return remaining(entry.expireAt, unitMs);
+    }
+
+    private long remaining(long expireAt, long unitMs) {
+        long remainingMs = expireAt - now();
+        return unitMs == 1 ? remainingMs : (remainingMs + unitMs / 2) / unitMs;
+    }
+
+    private Object expire(List<String> args, long unitMs) {
+        String key = args.get(0);
+        long expireAt = now() + Long.parseLong(args.get(1)) * unitMs;
+        String condition = args.size() > 2 ? args.get(2).toUpperCase(Locale.ROOT) : "";
+
+        Entry entry = lookup(key);
+        if (entry == null || !expiryConditionMet(condition, entry.expireAt, expireAt)) {
+            return 0L;
+        }
+        if (expireAt <= now()) {
+            entries.remove(key);
+        } else {
+            store(key, entry.value).expireAt = expireAt;
+        }
+        return 1L;
+    }
+
+    private static boolean expiryConditionMet(String condition, long current, long requested) {
+        return switch (condition) {
+            case "NX" -> current == NO_EXPIRY;
+            case "XX" -> current != NO_EXPIRY;
+            case "GT" -> current != NO_EXPIRY && requested > current;
+            case "LT" -> current == NO_EXPIRY || requested < current;
+            case "" -> true;
+            default -> throw new CommandException(Reply.error("Unsupported option " + condition));
+        };
+    }
+
+    private Object persist(String key) {
+        Entry entry = lookup(key);
+        if (entry == null || entry.expireAt == NO_EXPIRY) {
+            return 0L;
+        }
+        store(key, entry.value).expireAt = NO_EXPIRY;
+        return 1L;
+    }
+
+    // ---------------------------------------------------------------- strings
+
+    private String getString(String key) {
+        return lookup(key, String.class);
+    }
+
+    private Object set(List<String> args) {
+        String key = args.get(0);
+        String value = args.get(1);
+        long expireAt = NO_EXPIRY;
+        boolean keepTtl = false;
+        boolean returnOld = false;
+        String condition = "";
+        for (int i = 2; i < args.size(); i++) {
+            String option = args.get(i).toUpperCase(Locale.ROOT);
+            switch (option) {
+                case "EX" -> expireAt = now() + Long.parseLong(args.get(++i)) * 1000;
+                case "PX" -> expireAt = now() + Long.parseLong(args.get(++i));
+                case "EXAT" -> expireAt = Long.parseLong(args.get(++i)) * 1000;
+                case "PXAT" -> expireAt = Long.parseLong(args.get(++i));
+                case "KEEPTTL" -> keepTtl = true;
+                case "GET" -> returnOld = true;
+                case "NX", "XX" -> condition = option;
+                default -> throw new CommandException(Reply.error("syntax error"));
+            }
+        }
+
+        Entry previous = lookup(key);
+        String old = returnOld ? getString(key) : null;
+        if (condition.equals("NX") && previous != null || condition.equals("XX") && previous == null) {
+            return returnOld ? Reply.bulk(old) : Reply.NULL_BULK;
+        }
+        Entry entry = store(key, value);
+        if (!keepTtl) {
+            entry.expireAt = expireAt;
+        }
+        return returnOld ? Reply.bulk(old) : Reply.OK;
+    }
+
+    private Object mget(List<String> keys) {
+        List<Object> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Entry entry = lookup(key);
+            values.add(entry != null && entry.value instanceof String value ? value : Reply.NULL_BULK);
+        }
+        return values;
+    }
+
+    private Object incrBy(String key, long increment) {
+        String current = getString(key);
+        long value;
+        try {
+            value = Math.addExact(current != null ? Long.parseLong(current) : 0, increment);
+        } catch (ArithmeticException e) {
+            throw new CommandException(Reply.error("increment or decrement would overflow"));
+        }
+        store(key, Long.toString(value));
+        return value;
+    }
+
+    private Object incrByFloat(String key, String increment) {
+        String current = getString(key);
+        BigDecimal value = parseDecimal(current != null ? current : "0").add(parseDecimal(increment));
+        String formatted = formatDecimal(value);
+        store(key, formatted);
+        return formatted;
+    }
+
+    private Object strlen(String key) {
+        String value = getString(key);
+        return value != null ? (long) value.length() : 0L;
+    }
+
+    private Object bitfield(List<String> args, boolean readOnly) {
+        String key = args.get(0);
+        String current = getString(key);
+        byte[] bytes = current != null ? current.getBytes(StandardCharsets.ISO_8859_1) : new byte[0];
+        boolean changed = false;
+        String overflow = "WRAP";
+        List<Object> results = new ArrayList<>();
+
+        for (int i = 1; i < args.size(); i++) {
+            String operation = args.get(i).toUpperCase(Locale.ROOT);
+            if (operation.equals("OVERFLOW")) {
+                overflow = args.get(++i).toUpperCase(Locale.ROOT);
+                continue;
+            }
+            if (readOnly && !operation.equals("GET")) {
+                throw new CommandException(Reply.error("BITFIELD_RO only supports the GET subcommand"));
+            }
+            BitfieldType type = BitfieldType.parse(args.get(++i));
+            long offset = parseBitOffset(args.get(++i), type.bits());
+            long old = type.read(bytes, offset);
+            switch (operation) {
+                case "GET" -> results.add(old);
+                case "SET", "INCRBY" -> {
+                    BigInteger requested = operation.equals("SET") ? new BigInteger(args.get(++i))
+                            : BigInteger.valueOf(old).add(new BigInteger(args.get(++i)));
+                    Long value = type.fit(requested, overflow);
+                    if (value == null) {
+                        results.add(Reply.NULL_BULK);
+                    } else {
+                        bytes = type.write(bytes, offset, value);
+                        changed = true;
+                        results.add(operation.equals("SET") ? old : value);
+                    }
+                }
+                default -> throw new CommandException(Reply.error("syntax error"));
+            }
+        }
+        if (changed) {
+            store(key, new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return results;
+    }
+
+    private static long parseBitOffset(String offset, int bits) {
+        return offset.startsWith("#") ? Long.parseLong(offset.substring(1)) * bits : Long.parseLong(offset);
+    }
+
+    // ---------------------------------------------------------------- hashes
+
+    private Object hget(List<String> args) {
+        HashValue hash = lookup(args.get(0), HashValue.class);
+        return Reply.bulk(hash != null ? hash.fields.get(args.get(1)) : null);
+    }
+
+    private Object hmget(List<String> args) {
+        HashValue hash = lookup(args.get(0), HashValue.class);
+        List<Object> values = new ArrayList<>();
+        for (String field : args.subList(1, args.size())) {
+            values.add(Reply.bulk(hash != null ? hash.fields.get(field) : null));
+        }
+        return values;
+    }
+
+    private Object hset(List<String> args) {
+        if (args.size() < 3 || args.size() % 2 == 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        String key = args.get(0);
+        HashValue hash = hashForWrite(key);
+        long added = 0;
+        for (int i = 1; i < args.size(); i += 2) {
+            if (hash.put(args.get(i), args.get(i + 1)) == null) {
+                added++;
+            }
+        }
+        modified(key);
+        return added;
+    }
+
+    private Object hdel(List<String> args) {
+        String key = args.get(0);
+        HashValue hash = lookup(key, HashValue.class);
+        if (hash == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (String field : args.subList(1, args.size())) {
+            if (hash.remove(field)) {
+                removed++;
+            }
+        }
+        modified(key);
+        return removed;
+    }
+
+    private Object hlen(String key) {
+        HashValue hash = lookup(key, HashValue.class);
+        return hash != null ? (long) hash.fields.size() : 0L;
+    }
+
+    private Object hgetall(String key) {
+        HashValue hash = lookup(key, HashValue.class);
+        List<Object> fieldsAndValues = new ArrayList<>();
+        if (hash != null) {
+            hash.fields.forEach((field, value) -> {
+                fieldsAndValues.add(field);
+                fieldsAndValues.add(value);
+            });
+        }
+        return fieldsAndValues;
+    }
+
+    private Object hexists(List<String> args) {
+        HashValue hash = lookup(args.get(0), HashValue.class);
+        return hash != null && hash.fields.containsKey(args.get(1)) ? 1L : 0L;
+    }
+
+    private Object hincrBy(List<String> args) {
+        String key = args.get(0);
+        HashValue hash = hashForWrite(key);
+        String current = hash.fields.get(args.get(1));
+        long value;
+        try {
+            value = Math.addExact(current != null ? Long.parseLong(current) : 0, Long.parseLong(args.get(2)));
+        } catch (NumberFormatException e) {
+            modified(key);
+            throw new CommandException(Reply.error("hash value is not an integer"));
+        } catch (ArithmeticException e) {
+            modified(key);
+            throw new CommandException(Reply.error("increment or decrement would overflow"));
+        }
+        hash.fields.put(args.get(1), Long.toString(value));
+        modified(key);
+        return value;
+    }
+
+    private Object hincrByFloat(List<String> args) {
+        String key = args.get(0);
+        HashValue hash = hashForWrite(key);
+        String current = hash.fields.get(args.get(1));
+        String formatted = formatDecimal(parseDecimal(current != null ? current : "0").add(parseDecimal(args.get(2))));
+        hash.fields.put(args.get(1), formatted);
+        modified(key);
+        return formatted;
+    }
+
+    // HEXPIRE key seconds [NX | XX | GT | LT] FIELDS numfields field [field ...]
+    private Object hexpire(List<String> args, long unitMs) {
+        String key = args.get(0);
+        long ttl = Long.parseLong(args.get(1));
+        int i = 2;
+        String condition = "";
+        if (!args.get(i).equalsIgnoreCase("FIELDS")) {
+            condition = args.get(i++).toUpperCase(Locale.ROOT);
+        }
+        List<String> fields = parseFields(args, i);
+
+        HashValue hash = lookup(key, HashValue.class);
+        List<Object> results = new ArrayList<>(fields.size());
+        long expireAt = now() + ttl * unitMs;
+        for (String field : fields) {
+            if (hash == null || !hash.fields.containsKey(field)) {
+                results.add(-2L);
+            } else if (!expiryConditionMet(condition, hash.expireAt.getOrDefault(field, NO_EXPIRY), expireAt)) {
+                results.add(0L);
+            } else if (ttl <= 0) {
+                hash.remove(field);
+                results.add(2L);
+            } else {
+                hash.expireAt.put(field, expireAt);
+                results.add(1L);
+            }
+        }
+        if (hash != null) {
+            modified(key);
+        }
+        return results;
+    }
+
+    private Object httl(List<String> args, long unitMs) {
+        HashValue hash = lookup(args.get(0), HashValue.class);
+        List<Object> results = new ArrayList<>();
+        for (String field : parseFields(args, 1)) {
+            if (hash == null || !hash.fields.containsKey(field)) {
+                results.add(-2L);
+            } else {
+                long expireAt = hash.expireAt.getOrDefault(field, NO_EXPIRY);
+                results.add(expireAt == NO_EXPIRY ? -1L : remaining(expireAt, unitMs));
+            }
+        }
+        return results;
+    }
+
+    private static List<String> parseFields(List<String> args, int i) {
+        if (!args.get(i).equalsIgnoreCase("FIELDS")) {
+            throw new CommandException(Reply.error("Mandatory argument FIELDS is missing or not at the right position"));
+        }
+        int count = Integer.parseInt(args.get(i + 1));
+        List<String> fields = args.subList(i + 2, args.size());
+        if (fields.size() != count) {
+            throw new CommandException(Reply.error("The `numfields` parameter must match the number of arguments"));
+        }
+        return fields;
+    }
+
+    // ---------------------------------------------------------------- sorted sets
+
+    private Object zadd(List<String> args) {
+        String key = args.get(0);
+        Set<String> flags = new HashSet<>();
+        int i = 1;
+        while (i < args.size() && Set.of("NX", "XX", "GT", "LT", "CH", "INCR").contains(args.get(i).toUpperCase(Locale.ROOT))) {
+            flags.add(args.get(i++).toUpperCase(Locale.ROOT));
+        }
+        if ((args.size() - i) % 2 != 0 || args.size() == i) {
+            throw new CommandException(Reply.error("syntax error"));
+        }
+
+        SortedSetValue zset = sortedSetForWrite(key);
+        long added = 0;
+        long changed = 0;
+        Double lastScore = null;
+        for (; i < args.size(); i += 2) {
+            double score = parseScore(args.get(i));
+            String member = args.get(i + 1);
+            Double current = zset.score(member);
+            if (flags.contains("INCR") && current != null) {
+                score += current;
+            }
+            boolean allowed = current == null ? !flags.contains("XX")
+                    : !flags.contains("NX")
+                    && (!flags.contains("GT") || score > current)
+                    && (!flags.contains("LT") || score < current);
+            if (!allowed) {
+                lastScore = null;
+                continue;
+            }
+            if (current == null) {
+                added++;
+            } else if (current != score) {
+                changed++;
+            }
+            zset.put(member, score);
+            lastScore = score;
+        }
+        modified(key);
+        if (flags.contains("INCR")) {
+            return lastScore != null ? formatScore(lastScore) : Reply.NULL_BULK;
+        }
+        return flags.contains("CH") ? added + changed : added;
+    }
+
+    private Object zrem(List<String> args) {
+        String key = args.get(0);
+        SortedSetValue zset = lookup(key, SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        long removed = 0;
+        for (String member : args.subList(1, args.size())) {
+            if (zset.remove(member)) {
+                removed++;
+            }
+        }
+        modified(key);
+        return removed;
+    }
+
+    private Object zcard(String key) {
+        SortedSetValue zset = lookup(key, SortedSetValue.class);
+        return zset != null ? (long) zset.size() : 0L;
+    }
+
+    private Object zscore(List<String> args) {
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        Double score = zset != null ? zset.score(args.get(1)) : null;
+        return score != null ? formatScore(score) : Reply.NULL_BULK;
+    }
+
+    private Object zrank(List<String> args) {
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        if (zset == null || zset.score(args.get(1)) == null) {
+            return Reply.NULL_BULK;
+        }
+        return (long) zset.rank(args.get(1));
+    }
+
+    private Object zcount(List<String> args) {
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        return (long) zset.byScore(ScoreBound.parse(args.get(1)), ScoreBound.parse(args.get(2))).size();
+    }
+
+    // ZRANGE key start stop [BYSCORE] [REV] [LIMIT offset count] [WITHSCORES]
+    private Object zrange(List<String> args) {
+        boolean byScore = false;
+        boolean reverse = false;
+        boolean withScores = false;
+        long offset = 0;
+        long count = -1;
+        for (int i = 3; i < args.size(); i++) {
+            switch (args.get(i).toUpperCase(Locale.ROOT)) {
+                case "BYSCORE" -> byScore = true;
+                case "REV" -> reverse = true;
+                case "WITHSCORES" -> withScores = true;
+                case "LIMIT" -> {
+                    offset = Long.parseLong(args.get(++i));
+                    count = Long.parseLong(args.get(++i));
+                }
+                default -> throw new CommandException(Reply.error("syntax error"));
+            }
+        }
+
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        if (zset == null) {
+            return List.of();
+        }
+        List<SortedSetValue.Member> members;
+        if (byScore) {
+            // With REV the bounds are given as max then min
+            ScoreBound min = ScoreBound.parse(args.get(reverse ? 2 : 1));
+            ScoreBound max = ScoreBound.parse(args.get(reverse ? 1 : 2));
+            members = zset.byScore(min, max);
+            if (reverse) {
+                members = members.reversed();
+            }
+            members = limit(members, offset, count);
+        } else {
+            members = zset.byRank(Long.parseLong(args.get(1)), Long.parseLong(args.get(2)), reverse);
+        }
+        return membersReply(members, withScores);
+    }
+
+    private Object zrevrange(List<String> args) {
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        boolean withScores = args.size() > 3 && args.get(3).equalsIgnoreCase("WITHSCORES");
+        if (zset == null) {
+            return List.of();
+        }
+        return membersReply(zset.byRank(Long.parseLong(args.get(1)), Long.parseLong(args.get(2)), true), withScores);
+    }
+
+    // ZRANGEBYSCORE key min max [WITHSCORES] [LIMIT offset count]
+    private Object zrangeByScore(List<String> args) {
+        boolean withScores = false;
+        long offset = 0;
+        long count = -1;
+        for (int i = 3; i < args.size(); i++) {
+            if (args.get(i).equalsIgnoreCase("WITHSCORES")) {
+                withScores = true;
+            } else if (args.get(i).equalsIgnoreCase("LIMIT")) {
+                offset = Long.parseLong(args.get(++i));
+                count = Long.parseLong(args.get(++i));
+            } else {
+                throw new CommandException(Reply.error("syntax error"));
+            }
+        }
+        SortedSetValue zset = lookup(args.get(0), SortedSetValue.class);
+        if (zset == null) {
+            return List.of();
+        }
+        List<SortedSetValue.Member> members =
+                zset.byScore(ScoreBound.parse(args.get(1)), ScoreBound.parse(args.get(2)));
+        return membersReply(limit(members, offset, count), withScores);
+    }
+
+    private Object zremrangeByScore(List<String> args) {
+        String key = args.get(0);
+        SortedSetValue zset = lookup(key, SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        List<SortedSetValue.Member> members = zset.byScore(ScoreBound.parse(args.get(1)), ScoreBound.parse(args.get(2)));
+        members.forEach(member -> zset.remove(member.name()));
+        modified(key);
+        return (long) members.size();
+    }
+
+    private Object zremrangeByRank(List<String> args) {
+        String key = args.get(0);
+        SortedSetValue zset = lookup(key, SortedSetValue.class);
+        if (zset == null) {
+            return 0L;
+        }
+        List<SortedSetValue.Member> members = zset.byRank(Long.parseLong(args.get(1)), Long.parseLong(args.get(2)), false);
+        members.forEach(member -> zset.remove(member.name()));
+        modified(key);
+        return (long) members.size();
+    }
+
+    private static List<SortedSetValue.Member> limit(List<SortedSetValue.Member> members, long offset, long count) {
+        if (offset >= members.size()) {
+            return List.of();
+        }
+        long end = count < 0 ? members.size() : Math.min(members.size(), offset + count);
+        return members.subList((int) offset, (int) end);
+    }
+
+    private static List<Object> membersReply(List<SortedSetValue.Member> members, boolean withScores) {
+        List<Object> reply = new ArrayList<>();
+        for (SortedSetValue.Member member : members) {
+            reply.add(member.name());
+            if (withScores) {
+                reply.add(formatScore(member.score()));
+            }
+        }
+        return reply;
+    }
+
+    // ---------------------------------------------------------------- number formatting
+
+    private static double parseScore(String score) {
+        try {
+            return ScoreBound.parseDouble(score);
+        } catch (NumberFormatException e) {
+            throw new CommandException(Reply.error("value is not a valid float"));
+        }
+    }
+
+    static String formatScore(double score) {
+        if (Double.isInfinite(score)) {
+            return score > 0 ? "inf" : "-inf";
+        }
+        if (score == Math.rint(score) && Math.abs(score) < 1e17) {
+            return Long.toString((long) score);
+        }
+        return Double.toString(score);
+    }
+
+    private static BigDecimal parseDecimal(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (NumberFormatException e) {
+            throw new CommandException(Reply.error("value is not a valid float"));
+        }
+    }
+
+    private static String formatDecimal(BigDecimal value) {
+        BigDecimal stripped = value.stripTrailingZeros();
+        return stripped.scale() < 0 ? stripped.setScale(0).toPlainString() : stripped.toPlainString();
+    }
+
+    // ---------------------------------------------------------------- value types
+
+    static class HashValue {
+        final Map<String, String> fields = new LinkedHashMap<>();
+        final Map<String, Long> expireAt = new HashMap<>();
+
+        String put(String field, String value) {
+            expireAt.remove(field); // HSET clears the field's TTL
+            return fields.put(field, value);
+        }
+
+        boolean remove(String field) {
+            expireAt.remove(field);
+            return fields.remove(field) != null;
+        }
+
+        boolean isEmpty() {
+            return fields.isEmpty();
+        }
+
+        boolean purgeExpired(long now) {
+            if (expireAt.isEmpty()) {
+                return false;
+            }
+            boolean purged = false;
+            Iterator<Map.Entry<String, Long>> iterator = expireAt.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> field = iterator.next();
+                if (now >= field.getValue()) {
+                    fields.remove(field.getKey());
+                    iterator.remove();
+                    purged = true;
+                }
+            }
+            return purged;
+        }
+    }
+}
@@ -0,0 +1,873 @@
+package io.redis.embedded;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The subset of Lua that EVAL scripts are written in: local variables, assignment, if/elseif/else,
+ * while and numeric for loops, return, the Lua operators, array constructors and indexing, KEYS and
+ * ARGV, and the functions redis.call, redis.pcall, tonumber, tostring and type. Scripts compile once
+ * into a tree of closures; anything outside the subset, such as function definitions, is a compile
+ * error rather than a silent misreading. Numbers are doubles, as in the Lua 5.1 that Redis embeds,
+ * and values cross to and from Redis with the conversions Redis documents for EVAL.
+ */
+final class LuaScript {
+
+    /**
+     * A compile or runtime error, carrying the error reply EVAL answers with.
+     */
+    static final class LuaException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized, the exception does not leave the keyspace
+        final transient Reply.Error reply;
+
+        LuaException(Reply.Error reply) {
+            super(reply.message(), null, false, false);
+            this.reply = reply;
+        }
+    }
+
+    private static final Pattern NUMERAL = Pattern.compile("[-+]?(\\d+\\.?\\d*|\\.\\d+)([eE][-+]?\\d+)?");
+
+    private final Block body;
+
+    private LuaScript(Block body) {
+        this.body = body;
+    }
+
+    /**
+     * @throws LuaException if the script does not parse
+     */
+    static LuaScript compile(String source) {
+        Parser parser = new Parser(new Lexer(source));
+        Block body = parser.block();
+        parser.expect(Token.EOF);
+        return new LuaScript(body);
+    }
+
+    /**
+     * Runs the script with {@code redis.call} running commands through {@code call}, which answers
+     * with replies as {@link Keyspace} produces them.
+     *
+     * @return the value the script returned, as a reply
+     * @throws LuaException if the script failed
+     */
+    Object run(List<String> keys, List<String> argv, Function<List<String>, Object> call) {
+        Scope globals = new Scope(null);
+        globals.declare("KEYS", table(new ArrayList<>(keys)));
+        globals.declare("ARGV", table(new ArrayList<>(argv)));
+        LuaTable redis = new LuaTable();
+        redis.put("call", (LuaFunction) args -> fromReply(call.apply(command(args)), true));
+        redis.put("pcall", (LuaFunction) args -> fromReply(call.apply(command(args)), false));
+        globals.declare("redis", redis);
+        globals.declare("tonumber", (LuaFunction) args -> toNumber(arg(args, 0)));
+        globals.declare("tostring", (LuaFunction) args -> toDisplayString(arg(args, 0)));
+        globals.declare("type", (LuaFunction) args -> typeName(arg(args, 0)));
+
+        Return result = body.run(new Scope(globals));
+        return toReply(result != null ? result.value() : null);
+    }
+
+    // ---------------------------------------------------------------- values
+
+    private interface LuaFunction {
+        Object call(List<Object> args);
+    }
+
+    private static final class LuaTable {
+        private final Map<Object, Object> fields = new HashMap<>();
+
+        Object get(Object key) {
+            return fields.get(key);
+        }
+
+        void put(Object key, Object value) {
+            if (key == null) {
+                throw runtime("table index is nil");
+            }
+            if (value == null) {
+                fields.remove(key);
+            } else {
+                fields.put(key, value);
+            }
+        }
+
+        int length() {
+            int n = 0;
+            while (fields.containsKey((double) (n + 1))) {
+                n++;
+            }
+            return n;
+        }
+    }
+
+    private static LuaTable table(List<?> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.put((double) (i + 1), values.get(i));
+        }
+        return table;
+    }
+
+    private static Object arg(List<Object> args, int index) {
+        return index < args.size() ? args.get(index) : null;
+    }
+
+    private static boolean isTrue(Object value) {
+        return value != null && !Boolean.FALSE.equals(value);
+    }
+
+    private static String typeName(Object value) {
+        if (value == null) {
+            return "nil";
+        }
+        if (value instanceof Boolean) {
+            return "boolean";
+        }
+        if (value instanceof Double) {
+            return "number";
+        }
+        if (value instanceof String) {
+            return "string";
+        }
+        return value instanceof LuaTable ? "table" : "function";
+    }
+
+    private static Object toNumber(Object value) {
+        if (value instanceof Double) {
+            return value;
+        }
+        if (!(value instanceof String string)) {
+            return null;
+        }
+        String trimmed = string.trim();
+        if (trimmed.startsWith("0x") || trimmed.startsWith("0X")) {
+            try {
+                return (double) Long.parseLong(trimmed.substring(2), 16);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return NUMERAL.matcher(trimmed).matches() ? Double.parseDouble(trimmed) : null;
+    }
+
+    private static String toDisplayString(Object value) {
+        if (value instanceof Double number) {
+            return numberToString(number);
+        }
+        if (value == null || value instanceof Boolean) {
+            return String.valueOf(value == null ? "nil" : value);
+        }
+        return value instanceof String string ? string : typeName(value) + ": " + Integer.toHexString(value.hashCode());
+    }
+
+    // Like Lua's %.14g for the values scripts deal in: integers without a fraction
+    private static String numberToString(double number) {
+        if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+            return Long.toString((long) number);
+        }
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return Double.isNaN(number) ? "nan" : number > 0 ? "inf" : "-inf";
+        }
+        return new BigDecimal(number).round(new MathContext(14)).stripTrailingZeros().toPlainString();
+    }
+
+    private static double arithmetic(Object value, String op) {
+        Object number = toNumber(value);
+        if (number == null) {
+            throw runtime("attempt to perform arithmetic on a " + typeName(value) + " value (" + op + ")");
+        }
+        return (Double) number;
+    }
+
+    private static boolean rawEquals(Object a, Object b) {
+        if (a instanceof Double x && b instanceof Double y) {
+            return x.doubleValue() == y.doubleValue();
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static boolean lessThan(Object a, Object b, boolean orEqual) {
+        if (a instanceof Double x && b instanceof Double y) {
+            return orEqual ? x <= y : x < y;
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return orEqual ? x.compareTo(y) <= 0 : x.compareTo(y) < 0;
+        }
+        throw runtime("attempt to compare " + typeName(a) + " with " + typeName(b));
+    }
+
+    private static String concatenable(Object value) {
+        if (value instanceof String || value instanceof Double) {
+            return toDisplayString(value);
+        }
+        throw runtime("attempt to concatenate a " + typeName(value) + " value");
+    }
+
+    private static LuaException runtime(String message) {
+        return new LuaException(Reply.error("Error running script: " + message));
+    }
+
+    // ---------------------------------------------------------------- conversions to and from Redis
+
+    private static List<String> command(List<Object> args) {
+        if (args.isEmpty()) {
+            throw runtime("Please specify at least one argument for redis.call()");
+        }
+        List<String> command = new ArrayList<>(args.size());
+        for (Object arg : args) {
+            if (!(arg instanceof String) && !(arg instanceof Double)) {
+                throw runtime("Lua redis() command arguments must be strings or integers");
+            }
+            command.add(toDisplayString(arg));
+        }
+        return command;
+    }
+
+    /**
+     * @param raise whether an error reply raises, like redis.call, or is returned as a table, like redis.pcall
+     */
+    private static Object fromReply(Object reply, boolean raise) {
+        if (reply instanceof Reply.Error error) {
+            if (raise) {
+                throw new LuaException(error);
+            }
+            LuaTable table = new LuaTable();
+            table.put("err", error.message());
+            return table;
+        }
+        if (reply instanceof Long || reply instanceof Integer) {
+            return ((Number) reply).doubleValue();
+        }
+        if (reply instanceof Boolean b) {
+            return b ? 1.0 : 0.0;
+        }
+        if (reply instanceof String) {
+            return reply;
+        }
+        if (reply instanceof Reply.Simple simple) {
+            LuaTable table = new LuaTable();
+            table.put("ok", simple.value());
+            return table;
+        }
+        if (reply instanceof List<?> array) {
+            List<Object> values = new ArrayList<>(array.size());
+            for (Object element : array) {
+                values.add(fromReply(element, raise));
+            }
+            return table(values);
+        }
+        return Boolean.FALSE; // Null bulk and null array
+    }
+
+    private static Object toReply(Object value) {
+        if (value instanceof Double number) {
+            return (long) number.doubleValue();
+        }
+        if (value instanceof String) {
+            return value;
+        }
+        if (Boolean.TRUE.equals(value)) {
+            return 1L;
+        }
+        if (value instanceof LuaTable table) {
+            if (table.get("err") instanceof String error) {
+                return new Reply.Error(error);
+            }
+            if (table.get("ok") instanceof String status) {
+                return new Reply.Simple(status);
+            }
+            List<Object> array = new ArrayList<>();
+            for (int i = 1; i <= table.length(); i++) {
+                array.add(toReply(table.get((double) i)));
+            }
+            return array;
+        }
+        return Reply.NULL_BULK; // nil, false and functions
+    }
+
+    // ---------------------------------------------------------------- scopes and the compiled tree
+
+    private static final class Scope {
+        private final Scope parent;
+        private final Map<String, Object[]> locals = new HashMap<>();
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        void declare(String name, Object value) {
+            locals.put(name, new Object[]{value});
+        }
+
+        Object[] lookup(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                Object[] cell = scope.locals.get(name);
+                if (cell != null) {
+                    return cell;
+                }
+            }
+            return null;
+        }
+    }
+
+    private record Return(Object value) {
+    }
+
+    private interface Expression {
+        Object eval(Scope scope);
+    }
+
+    private interface Statement {
+        /**
+         * @return the returned value when the statement returned, null to go on
+         */
+        Return run(Scope scope);
+    }
+
+    private interface Assignment {
+        void assign(Scope scope, Object value);
+    }
+
+    private record Block(List<Statement> statements) {
+        Return run(Scope scope) {
+            for (Statement statement : statements) {
+                Return result = statement.run(scope);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+    }
+
+    // A parsed prefix expression: readable, and assignable or callable depending on its last suffix
+    private record Target(Expression read, Assignment assign, boolean isCall) {
+    }
+
+    // ---------------------------------------------------------------- lexer
+
+    private enum Token {
+        NAME, NUMBER, STRING, SYMBOL, EOF
+    }
+
+    private static final class Lexer {
+        private final String source;
+        private int position;
+        private int line = 1;
+        Token token;
+        String text;
+
+        Lexer(String source) {
+            this.source = source;
+            next();
+        }
+
+        void next() {
+            skipSpaceAndComments();
+            if (position >= source.length()) {
+                token = Token.EOF;
+                text = "<eof>";
+                return;
+            }
+            char c = source.charAt(position);
+            int start = position;
+            if (Character.isLetter(c) || c == '_') {
+                while (position < source.length()
+                        && (Character.isLetterOrDigit(source.charAt(position)) || source.charAt(position) == '_')) {
+                    position++;
+                }
+                token = Token.NAME;
+                text = source.substring(start, position);
+            } else if (Character.isDigit(c) || c == '.' && position + 1 < source.length()
+                    && Character.isDigit(source.charAt(position + 1))) {
+                while (position < source.length() && (Character.isLetterOrDigit(source.charAt(position))
+                        || source.charAt(position) == '.'
+                        || (source.charAt(position) == '-' || source.charAt(position) == '+')
+                        && (source.charAt(position - 1) == 'e' || source.charAt(position - 1) == 'E'))) {
+                    position++;
+                }
+                token = Token.NUMBER;
+                text = source.substring(start, position);
+                if (toNumber(text) == null) {
+                    throw error("malformed number near '" + text + "'");
+                }
+            } else if (c == '"' || c == '\'') {
+                token = Token.STRING;
+                text = readString(c);
+            } else {
+                for (String symbol : new String[]{"...", "..", "==", "~=", "<=", ">="}) {
+                    if (source.startsWith(symbol, position)) {
+                        position += symbol.length();
+                        token = Token.SYMBOL;
+                        text = symbol;
+                        return;
+                    }
+                }
+                if ("+-*/%^#<>=(){}[];:,.".indexOf(c) < 0) {
+                    throw error("unexpected symbol near '" + c + "'");
+                }
+                position++;
+                token = Token.SYMBOL;
+                text = String.valueOf(c);
+            }
+        }
+
+        private void skipSpaceAndComments() {
+            while (position < source.length()) {
+                char c = source.charAt(position);
+                if (c == '\n') {
+                    line++;
+                    position++;
+                } else if (Character.isWhitespace(c)) {
+                    position++;
+                } else if (source.startsWith("--[[", position)) {
+                    int end = source.indexOf("]]", position);
+                    if (end < 0) {
+                        throw error("unfinished long comment");
+                    }
+                    line += (int) source.substring(position, end).chars().filter(ch -> ch == '\n').count();
+                    position = end + 2;
+                } else if (source.startsWith("--", position)) {
+                    while (position < source.length() && source.charAt(position) != '\n') {
+                        position++;
+                    }
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private String readString(char quote) {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= source.length() || source.charAt(position) == '\n') {
+                    throw error("unfinished string");
+                }
+                char c = source.charAt(position++);
+                if (c == quote) {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                char escaped = position < source.length() ? source.charAt(position++) : quote;
+                switch (escaped) {
+                    case 'n' -> value.append('\n');
+                    case 't' -> value.append('\t');
+                    case 'r' -> value.append('\r');
+                    case '0' -> value.append('\0');
+                    case '\\', '"', '\'' -> value.append(escaped);
+                    default -> throw error("invalid escape sequence '\\" + escaped + "'");
+                }
+            }
+        }
+
+        LuaException error(String message) {
+            return new LuaException(Reply.error("Error compiling script: user_script:" + line + ": " + message));
+        }
+    }
+
+    // ---------------------------------------------------------------- parser
+
+    private static final class Parser {
+        private final Lexer lexer;
+
+        Parser(Lexer lexer) {
+            this.lexer = lexer;
+        }
+
+        private boolean check(String text) {
+            return (lexer.token == Token.SYMBOL || lexer.token == Token.NAME) && lexer.text.equals(text);
+        }
+
+        private boolean accept(String text) {
+            if (check(text)) {
+                lexer.next();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String text) {
+            if (!accept(text)) {
+                throw lexer.error("'" + text + "' expected near '" + lexer.text + "'");
+            }
+        }
+
+        void expect(Token token) {
+            if (lexer.token != token) {
+                throw lexer.error("'<eof>' expected near '" + lexer.text + "'");
+            }
+        }
+
+        private String name() {
+            if (lexer.token != Token.NAME) {
+                throw lexer.error("<name> expected near '" + lexer.text + "'");
+            }
+            String name = lexer.text;
+            lexer.next();
+            return name;
+        }
+
+        private boolean blockEnds() {
+            return lexer.token == Token.EOF || check("end") || check("else") || check("elseif");
+        }
+
+        Block block() {
+            List<Statement> statements = new ArrayList<>();
+            while (!blockEnds()) {
+                if (accept("return")) {
+                    Expression value = blockEnds() || check(";") ? scope -> null : expression();
+                    accept(";");
+                    statements.add(scope -> new Return(value.eval(scope)));
+                    if (!blockEnds()) {
+                        throw lexer.error("'end' expected near '" + lexer.text + "'");
+                    }
+                    break;
+                }
+                statements.add(statement());
+                accept(";");
+            }
+            return new Block(statements);
+        }
+
+        // Runs a nested block in its own scope, so its locals end with it
+        private Statement scoped(Block block) {
+            return scope -> block.run(new Scope(scope));
+        }
+
+        private Statement statement() {
+            if (accept("local")) {
+                String name = name();
+                Expression value = accept("=") ? expression() : scope -> null;
+                return scope -> {
+                    scope.declare(name, value.eval(scope));
+                    return null;
+                };
+            }
+            if (accept("if")) {
+                List<Expression> conditions = new ArrayList<>();
+                List<Block> branches = new ArrayList<>();
+                do {
+                    conditions.add(expression());
+                    expect("then");
+                    branches.add(block());
+                } while (accept("elseif"));
+                Block otherwise = accept("else") ? block() : new Block(List.of());
+                expect("end");
+                return scope -> {
+                    for (int i = 0; i < conditions.size(); i++) {
+                        if (isTrue(conditions.get(i).eval(scope))) {
+                            return scoped(branches.get(i)).run(scope);
+                        }
+                    }
+                    return scoped(otherwise).run(scope);
+                };
+            }
+            if (accept("while")) {
+                Expression condition = expression();
+                expect("do");
+                Block body = block();
+                expect("end");
+                return scope -> {
+                    while (isTrue(condition.eval(scope))) {
+                        Return result = scoped(body).run(scope);
+                        if (result != null) {
+                            return result;
+                        }
+                    }
+                    return null;
+                };
+            }
+            if (accept("for")) {
+                return numericFor();
+            }
+            if (accept("do")) {
+                Block body = block();
+                expect("end");
+                return scoped(body);
+            }
+
+            Target target = suffixedExpression();
+            if (accept("=")) {
+                if (target.assign() == null) {
+                    throw lexer.error("syntax error near '='");
+                }
+                Expression value = expression();
+                return scope -> {
+                    target.assign().assign(scope, value.eval(scope));
+                    return null;
+                };
+            }
+            if (!target.isCall()) {
+                throw lexer.error("syntax error near '" + lexer.text + "'");
+            }
+            return scope -> {
+                target.read().eval(scope);
+                return null;
+            };
+        }
+
+        private Statement numericFor() {
+            String name = name();
+            expect("=");
+            Expression from = expression();
+            expect(",");
+            Expression to = expression();
+            Expression step = accept(",") ? expression() : scope -> 1.0;
+            expect("do");
+            Block body = block();
+            expect("end");
+            return scope -> {
+                double first = arithmetic(from.eval(scope), "'for' initial value");
+                double limit = arithmetic(to.eval(scope), "'for' limit");
+                double increment = arithmetic(step.eval(scope), "'for' step");
+                for (double i = first; increment > 0 ? i <= limit : i >= limit; i += increment) {
+                    Scope inner = new Scope(scope);
+                    inner.declare(name, i);
+                    Return result = body.run(inner);
+                    if (result != null) {
+                        return result;
+                    }
+                }
+                return null;
+            };
+        }
+
+        private Expression expression() {
+            return subExpression(0);
+        }
+
+        // Operator priorities of Lua 5.1, left and right
+        private static final Map<String, int[]> BINARY = Map.ofEntries(
+                Map.entry("or", new int[]{1, 1}), Map.entry("and", new int[]{2, 2}),
+                Map.entry("<", new int[]{3, 3}), Map.entry(">", new int[]{3, 3}),
+                Map.entry("<=", new int[]{3, 3}), Map.entry(">=", new int[]{3, 3}),
+                Map.entry("==", new int[]{3, 3}), Map.entry("~=", new int[]{3, 3}),
+                Map.entry("..", new int[]{5, 4}),
+                Map.entry("+", new int[]{6, 6}), Map.entry("-", new int[]{6, 6}),
+                Map.entry("*", new int[]{7, 7}), Map.entry("/", new int[]{7, 7}), Map.entry("%", new int[]{7, 7}),
+                Map.entry("^", new int[]{10, 9}));
+        private static final int UNARY_PRIORITY = 8;
+
+        private Expression subExpression(int limit) {
+            Expression left;
+            if (accept("not")) {
+                Expression operand = subExpression(UNARY_PRIORITY);
+                left = scope -> !isTrue(operand.eval(scope));
+            } else if (accept("-")) {
+                Expression operand = subExpression(UNARY_PRIORITY);
+                left = scope -> -arithmetic(operand.eval(scope), "unm");
+            } else if (accept("#")) {
+                Expression operand = subExpression(UNARY_PRIORITY);
+                left = scope -> length(operand.eval(scope));
+            } else {
+                left = simpleExpression();
+            }
+
+            while ((lexer.token == Token.SYMBOL || lexer.token == Token.NAME) && BINARY.containsKey(lexer.text)
+                    && BINARY.get(lexer.text)[0] > limit) {
+                String op = lexer.text;
+                lexer.next();
+                Expression right = subExpression(BINARY.get(op)[1]);
+                left = binary(op, left, right);
+            }
+            return left;
+        }
+
+        private static Object length(Object value) {
+            if (value instanceof String string) {
+                return (double) string.length();
+            }
+            if (value instanceof LuaTable table) {
+                return (double) table.length();
+            }
+            throw runtime("attempt to get length of a " + typeName(value) + " value");
+        }
+
+        private static Expression binary(String op, Expression left, Expression right) {
+            return switch (op) {
+                case "or" -> scope -> {
+                    Object value = left.eval(scope);
+                    return isTrue(value) ? value : right.eval(scope);
+                };
+                case "and" -> scope -> {
+                    Object value = left.eval(scope);
+                    return isTrue(value) ? right.eval(scope) : value;
+                };
+                case "==" -> scope -> rawEquals(left.eval(scope), right.eval(scope));
+                case "~=" -> scope -> !rawEquals(left.eval(scope), right.eval(scope));
+                case "<" -> scope -> lessThan(left.eval(scope), right.eval(scope), false);
+                case "<=" -> scope -> lessThan(left.eval(scope), right.eval(scope), true);
+                case ">" -> scope -> lessThan(right.eval(scope), left.eval(scope), false);
+                case ">=" -> scope -> lessThan(right.eval(scope), left.eval(scope), true);
+                case ".." -> scope -> concatenable(left.eval(scope)) + concatenable(right.eval(scope));
+                default -> scope -> {
+                    double a = arithmetic(left.eval(scope), op);
+                    double b = arithmetic(right.eval(scope), op);
+                    return switch (op) {
+                        case "+" -> a + b;
+                        case "-" -> a - b;
+                        case "*" -> a * b;
+                        case "/" -> a / b;
+                        case "%" -> a - Math.floor(a / b) * b;
+                        default -> Math.pow(a, b);
+                    };
+                };
+            };
+        }
+
+        private Expression simpleExpression() {
+            if (lexer.token == Token.NUMBER) {
+                Object number = toNumber(lexer.text);
+                lexer.next();
+                return scope -> number;
+            }
+            if (lexer.token == Token.STRING) {
+                String string = lexer.text;
+                lexer.next();
+                return scope -> string;
+            }
+            if (accept("nil")) {
+                return scope -> null;
+            }
+            if (accept("true")) {
+                return scope -> Boolean.TRUE;
+            }
+            if (accept("false")) {
+                return scope -> Boolean.FALSE;
+            }
+            if (check("{")) {
+                return tableConstructor();
+            }
+            if (check("function") || check("...")) {
+                throw lexer.error("'" + lexer.text + "' is not supported by this server");
+            }
+            return suffixedExpression().read();
+        }
+
+        private Expression tableConstructor() {
+            expect("{");
+            List<Expression> keys = new ArrayList<>();
+            List<Expression> values = new ArrayList<>();
+            double index = 1;
+            while (!check("}")) {
+                if (accept("[")) {
+                    keys.add(expression());
+                    expect("]");
+                    expect("=");
+                } else {
+                    double position = index++;
+                    keys.add(scope -> position);
+                }
+                values.add(expression());
+                if (!accept(",") && !accept(";")) {
+                    break;
+                }
+            }
+            expect("}");
+            return scope -> {
+                LuaTable table = new LuaTable();
+                for (int i = 0; i < keys.size(); i++) {
+                    table.put(keys.get(i).eval(scope), values.get(i).eval(scope));
+                }
+                return table;
+            };
+        }
+
+        private static boolean isKeyword(String name) {
+            return switch (name) {
+                case "and", "or", "not", "nil", "true", "false", "function", "local", "if", "then", "else",
+                     "elseif", "end", "while", "do", "for", "return", "break", "repeat", "until", "in" -> true;
+                default -> false;
+            };
+        }
+
+        private Target suffixedExpression() {
+            Target target;
+            if (accept("(")) {
+                Expression inner = expression();
+                expect(")");
+                target = new Target(inner, null, false);
+            } else {
+                String name = name();
+                if (isKeyword(name)) {
+                    throw lexer.error("unexpected symbol near '" + name + "'");
+                }
+                target = new Target(scope -> {
+                    Object[] cell = scope.lookup(name);
+                    if (cell == null) {
+                        throw runtime("Script attempted to access nonexistent global variable '" + name + "'");
+                    }
+                    return cell[0];
+                }, (scope, value) -> {
+                    Object[] cell = scope.lookup(name);
+                    if (cell == null) {
+                        throw runtime("Script attempted to create global variable '" + name + "'");
+                    }
+                    cell[0] = value;
+                }, false);
+            }
+
+            while (true) {
+                Expression object = target.read();
+                if (accept(".")) {
+                    String field = name();
+                    target = indexed(object, scope -> field);
+                } else if (accept("[")) {
+                    Expression key = expression();
+                    expect("]");
+                    target = indexed(object, key);
+                } else if (accept("(")) {
+                    List<Expression> args = new ArrayList<>();
+                    if (!check(")")) {
+                        do {
+                            args.add(expression());
+                        } while (accept(","));
+                    }
+                    expect(")");
+                    target = new Target(scope -> {
+                        Object function = object.eval(scope);
+                        if (!(function instanceof LuaFunction luaFunction)) {
+                            throw runtime("attempt to call a " + typeName(function) + " value");
+                        }
+                        List<Object> values = new ArrayList<>(args.size());
+                        for (Expression arg : args) {
+                            values.add(arg.eval(scope));
+                        }
+                        return luaFunction.call(values);
+                    }, null, true);
+                } else {
+                    return target;
+                }
+            }
+        }
+
+        private static Target indexed(Expression object, Expression key) {
+            return new Target(scope -> {
+                Object table = object.eval(scope);
+                if (!(table instanceof LuaTable luaTable)) {
+                    throw runtime("attempt to index a " + typeName(table) + " value");
+                }
+                return luaTable.get(key.eval(scope));
+            }, (scope, value) -> {
+                Object table = object.eval(scope);
+                if (!(table instanceof LuaTable luaTable)) {
+                    throw runtime("attempt to index a " + typeName(table) + " value");
+                }
+                luaTable.put(key.eval(scope), value);
+            }, false);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.redis.embedded;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * RESP2 replies. Bulk strings are Java strings holding one char per byte (ISO-8859-1), so binary
+ * values such as BITFIELD counters survive the round trip unchanged.
+ */
+final class Reply {
+
+    record Simple(String value) {
+    }
+
+    record Error(String message) {
+    }
+
+    static final Simple OK = new Simple("OK");
+    static final Simple QUEUED = new Simple("QUEUED");
+    static final Object NULL_BULK = new Object();
+    static final Object NULL_ARRAY = new Object();
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private Reply() {
+    }
+
+    static Error error(String message) {
+        return new Error("ERR " + message);
+    }
+
+    static Error wrongType() {
+        return new Error("WRONGTYPE Operation against a key holding the wrong kind of value");
+    }
+
+    static Object bulk(String value) {
+        return value != null ? value : NULL_BULK;
+    }
+
+    static void write(OutputStream out, Object reply) throws IOException {
+        if (reply instanceof Simple simple) {
+            writeLine(out, '+', simple.value());
+        } else if (reply instanceof Error error) {
+            writeLine(out, '-', error.message());
+        } else if (reply instanceof Long || reply instanceof Integer || reply instanceof Boolean) {
+            writeLine(out, ':', reply instanceof Boolean b ? (b ? "1" : "0") : reply.toString());
+        } else if (reply instanceof String bulk) {
+            writeLine(out, '$', Integer.toString(bulk.length()));
+            out.write(bulk.getBytes(StandardCharsets.ISO_8859_1));
+            out.write(CRLF);
+        } else if (reply instanceof List<?> array) {
+            writeLine(out, '*', Integer.toString(array.size()));
+            for (Object element : array) {
+                write(out, element);
+            }
+        } else if (reply == NULL_ARRAY) {
+            writeLine(out, '*', "-1");
+        } else if (reply == NULL_BULK || reply == null) {
+            writeLine(out, '$', "-1");
+        } else {
+            throw new IllegalArgumentException("Unsupported reply " + reply.getClass());
+        }
+    }
+
+    private static void writeLine(OutputStream out, char type, String value) throws IOException {
+        out.write(type);
+        out.write(value.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(CRLF);
+    }
+}
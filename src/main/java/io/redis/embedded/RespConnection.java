@@ -0,0 +1,168 @@
+package io.redis.embedded;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One client connection: parses RESP requests, keeps the MULTI queue and WATCHed keys, and hands
+ * everything else to the keyspace. The connection state outlives the streams, so in-process clients
+ * can serve every batch of requests they flush from a fresh buffer.
+ */
+class RespConnection {
+
+    private final Keyspace keyspace;
+    private InputStream in;
+    private OutputStream out;
+
+    private List<List<String>> queued; // Non-null while inside MULTI
+    private boolean queueingFailed;
+    private final Map<String, Long> watched = new HashMap<>();
+
+    RespConnection(Keyspace keyspace) {
+        this.keyspace = keyspace;
+    }
+
+    /**
+     * Answers requests until the input ends or the client quits.
+     *
+     * @return false once the client sent QUIT
+     */
+    boolean serve(InputStream in, OutputStream out) throws IOException {
+        this.in = in;
+        this.out = out;
+        while (true) {
+            List<String> command;
+            try {
+                command = readCommand();
+            } catch (EOFException e) {
+                out.flush();
+                return true;
+            }
+            if (command.isEmpty()) {
+                continue;
+            }
+            String name = command.get(0).toUpperCase(Locale.ROOT);
+            Reply.write(out, handle(name, command));
+            // Pipelined requests are answered in one write
+            if (in.available() == 0) {
+                out.flush();
+            }
+            if (name.equals("QUIT")) {
+                out.flush();
+                return false;
+            }
+        }
+    }
+
+    private Object handle(String name, List<String> command) {
+        switch (name) {
+            case "MULTI":
+                if (queued != null) {
+                    return Reply.error("MULTI calls can not be nested");
+                }
+                queued = new ArrayList<>();
+                queueingFailed = false;
+                return Reply.OK;
+            case "EXEC":
+                return exec();
+            case "DISCARD":
+                if (queued == null) {
+                    return Reply.error("DISCARD without MULTI");
+                }
+                queued = null;
+                watched.clear();
+                return Reply.OK;
+            case "WATCH":
+                if (queued != null) {
+                    return Reply.error("WATCH inside MULTI is not allowed");
+                }
+                watched.putAll(keyspace.versions(command.subList(1, command.size())));
+                return Reply.OK;
+            case "UNWATCH":
+                watched.clear();
+                return Reply.OK;
+            case "QUIT":
+                return Reply.OK;
+            default:
+                if (queued != null) {
+                    if (!keyspace.isKnownCommand(name)) {
+                        queueingFailed = true;
+                        return Reply.error("unknown command '" + command.get(0) + "'");
+                    }
+                    queued.add(command);
+                    return Reply.QUEUED;
+                }
+                return keyspace.execute(command);
+        }
+    }
+
+    private Object exec() {
+        if (queued == null) {
+            return Reply.error("EXEC without MULTI");
+        }
+        List<List<String>> commands = queued;
+        queued = null;
+        Map<String, Long> watchedVersions = new HashMap<>(watched);
+        watched.clear();
+        if (queueingFailed) {
+            return new Reply.Error("EXECABORT Transaction discarded because of previous errors.");
+        }
+        Object replies = keyspace.executeIfUnchanged(watchedVersions, commands);
+        return replies != null ? replies : Reply.NULL_ARRAY;
+    }
+
+    private List<String> readCommand() throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            throw new EOFException();
+        }
+        if (type != '*') {
+            // Inline command, as typed in telnet
+            String line = (char) type + readLine();
+            List<String> command = new ArrayList<>();
+            for (String part : line.trim().split("\\s+")) {
+                if (!part.isEmpty()) {
+                    command.add(part);
+                }
+            }
+            return command;
+        }
+
+        int count = Integer.parseInt(readLine());
+        List<String> command = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Protocol error: expected bulk string");
+            }
+            int length = Integer.parseInt(readLine());
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException();
+            }
+            readLine();
+            command.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        return command;
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            line.append((char) b);
+        }
+        in.read(); // '\n'
+        return line.toString();
+    }
+}
@@ -0,0 +1,32 @@
+package io.redis.embedded;
+
+/**
+ * A min or max argument of the score range commands, e.g. {@code 5}, {@code (5} or {@code -inf}.
+ */
+record ScoreBound(double value, boolean exclusive) {
+
+    static ScoreBound parse(String bound) {
+        if (bound.startsWith("(")) {
+            return new ScoreBound(parseDouble(bound.substring(1)), true);
+        }
+        return new ScoreBound(parseDouble(bound), false);
+    }
+
+    static double parseDouble(String value) {
+        return switch (value.toLowerCase()) {
+            case "inf", "+inf" -> Double.POSITIVE_INFINITY;
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            default -> Double.parseDouble(value);
+        };
+    }
+
+    // As a lower bound
+    boolean isAboveOrAt(double score) {
+        return exclusive ? score > value : score >= value;
+    }
+
+    // As an upper bound
+    boolean isBelowOrAt(double score) {
+        return exclusive ? score < value : score <= value;
+    }
+}
@@ -0,0 +1,98 @@
+package io.redis.embedded;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sorted set ordered by score, then member, as in Redis.
+ */
+class SortedSetValue {
+
+    record Member(String name, double score) {
+    }
+
+    private static final Comparator<Member> ORDER =
+            Comparator.comparingDouble(Member::score).thenComparing(Member::name);
+
+    private final Map<String, Double> scores = new HashMap<>();
+    private final TreeSet<Member> ordered = new TreeSet<>(ORDER);
+
+    Double score(String member) {
+        return scores.get(member);
+    }
+
+    void put(String member, double score) {
+        Double previous = scores.put(member, score);
+        if (previous != null) {
+            ordered.remove(new Member(member, previous));
+        }
+        ordered.add(new Member(member, score));
+    }
+
+    boolean remove(String member) {
+        Double previous = scores.remove(member);
+        if (previous == null) {
+            return false;
+        }
+        ordered.remove(new Member(member, previous));
+        return true;
+    }
+
+    int size() {
+        return scores.size();
+    }
+
+    boolean isEmpty() {
+        return scores.isEmpty();
+    }
+
+    int rank(String member) {
+        return ordered.headSet(new Member(member, scores.get(member))).size();
+    }
+
+    List<Member> byScore(ScoreBound min, ScoreBound max) {
+        List<Member> members = new ArrayList<>();
+        for (Member member : ordered.tailSet(new Member("", min.value()), true)) {
+            if (!max.isBelowOrAt(member.score())) {
+                break;
+            }
+            if (min.isAboveOrAt(member.score())) {
+                members.add(member);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Members between two ranks, inclusive, where negative ranks count from the end.
+     */
+    List<Member> byRank(long start, long stop, boolean reverse) {
+        int size = ordered.size();
+        if (start < 0) {
+            start = Math.max(0, size + start);
+        }
+        if (stop < 0) {
+            stop = size + stop;
+        }
+        stop = Math.min(stop, size - 1);
+        List<Member> members = new ArrayList<>();
+        if (start > stop) {
+            return members;
+        }
+        int rank = 0;
+        for (Member member : reverse ? ordered.descendingSet() : ordered) {
+            if (rank > stop) {
+                break;
+            }
+            if (rank >= start) {
+                members.add(member);
+            }
+            rank++;
+        }
+        return members;
+    }
+}
@@ -0,0 +1,70 @@
+package io.redis.events;
+
+/**
+ * One allow/deny decision. Instances are slots preallocated by the {@link DecisionEventRing} and
+ * overwritten in place, so publishing allocates nothing.
+ */
+public final class DecisionEvent {
+
+    private long sequence;
+    private long timestampMillis;
+    private String clientId;
+    private String algorithm;
+    private boolean allowed;
+    private long remaining;
+    private long latencyNanos;
+
+    DecisionEvent() {
+    }
+
+    void set(long sequence, long timestampMillis, String clientId, String algorithm, boolean allowed,
+             long remaining, long latencyNanos) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.clientId = clientId;
+        this.algorithm = algorithm;
+        this.allowed = allowed;
+        this.remaining = remaining;
+        this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * @return position of the event in the stream, gaps mean events were dropped in between
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * @return requests the client could still make after this decision, or -1 if the limiter does not tell
+     */
+    public long getRemaining() {
+        return remaining;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "DecisionEvent{sequence=" + sequence + ", clientId=" + clientId + ", algorithm=" + algorithm
+                + ", allowed=" + allowed + ", remaining=" + remaining + ", latencyNanos=" + latencyNanos + "}";
+    }
+}
@@ -0,0 +1,152 @@
+package io.redis.events;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands decision events from request threads to listeners on a background consumer thread through
+ * a preallocated ring of {@link DecisionEvent} slots. Publishers claim a sequence number with a CAS,
+ * fill the slot in place and mark it published; nothing is allocated and no lock is taken. The
+ * consumer hands slots to the listeners in sequence order and frees them once every listener is done.
+ * <p>
+ * When the consumer is a whole ring behind, {@link OverflowPolicy#DROP} discards new events and counts
+ * them, so instrumentation never slows down decisions; {@link OverflowPolicy#WAIT} makes publishers
+ * spin until a slot frees up instead, for audit trails that must be complete.
+ * <p>
+ * An idle consumer spins briefly and then parks until a publisher unparks it, so a quiet ring costs
+ * no wakeups; publishers only pay for the unpark when the consumer is actually parked.
+ */
+public class DecisionEventRing implements AutoCloseable {
+
+    public enum OverflowPolicy {
+        DROP,
+        WAIT
+    }
+
+    private static final int IDLE_SPINS = 100; // Before the consumer parks, short gaps between events stay cheap
+
+    private final DecisionEvent[] slots;
+    private final AtomicLongArray published; // Sequence last published in each slot
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final List<DecisionListener> listeners;
+
+    private final AtomicLong claimed = new AtomicLong(); // Next sequence to hand to a publisher
+    private final AtomicLong consumed = new AtomicLong(); // Next sequence the consumer will read
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong listenerFailures = new AtomicLong();
+    private final Thread consumer;
+    private volatile boolean running = true;
+    private volatile boolean consumerParked;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public DecisionEventRing(int capacity, OverflowPolicy overflowPolicy, List<DecisionListener> listeners) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new DecisionEvent[size];
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new DecisionEvent();
+            published.set(i, -1);
+        }
+        this.mask = size - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.listeners = List.copyOf(listeners);
+        this.consumer = Thread.ofPlatform().name("decision-event-consumer").daemon().start(this::consume);
+    }
+
+    /**
+     * @return false if the event was dropped because the ring is full
+     */
+    public boolean publish(String clientId, String algorithm, boolean allowed, long remaining, long latencyNanos) {
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed.get() >= slots.length) {
+                if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                Thread.onSpinWait();
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+
+        int index = (int) sequence & mask;
+        slots[index].set(sequence, System.currentTimeMillis(), clientId, algorithm, allowed, remaining, latencyNanos);
+        published.set(index, sequence); // Volatile write, makes the slot's fields visible to the consumer
+        if (consumerParked) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getListenerFailures() {
+        return listenerFailures.get();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Stops accepting events, delivers what was already published and stops the consumer.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        long next = 0;
+        int idleSpins = 0;
+        while (true) {
+            int index = (int) next & mask;
+            if (published.get(index) == next) {
+                DecisionEvent event = slots[index];
+                for (DecisionListener listener : listeners) {
+                    try {
+                        listener.onDecision(event);
+                    } catch (RuntimeException e) {
+                        // A broken listener must not stop delivery to the others
+                        listenerFailures.incrementAndGet();
+                    }
+                }
+                consumed.set(++next);
+                idleSpins = 0;
+            } else if (!running && next == claimed.get()) {
+                return;
+            } else if (idleSpins++ < IDLE_SPINS) {
+                // Either idle or a publisher is between claiming and publishing
+                Thread.onSpinWait();
+            } else {
+                // Announce the park before checking once more, so a publish in between is never missed
+                consumerParked = true;
+                if (published.get(index) != next && running) {
+                    LockSupport.park(this);
+                }
+                consumerParked = false;
+                idleSpins = 0;
+            }
+        }
+    }
+}
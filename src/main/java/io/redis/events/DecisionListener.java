@@ -0,0 +1,16 @@
+package io.redis.events;
+
+/**
+ * Receives every decision published to a {@link DecisionEventRing}, on the ring's consumer thread.
+ * Listeners may take their time, the hot path never waits for them; if they fall behind by more
+ * than the ring's capacity, events are dropped (or, with {@link DecisionEventRing.OverflowPolicy#WAIT},
+ * publishers slow down).
+ */
+@FunctionalInterface
+public interface DecisionListener {
+
+    /**
+     * @param event only valid during the call, the ring reuses it for a later decision; copy what you keep
+     */
+    void onDecision(DecisionEvent event);
+}
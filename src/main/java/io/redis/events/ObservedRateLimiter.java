@@ -0,0 +1,44 @@
+package io.redis.events;
+
+import io.redis.PipelinedRateLimiter;
+import io.redis.RateLimiter;
+
+/**
+ * Publishes every decision of the wrapped limiter to a {@link DecisionEventRing}. Publishing costs a
+ * CAS and a few field writes; listeners run later on the ring's consumer thread.
+ * <p>
+ * The remaining capacity is reported for {@link PipelinedRateLimiter}s, which compute it anyway,
+ * and as -1 for other limiters.
+ */
+public class ObservedRateLimiter implements RateLimiter {
+
+    private final RateLimiter delegate;
+    private final String algorithm;
+    private final DecisionEventRing ring;
+
+    public ObservedRateLimiter(RateLimiter delegate, DecisionEventRing ring) {
+        this(delegate, delegate.getClass().getSimpleName(), ring);
+    }
+
+    public ObservedRateLimiter(RateLimiter delegate, String algorithm, DecisionEventRing ring) {
+        this.delegate = delegate;
+        this.algorithm = algorithm;
+        this.ring = ring;
+    }
+
+    public boolean isAllowed(String clientId) {
+        long start = System.nanoTime();
+        boolean isAllowed;
+        long remaining;
+        if (delegate instanceof PipelinedRateLimiter pipelined) {
+            PipelinedRateLimiter.Decision decision = pipelined.decide(clientId);
+            isAllowed = decision.allowed();
+            remaining = decision.remaining();
+        } else {
+            isAllowed = delegate.isAllowed(clientId);
+            remaining = -1;
+        }
+        ring.publish(clientId, algorithm, isAllowed, remaining, System.nanoTime() - start);
+        return isAllowed;
+    }
+}
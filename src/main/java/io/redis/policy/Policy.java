@@ -0,0 +1,40 @@
+package io.redis.policy;
+
+import io.redis.RateLimiter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One rule: which requests it covers, what identifies a caller, and the limiter that decides.
+ *
+ * @param path    pattern of {@code /}-separated segments: literals, {@code *} or {@code {name}} for any
+ *                single segment, and a trailing {@code **} for any number of remaining segments
+ * @param methods HTTP methods covered, empty for all
+ * @param match   request attributes that must have exactly these values, e.g. {@code tier=free}
+ * @param key     path parameters or request attributes that together identify a caller, empty to share
+ *                one limit between all callers of the rule
+ */
+public record Policy(String name, String path, Set<String> methods, Map<String, String> match, List<String> key,
+                     RateLimiter limiter) {
+
+    boolean appliesTo(PolicyRequest request) {
+        if (!methods.isEmpty() && !methods.contains(request.method())) {
+            return false;
+        }
+        for (Map.Entry<String, String> condition : match.entrySet()) {
+            if (!condition.getValue().equals(request.attributes().get(condition.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Number of conditions besides the path, a rule with more of them is more specific.
+     */
+    int conditionCount() {
+        return (methods.isEmpty() ? 0 : 1) + match.size();
+    }
+}
@@ -0,0 +1,128 @@
+package io.redis.policy;
+
+import io.redis.BucketOptions;
+import io.redis.FixedWindowRateLimiter;
+import io.redis.LeakyBucketRateLimiter;
+import io.redis.RateLimiter;
+import io.redis.SlidingWindowCounterRateLimiter;
+import io.redis.SlidingWindowLogRateLimiter;
+import io.redis.TokenBucketRateLimiter;
+import redis.clients.jedis.Jedis;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Turns {@code policy.<name>.<setting>} properties into policies, each with its own limiter.
+ */
+final class PolicyConfig {
+
+    private static final String PREFIX = "policy.";
+    private static final Set<String> SETTINGS = Set.of("path", "methods", "key", "algorithm",
+            "limit", "window", "subWindow", "capacity", "rate");
+
+    private PolicyConfig() {
+    }
+
+    static List<Policy> parse(Properties properties, Jedis jedis, Clock clock) {
+        Map<String, Map<String, String>> settingsByPolicy = new TreeMap<>();
+        for (String property : properties.stringPropertyNames()) {
+            int dot = property.indexOf('.', PREFIX.length());
+            if (!property.startsWith(PREFIX) || dot < 0) {
+                throw new IllegalArgumentException("Unexpected property " + property);
+            }
+            String setting = property.substring(dot + 1);
+            if (!SETTINGS.contains(setting) && !setting.startsWith("match.")) {
+                throw new IllegalArgumentException("Unknown setting " + property);
+            }
+            settingsByPolicy.computeIfAbsent(property.substring(PREFIX.length(), dot), name -> new HashMap<>())
+                    .put(setting, properties.getProperty(property).trim());
+        }
+
+        List<Policy> policies = new ArrayList<>();
+        settingsByPolicy.forEach((name, settings) -> policies.add(policy(name, settings, jedis, clock)));
+        return policies;
+    }
+
+    private static Policy policy(String name, Map<String, String> settings, Jedis jedis, Clock clock) {
+        Set<String> methods = new LinkedHashSet<>();
+        for (String method : list(settings.get("methods"))) {
+            methods.add(method.toUpperCase(Locale.ROOT));
+        }
+        Map<String, String> match = new HashMap<>();
+        settings.forEach((setting, value) -> {
+            if (setting.startsWith("match.")) {
+                match.put(setting.substring("match.".length()), value);
+            }
+        });
+        return new Policy(name, required(name, settings, "path"), Set.copyOf(methods), Map.copyOf(match),
+                list(settings.get("key")), limiter(name, settings, jedis, clock));
+    }
+
+    private static RateLimiter limiter(String name, Map<String, String> settings, Jedis jedis, Clock clock) {
+        String algorithm = required(name, settings, "algorithm");
+        switch (algorithm) {
+            case "fixed_window":
+                return new FixedWindowRateLimiter(jedis, intValue(name, settings, "window"),
+                        intValue(name, settings, "limit"));
+            case "sliding_window_log":
+                return new SlidingWindowLogRateLimiter(jedis, intValue(name, settings, "limit"),
+                        intValue(name, settings, "window"), clock);
+            case "sliding_window_counter":
+                return new SlidingWindowCounterRateLimiter(jedis, intValue(name, settings, "limit"),
+                        intValue(name, settings, "window"), intValue(name, settings, "subWindow"), clock);
+            case "token_bucket":
+                return new TokenBucketRateLimiter(jedis, intValue(name, settings, "capacity"),
+                        doubleValue(name, settings, "rate"), BucketOptions.DEFAULT.withClock(clock));
+            case "leaky_bucket":
+                return new LeakyBucketRateLimiter(jedis, intValue(name, settings, "capacity"),
+                        doubleValue(name, settings, "rate"), BucketOptions.DEFAULT.withClock(clock));
+            default:
+                throw new IllegalArgumentException("Policy " + name + ": unknown algorithm " + algorithm);
+        }
+    }
+
+    private static List<String> list(String value) {
+        List<String> items = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                if (!item.isBlank()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return List.copyOf(items);
+    }
+
+    private static String required(String name, Map<String, String> settings, String setting) {
+        String value = settings.get(setting);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Policy " + name + ": missing " + setting);
+        }
+        return value;
+    }
+
+    private static int intValue(String name, Map<String, String> settings, String setting) {
+        try {
+            return Integer.parseInt(required(name, settings, setting));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Policy " + name + ": " + setting + " must be an integer", e);
+        }
+    }
+
+    private static double doubleValue(String name, Map<String, String> settings, String setting) {
+        try {
+            return Double.parseDouble(required(name, settings, setting));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Policy " + name + ": " + setting + " must be a number", e);
+        }
+    }
+}
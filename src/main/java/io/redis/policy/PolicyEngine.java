@@ -0,0 +1,98 @@
+package io.redis.policy;
+
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Picks the limiter and the client key for a request from declarative rules, so call sites only
+ * describe the request. Rules are loaded from a properties file:
+ * <pre>
+ * policy.search.path=/api/{version}/search/**
+ * policy.search.methods=GET,POST
+ * policy.search.match.tier=free
+ * policy.search.key=apiKey
+ * policy.search.algorithm=token_bucket
+ * policy.search.capacity=20
+ * policy.search.rate=5
+ * </pre>
+ * Algorithms are {@code fixed_window} (window, limit), {@code sliding_window_log} (limit, window),
+ * {@code sliding_window_counter} (limit, window, subWindow), {@code token_bucket} and
+ * {@code leaky_bucket} (capacity, rate); windows are in seconds, rates per second.
+ * <p>
+ * The most specific path wins: literals beat wildcards, wildcards beat {@code **}. Among rules with
+ * the same path, the one with the most method and attribute conditions that all hold wins. The client
+ * key is the policy name followed by the values of its key parameters, separated by {@code :} with any
+ * {@code :} or {@code \} inside them escaped by a {@code \}, so policies and callers never share state.
+ * Requests no rule covers are not limited.
+ */
+public class PolicyEngine {
+
+    public record Resolution(Policy policy, String key) {
+    }
+
+    private final PolicyTrie trie = new PolicyTrie();
+    private final List<Policy> policies;
+
+    public PolicyEngine(List<Policy> policies) {
+        this.policies = List.copyOf(policies);
+        policies.forEach(trie::add);
+    }
+
+    public static PolicyEngine load(Reader config, Jedis jedis) throws IOException {
+        return load(config, jedis, Clock.systemUTC());
+    }
+
+    public static PolicyEngine load(Reader config, Jedis jedis, Clock clock) throws IOException {
+        Properties properties = new Properties();
+        properties.load(config);
+        return new PolicyEngine(PolicyConfig.parse(properties, jedis, clock));
+    }
+
+    public List<Policy> getPolicies() {
+        return policies;
+    }
+
+    public Optional<Resolution> resolve(PolicyRequest request) {
+        PolicyTrie.Match match = trie.find(request);
+        if (match == null) {
+            return Optional.empty();
+        }
+
+        // Path parameters first, then request attributes; a missing value keys as empty
+        StringBuilder key = new StringBuilder();
+        appendEscaped(key, match.policy().name());
+        Map<String, String> attributes = request.attributes();
+        for (String part : match.policy().key()) {
+            String value = match.parameters().get(part);
+            if (value == null) {
+                value = attributes.getOrDefault(part, "");
+            }
+            appendEscaped(key.append(':'), value);
+        }
+        return Optional.of(new Resolution(match.policy(), key.toString()));
+    }
+
+    // Escapes the separator, so a:b then c and a then b:c key apart
+    private static void appendEscaped(StringBuilder key, String part) {
+        for (int i = 0; i < part.length(); i++) {
+            char c = part.charAt(i);
+            if (c == ':' || c == '\\') {
+                key.append('\\');
+            }
+            key.append(c);
+        }
+    }
+
+    public boolean isAllowed(PolicyRequest request) {
+        return resolve(request)
+                .map(resolution -> resolution.policy().limiter().isAllowed(resolution.key()))
+                .orElse(true);
+    }
+}
@@ -0,0 +1,11 @@
+package io.redis.policy;
+
+import java.util.Map;
+
+/**
+ * What the policy engine knows about a request.
+ *
+ * @param attributes anything rules can match on or key by, e.g. {@code apiKey}, {@code tier} or {@code ip}
+ */
+public record PolicyRequest(String method, String path, Map<String, String> attributes) {
+}
@@ -0,0 +1,170 @@
+package io.redis.policy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path patterns compiled into a trie of segments. A lookup walks the request path once without
+ * backtracking, advancing every node that still matches in step and keeping the candidates in order of
+ * precedence: the literal child before the single-segment wildcard, and both before a trailing
+ * {@code **} of their parent. The first candidate with an applicable rule is the most specific one, and
+ * no pattern is ever evaluated as a regex. Each segment costs one child lookup per node still matching,
+ * so a lookup is O(path length) while patterns do not overlap and O(path length * overlapping patterns)
+ * at worst.
+ * <p>
+ * Rules with the same path are ordered by how many method and attribute conditions they have, then by
+ * name, and the first one whose conditions hold wins.
+ */
+final class PolicyTrie {
+
+    record Match(Policy policy, Map<String, String> parameters) {
+    }
+
+    private record Rule(Policy policy, List<String> parameterNames) {
+    }
+
+    private static final Comparator<Rule> MOST_SPECIFIC_FIRST =
+            Comparator.<Rule>comparingInt(rule -> -rule.policy().conditionCount())
+                    .thenComparing(rule -> rule.policy().name());
+
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        Node wildcard;
+        final List<Rule> exact = new ArrayList<>(); // Pattern ends at this node
+        final List<Rule> rest = new ArrayList<>();  // Pattern ends with ** after this node
+    }
+
+    private final Node root = new Node();
+
+    void add(Policy policy) {
+        List<String> segments = segments(policy.path());
+        List<String> parameterNames = new ArrayList<>();
+        Node node = root;
+        List<Rule> rules = null;
+        for (int i = 0; i < segments.size(); i++) {
+            String segment = segments.get(i);
+            if (segment.equals("**")) {
+                if (i != segments.size() - 1) {
+                    throw new IllegalArgumentException("Policy " + policy.name() + ": ** must be the last segment");
+                }
+                rules = node.rest;
+            } else if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}"))) {
+                parameterNames.add(segment.equals("*") ? null : segment.substring(1, segment.length() - 1));
+                if (node.wildcard == null) {
+                    node.wildcard = new Node();
+                }
+                node = node.wildcard;
+            } else {
+                node = node.literals.computeIfAbsent(segment, s -> new Node());
+            }
+        }
+        if (rules == null) {
+            rules = node.exact;
+        }
+
+        for (Rule rule : rules) {
+            if (rule.policy().methods().equals(policy.methods()) && rule.policy().match().equals(policy.match())) {
+                throw new IllegalArgumentException("Policies " + rule.policy().name() + " and " + policy.name()
+                        + " cover exactly the same requests");
+            }
+        }
+        rules.add(new Rule(policy, parameterNames));
+        rules.sort(MOST_SPECIFIC_FIRST);
+    }
+
+    // A node still matching the path when rules is null, otherwise the rules to try at that point
+    private record Candidate(Node node, Captured captured, List<Rule> rules) {
+    }
+
+    // The wildcard segments on the way to a node, last one first
+    private record Captured(String segment, Captured previous) {
+    }
+
+    Match find(PolicyRequest request) {
+        List<Candidate> candidates = List.of(new Candidate(root, null, null));
+        for (String segment : segments(request.path())) {
+            List<Candidate> next = new ArrayList<>();
+            boolean matching = false;
+            for (Candidate candidate : candidates) {
+                if (candidate.rules() != null) {
+                    next.add(candidate);
+                    continue;
+                }
+                Node node = candidate.node();
+                Node literal = node.literals.get(segment);
+                if (literal != null) {
+                    next.add(new Candidate(literal, candidate.captured(), null));
+                    matching = true;
+                }
+                if (node.wildcard != null) {
+                    next.add(new Candidate(node.wildcard, new Captured(segment, candidate.captured()), null));
+                    matching = true;
+                }
+                if (!node.rest.isEmpty()) {
+                    next.add(new Candidate(node, candidate.captured(), node.rest));
+                }
+            }
+            candidates = next;
+            if (!matching) {
+                break; // Only trailing ** rules are left
+            }
+        }
+
+        for (Candidate candidate : candidates) {
+            Match match;
+            if (candidate.rules() != null) {
+                match = firstApplicable(candidate.rules(), candidate.captured(), request);
+            } else {
+                match = firstApplicable(candidate.node().exact, candidate.captured(), request);
+                if (match == null) {
+                    match = firstApplicable(candidate.node().rest, candidate.captured(), request);
+                }
+            }
+            if (match != null) {
+                return match;
+            }
+        }
+        return null;
+    }
+
+    private static Match firstApplicable(List<Rule> rules, Captured captured, PolicyRequest request) {
+        for (Rule rule : rules) {
+            if (rule.policy().appliesTo(request)) {
+                Map<String, String> parameters = new HashMap<>();
+                Captured segment = captured;
+                for (int i = rule.parameterNames().size() - 1; i >= 0; i--) {
+                    if (rule.parameterNames().get(i) != null) {
+                        parameters.put(rule.parameterNames().get(i), segment.segment());
+                    }
+                    segment = segment.previous();
+                }
+                return new Match(rule.policy(), parameters);
+            }
+        }
+        return null;
+    }
+
+    // Splits on '/' by hand, ignoring empty segments and the query string
+    static List<String> segments(String path) {
+        int end = path.indexOf('?');
+        if (end < 0) {
+            end = path.length();
+        }
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        while (start < end) {
+            int slash = path.indexOf('/', start);
+            if (slash < 0 || slash > end) {
+                slash = end;
+            }
+            if (slash > start) {
+                segments.add(path.substring(start, slash));
+            }
+            start = slash + 1;
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,369 @@
+package io.redis.server;
+
+import io.redis.PipelinedDecisions;
+import io.redis.PipelinedRateLimiter;
+import io.redis.RateLimiter;
+import io.redis.policy.Policy;
+import io.redis.policy.PolicyEngine;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves rate limit decisions to processes that cannot embed this library, over a line protocol:
+ * <pre>
+ * request:  &lt;id&gt; &lt;limiter&gt; &lt;clientId&gt;\n
+ * response: &lt;id&gt; 1\n (allowed), &lt;id&gt; 0\n (denied) or &lt;id&gt; ERR &lt;message&gt;\n
+ * </pre>
+ * Ids are opaque tokens echoed back, so clients can pipeline as many requests as they like.
+ * <p>
+ * One selector thread handles every connection. Parsed requests are queued for a single decider
+ * thread, which takes everything that queued up while it was busy and decides it as one batch with
+ * {@link PipelinedDecisions}: two Redis round trips per batch, over the one Redis connection of the
+ * server, however many clients are connected. Limiters that cannot be pipelined are decided one by one.
+ */
+public class DecisionServer implements AutoCloseable {
+    private static final int MAX_LINE_LENGTH = 1024;
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    private final Jedis jedis;
+    private final Map<String, RateLimiter> limiters;
+    private final int requestedPort;
+    private final BlockingQueue<Call> calls = new LinkedBlockingQueue<>();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicLong decisions = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private Thread deciderThread;
+    private volatile boolean running;
+
+    private record Call(Connection connection, String id, String limiter, String clientId) {
+    }
+
+    private static final class Connection {
+        final SocketChannel channel;
+        final ByteBuffer input = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        final Queue<ByteBuffer> output = new ConcurrentLinkedQueue<>();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * @param jedis    connection used for all decisions, the limiters must have been built on it too
+     * @param limiters limiters by the name requests refer to them with
+     * @param port     port to listen on, 0 picks a free one
+     */
+    public DecisionServer(Jedis jedis, Map<String, RateLimiter> limiters, int port) {
+        this.jedis = jedis;
+        this.limiters = Map.copyOf(limiters);
+        this.requestedPort = port;
+    }
+
+    /**
+     * Usage: {@code DecisionServer <port> <redis host:port> <policies.properties>}. Every policy of the
+     * file is served under its name, see {@link PolicyEngine} for the format.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length != 3) {
+            System.err.println("Usage: DecisionServer <port> <redis host:port> <policies.properties>");
+            System.exit(1);
+        }
+        Jedis jedis = new Jedis(HostAndPort.from(args[1]));
+        PolicyEngine engine;
+        try (Reader config = Files.newBufferedReader(Path.of(args[2]))) {
+            engine = PolicyEngine.load(config, jedis);
+        }
+        Map<String, RateLimiter> limiters = new HashMap<>();
+        for (Policy policy : engine.getPolicies()) {
+            limiters.put(policy.name(), policy.limiter());
+        }
+
+        DecisionServer server = new DecisionServer(jedis, limiters, Integer.parseInt(args[0])).start();
+        System.out.println("Serving " + limiters.keySet() + " on port " + server.getPort());
+        server.selectorThread.join();
+    }
+
+    public synchronized DecisionServer start() {
+        if (running) {
+            throw new IllegalStateException("Already started");
+        }
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(requestedPort));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start decision server", e);
+        }
+        running = true;
+        selectorThread = Thread.ofPlatform().name("decision-server-selector").start(this::serveConnections);
+        deciderThread = Thread.ofPlatform().name("decision-server-decider").start(this::decideCalls);
+        return this;
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public long getDecisions() {
+        return decisions.get();
+    }
+
+    /**
+     * Number of batches decided, each costing two Redis round trips at most.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        deciderThread.interrupt();
+        try {
+            selectorThread.join();
+            deciderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------------------------------- selector thread
+
+    private void serveConnections() {
+        try {
+            while (running) {
+                selector.select();
+                Connection connection;
+                while ((connection = pendingWrites.poll()) != null) {
+                    write(connection);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        if (key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write((Connection) key.attachment());
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            close(serverChannel);
+            close(selector);
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void read(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (connection.channel.read(connection.input) < 0) {
+                closeConnection(key);
+                return;
+            }
+        } catch (IOException e) {
+            closeConnection(key);
+            return;
+        }
+
+        ByteBuffer input = connection.input;
+        int lineStart = 0;
+        for (int i = 0; i < input.position(); i++) {
+            if (input.get(i) == '\n') {
+                parse(connection, new String(input.array(), lineStart, i - lineStart, StandardCharsets.UTF_8));
+                lineStart = i + 1;
+            }
+        }
+        if (!connection.output.isEmpty()) {
+            // Malformed requests are answered right here, there is no batch to wake us up for them
+            write(connection);
+        }
+        if (lineStart == 0 && !input.hasRemaining()) {
+            respond(connection, "- ERR line too long\n");
+            write(connection);
+            closeConnection(key);
+            return;
+        }
+        input.limit(input.position()).position(lineStart);
+        input.compact();
+    }
+
+    private void parse(Connection connection, String line) {
+        line = line.strip();
+        if (line.isEmpty()) {
+            return;
+        }
+        int first = line.indexOf(' ');
+        int second = first < 0 ? -1 : line.indexOf(' ', first + 1);
+        if (second < 0 || line.indexOf(' ', second + 1) >= 0) {
+            String id = first < 0 ? line : line.substring(0, first);
+            respond(connection, id + " ERR expected <id> <limiter> <clientId>\n");
+            return;
+        }
+        calls.add(new Call(connection, line.substring(0, first), line.substring(first + 1, second),
+                line.substring(second + 1)));
+    }
+
+    private void write(Connection connection) {
+        SelectionKey key = connection.channel.keyFor(selector);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        try {
+            ByteBuffer buffer;
+            while ((buffer = connection.output.peek()) != null) {
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    // Socket buffer full, continue once it is writable again
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.output.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+        } catch (IOException e) {
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        close(key.channel());
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    private static void respond(Connection connection, String response) {
+        connection.output.add(ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // ---------------------------------------------------------------- decider thread
+
+    private void decideCalls() {
+        List<Call> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(calls.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            calls.drainTo(batch, MAX_BATCH_SIZE - 1);
+            decide(batch);
+            batch.clear();
+        }
+    }
+
+    private void decide(List<Call> batch) {
+        String[] results = new String[batch.size()];
+        List<PipelinedDecisions.Request> requests = new ArrayList<>();
+        List<Integer> pipelined = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Call call = batch.get(i);
+            RateLimiter limiter = limiters.get(call.limiter());
+            if (limiter == null) {
+                results[i] = "ERR unknown limiter " + call.limiter();
+            } else if (limiter instanceof PipelinedRateLimiter pipelinedLimiter) {
+                requests.add(new PipelinedDecisions.Request(pipelinedLimiter, call.clientId()));
+                pipelined.add(i);
+            } else {
+                results[i] = decideAlone(limiter, call.clientId());
+            }
+        }
+
+        try {
+            boolean[] decided = PipelinedDecisions.decide(jedis, requests);
+            for (int i = 0; i < decided.length; i++) {
+                results[pipelined.get(i)] = decided[i] ? "1" : "0";
+            }
+        } catch (RuntimeException e) {
+            // Whatever went wrong, the decider thread has to live on to serve the next batch
+            for (int i : pipelined) {
+                results[i] = "ERR " + e.getMessage();
+            }
+        }
+        batches.incrementAndGet();
+        decisions.addAndGet(batch.size());
+
+        // One buffer per connection for the whole batch
+        Map<Connection, StringBuilder> responses = new IdentityHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Call call = batch.get(i);
+            responses.computeIfAbsent(call.connection(), c -> new StringBuilder())
+                    .append(call.id()).append(' ').append(results[i]).append('\n');
+        }
+        responses.forEach((connection, response) -> {
+            respond(connection, response.toString());
+            pendingWrites.add(connection);
+        });
+        selector.wakeup();
+    }
+
+    private static String decideAlone(RateLimiter limiter, String clientId) {
+        try {
+            return limiter.isAllowed(clientId) ? "1" : "0";
+        } catch (RuntimeException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.redis.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drives a {@link DecisionServer} from many connections, each keeping up to {@code pipelineDepth}
+ * requests in flight, and reports throughput and latency percentiles.
+ */
+public class LoadTestClient {
+
+    /**
+     * @param connections           connections opened in parallel, one virtual thread pair each
+     * @param requestsPerConnection requests sent over each connection
+     * @param pipelineDepth         requests a connection sends before waiting for responses
+     * @param limiter               limiter name every request refers to
+     * @param clients               distinct client ids, picked at random per request
+     */
+    public record Options(int connections, int requestsPerConnection, int pipelineDepth, String limiter,
+                          int clients) {
+    }
+
+    public record Result(long requests, long allowed, long errors, Duration elapsed, Duration p50, Duration p99) {
+
+        public double throughput() {
+            return requests / (elapsed.toNanos() / 1e9);
+        }
+    }
+
+    private record ConnectionResult(long allowed, long errors, long[] latencies) {
+    }
+
+    private final String host;
+    private final int port;
+
+    public LoadTestClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Usage: {@code LoadTestClient <host:port> <limiter> [connections] [requestsPerConnection] [pipelineDepth] [clients]}
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadTestClient <host:port> <limiter> [connections] [requestsPerConnection] [pipelineDepth] [clients]");
+            System.exit(1);
+        }
+        String[] address = args[0].split(":");
+        Options options = new Options(
+                args.length > 2 ? Integer.parseInt(args[2]) : 16,
+                args.length > 3 ? Integer.parseInt(args[3]) : 100_000,
+                args.length > 4 ? Integer.parseInt(args[4]) : 128,
+                args[1],
+                args.length > 5 ? Integer.parseInt(args[5]) : 10_000);
+
+        Result result = new LoadTestClient(address[0], Integer.parseInt(address[1])).run(options);
+        System.out.printf("%d requests in %d ms: %.0f decisions/s, %d allowed, %d errors, p50 %d us, p99 %d us%n",
+                result.requests(), result.elapsed().toMillis(), result.throughput(), result.allowed(),
+                result.errors(), result.p50().toNanos() / 1000, result.p99().toNanos() / 1000);
+    }
+
+    public Result run(Options options) throws InterruptedException {
+        long start = System.nanoTime();
+        List<ConnectionResult> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<ConnectionResult>> futures = new ArrayList<>();
+            for (int i = 0; i < options.connections(); i++) {
+                futures.add(executor.submit(() -> runConnection(options)));
+            }
+            for (Future<ConnectionResult> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Load test connection failed", e.getCause());
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        long allowed = 0;
+        long errors = 0;
+        long[] latencies = new long[options.connections() * options.requestsPerConnection()];
+        int offset = 0;
+        for (ConnectionResult result : results) {
+            allowed += result.allowed();
+            errors += result.errors();
+            System.arraycopy(result.latencies(), 0, latencies, offset, result.latencies().length);
+            offset += result.latencies().length;
+        }
+        Arrays.sort(latencies);
+        return new Result(latencies.length, allowed, errors, elapsed,
+                percentile(latencies, 0.50), percentile(latencies, 0.99));
+    }
+
+    private ConnectionResult runConnection(Options options) throws IOException, InterruptedException {
+        int requests = options.requestsPerConnection();
+        long[] sentAt = new long[requests];
+        long[] latencies = new long[requests];
+        Semaphore inFlight = new Semaphore(options.pipelineDepth());
+
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            Thread sender = Thread.ofVirtual().start(() -> {
+                try {
+                    for (int id = 0; id < requests; id++) {
+                        if (!inFlight.tryAcquire()) {
+                            // Pipeline full, let the server see what we have before waiting
+                            out.flush();
+                            inFlight.acquire();
+                        }
+                        String clientId = "client-" + ThreadLocalRandom.current().nextInt(options.clients());
+                        sentAt[id] = System.nanoTime();
+                        out.write(id + " " + options.limiter() + " " + clientId + "\n");
+                    }
+                    out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            long allowed = 0;
+            long errors = 0;
+            for (int i = 0; i < requests; i++) {
+                String line = in.readLine();
+                if (line == null) {
+                    throw new IOException("Server closed the connection after " + i + " responses");
+                }
+                int space = line.indexOf(' ');
+                int id = Integer.parseInt(line.substring(0, space));
+                latencies[i] = System.nanoTime() - sentAt[id];
+                String result = line.substring(space + 1);
+                if (result.equals("1")) {
+                    allowed++;
+                } else if (!result.equals("0")) {
+                    errors++;
+                }
+                inFlight.release();
+            }
+            sender.join();
+            return new ConnectionResult(allowed, errors, latencies);
+        }
+    }
+
+    private static Duration percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)]);
+    }
+}
@@ -0,0 +1,288 @@
+package io.redis.simulation;
+
+import io.redis.FixedWindowRateLimiter;
+import io.redis.LeakyBucketRateLimiter;
+import io.redis.RateLimiter;
+import io.redis.SlidingWindowCounterRateLimiter;
+import io.redis.SlidingWindowLogRateLimiter;
+import io.redis.TokenBucketRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives a limiter with concurrent, realistic traffic in real time and reports what it costs and how
+ * accurately it limits. Unlike {@link Simulation}, which replays a trace sequentially in virtual time
+ * to check an algorithm's logic, this one runs many virtual threads against a real Redis connection
+ * each, so it sees latency and the races between concurrent read-decide-write sequences.
+ * <p>
+ * Every worker owns a limiter built by the factory on its own connection and sends its share of
+ * the offered load as a Poisson process, picking clients from a Zipf distribution. Accuracy is
+ * measured against the intended {@link Quota}: after the run, the recorded arrivals are replayed
+ * through an exact in-memory sliding window log, and the admitted count is compared with what that
+ * would have allowed. Redis commands are counted from INFO, so run against a server nothing else uses.
+ */
+public class LoadSimulation {
+
+    private static final Pattern TOTAL_COMMANDS = Pattern.compile("total_commands_processed:(\\d+)");
+
+    /**
+     * @param workers      virtual threads, each with its own connection and limiter
+     * @param clients      distinct client IDs
+     * @param zipfExponent skew of the client distribution, see {@link ZipfDistribution}
+     */
+    public record Options(int workers, Duration duration, TrafficPattern traffic, int clients, double zipfExponent) {
+    }
+
+    /**
+     * The limit the limiter under test is meant to enforce per client.
+     */
+    public record Quota(int limit, Duration window) {
+    }
+
+    /**
+     * @param allowed what an exact sliding window log enforcing the quota would have admitted
+     */
+    public record Report(String name, long decisions, long admitted, long allowed, Duration elapsed,
+                         Duration p50, Duration p99, Duration p999, double commandsPerDecision) {
+
+        public double throughput() {
+            return decisions / (elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * @return relative error of the admitted count, positive when the limiter let too much through
+         */
+        public double admissionError() {
+            return allowed == 0 ? 0 : (double) (admitted - allowed) / allowed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %9d %9.0f/s %8d %8d %+8.2f%% %8d %8d %8d %6.2f",
+                    name, decisions, throughput(), admitted, allowed, admissionError() * 100,
+                    p50.toNanos() / 1000, p99.toNanos() / 1000, p999.toNanos() / 1000, commandsPerDecision);
+        }
+
+        public static String header() {
+            return String.format("%-24s %9s %11s %8s %8s %9s %8s %8s %8s %6s",
+                    "limiter", "decisions", "throughput", "admitted", "allowed", "error", "p50 us", "p99 us", "p999 us",
+                    "cmds");
+        }
+    }
+
+    // Per-worker samples in growable primitive arrays, so recording allocates next to nothing
+    private static final class Recording {
+        long[] arrivals = new long[1024];
+        int[] clients = new int[1024];
+        long[] latencies = new long[1024];
+        boolean[] admitted = new boolean[1024];
+        int size;
+
+        void add(long arrival, int client, long latency, boolean isAdmitted) {
+            if (size == arrivals.length) {
+                arrivals = Arrays.copyOf(arrivals, size * 2);
+                clients = Arrays.copyOf(clients, size * 2);
+                latencies = Arrays.copyOf(latencies, size * 2);
+                admitted = Arrays.copyOf(admitted, size * 2);
+            }
+            arrivals[size] = arrival;
+            clients[size] = client;
+            latencies[size] = latency;
+            admitted[size] = isAdmitted;
+            size++;
+        }
+    }
+
+    private final Supplier<Jedis> connections;
+
+    /**
+     * @param connections opens a new connection to the Redis under test, called once per worker
+     */
+    public LoadSimulation(Supplier<Jedis> connections) {
+        this.connections = connections;
+    }
+
+    /**
+     * Usage: {@code LoadSimulation [redis host:port]}. Without an address the run uses an
+     * {@link EmbeddedRedisServer}, which shows relative costs but not real Redis latency.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        EmbeddedRedisServer server = null;
+        HostAndPort address;
+        if (args.length > 0) {
+            address = HostAndPort.from(args[0]);
+        } else {
+            server = new EmbeddedRedisServer().start();
+            address = new HostAndPort(server.getHost(), server.getPort());
+        }
+
+        LoadSimulation simulation = new LoadSimulation(() -> new Jedis(address));
+        Quota quota = new Quota(100, Duration.ofSeconds(10));
+        Options options = new Options(32, Duration.ofSeconds(10),
+                TrafficPattern.diurnal(2_000, 0.5, Duration.ofSeconds(10))
+                        .withBursts(Duration.ofSeconds(3), Duration.ofMillis(300), 5),
+                1_000, 1.1);
+
+        Map<String, Function<Jedis, RateLimiter>> limiters = new LinkedHashMap<>();
+        limiters.put("FixedWindow", jedis -> new FixedWindowRateLimiter(jedis, 10, 100));
+        limiters.put("SlidingWindowLog", jedis -> new SlidingWindowLogRateLimiter(jedis, 100, 10));
+        limiters.put("SlidingWindowCounter", jedis -> new SlidingWindowCounterRateLimiter(jedis, 100, 10, 1));
+        limiters.put("TokenBucket", jedis -> new TokenBucketRateLimiter(jedis, 100, 10));
+        limiters.put("LeakyBucket", jedis -> new LeakyBucketRateLimiter(jedis, 100, 10));
+
+        System.out.println(Report.header());
+        for (Map.Entry<String, Function<Jedis, RateLimiter>> limiter : limiters.entrySet()) {
+            System.out.println(simulation.run(limiter.getKey(), limiter.getValue(), quota, options));
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    public Report run(String name, Function<Jedis, RateLimiter> limiterFactory, Quota quota, Options options)
+            throws InterruptedException {
+        // Fresh client IDs per run, so runs do not see each other's state
+        String[] clientIds = new String[options.clients()];
+        String runId = name + "-" + Long.toHexString(System.nanoTime());
+        for (int i = 0; i < clientIds.length; i++) {
+            clientIds[i] = "load:" + runId + ":client-" + i;
+        }
+        ZipfDistribution distribution = new ZipfDistribution(options.clients(), options.zipfExponent());
+
+        List<Recording> recordings = new ArrayList<>();
+        long commandsBefore;
+        long commandsAfter;
+        long start;
+        long elapsed;
+        try (Jedis control = connections.get()) {
+            commandsBefore = totalCommands(control);
+            start = System.nanoTime();
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Recording>> futures = new ArrayList<>();
+                for (int worker = 0; worker < options.workers(); worker++) {
+                    long seed = worker;
+                    futures.add(executor.submit(() ->
+                            runWorker(limiterFactory, options, clientIds, distribution, new SplittableRandom(seed), start)));
+                }
+                for (Future<Recording> future : futures) {
+                    recordings.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Load simulation worker failed", e.getCause());
+            }
+            elapsed = System.nanoTime() - start;
+            // Minus the INFO call itself
+            commandsAfter = totalCommands(control) - 1;
+        }
+
+        int decisions = recordings.stream().mapToInt(recording -> recording.size).sum();
+        long[] latencies = new long[decisions];
+        long[] arrivals = new long[decisions];
+        int[] clients = new int[decisions];
+        long admitted = 0;
+        int offset = 0;
+        for (Recording recording : recordings) {
+            System.arraycopy(recording.latencies, 0, latencies, offset, recording.size);
+            System.arraycopy(recording.arrivals, 0, arrivals, offset, recording.size);
+            System.arraycopy(recording.clients, 0, clients, offset, recording.size);
+            for (int i = 0; i < recording.size; i++) {
+                if (recording.admitted[i]) {
+                    admitted++;
+                }
+            }
+            offset += recording.size;
+        }
+        Arrays.sort(latencies);
+
+        return new Report(name, decisions, admitted, exactlyAllowed(arrivals, clients, quota), Duration.ofNanos(elapsed),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                decisions == 0 ? 0 : (double) (commandsAfter - commandsBefore) / decisions);
+    }
+
+    private Recording runWorker(Function<Jedis, RateLimiter> limiterFactory, Options options, String[] clientIds,
+                                ZipfDistribution distribution, SplittableRandom random, long start) {
+        Recording recording = new Recording();
+        long durationNanos = options.duration().toNanos();
+        try (Jedis jedis = connections.get()) {
+            RateLimiter limiter = limiterFactory.apply(jedis);
+            long arrival = 0;
+            while (true) {
+                // Poisson arrivals at this worker's share of the current rate
+                double rate = options.traffic().requestsPerSecond(arrival) / options.workers();
+                arrival += rate > 0 ? (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9) : 1_000_000;
+                if (arrival >= durationNanos) {
+                    return recording;
+                }
+                long wait = start + arrival - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (rate <= 0) {
+                    continue;
+                }
+
+                int client = distribution.sample(random);
+                long decisionStart = System.nanoTime();
+                boolean isAllowed = limiter.isAllowed(clientIds[client]);
+                long decisionEnd = System.nanoTime();
+                recording.add(decisionStart - start, client, decisionEnd - decisionStart, isAllowed);
+            }
+        }
+    }
+
+    // Exact sliding window log over the recorded arrivals, the yardstick every algorithm is held to
+    private static long exactlyAllowed(long[] arrivals, int[] clients, Quota quota) {
+        Integer[] order = new Integer[arrivals.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(arrivals[a], arrivals[b]));
+
+        long windowNanos = quota.window().toNanos();
+        Map<Integer, ArrayDeque<Long>> logs = new HashMap<>();
+        long allowed = 0;
+        for (int i : order) {
+            ArrayDeque<Long> log = logs.computeIfAbsent(clients[i], client -> new ArrayDeque<>());
+            while (!log.isEmpty() && arrivals[i] - log.peekFirst() >= windowNanos) {
+                log.pollFirst();
+            }
+            if (log.size() < quota.limit()) {
+                log.addLast(arrivals[i]);
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    private static long totalCommands(Jedis jedis) {
+        Matcher matcher = TOTAL_COMMANDS.matcher(jedis.info("stats"));
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private static Duration percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)]);
+    }
+}
@@ -0,0 +1,94 @@
+package io.redis.simulation;
+
+import io.redis.RateLimiter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Replays a request trace against a limiter in virtual time: before every request the clock jumps
+ * to the request's timestamp, so hours of traffic take only as long as the limiter's own work.
+ * Build the limiter (and the {@link io.redis.embedded.EmbeddedRedisServer} behind it) on the same
+ * {@link VirtualClock} so Redis expires keys at the simulated time, and use
+ * {@link io.redis.embedded.EmbeddedRedisServer#connect()} to skip the network entirely.
+ */
+public class Simulation {
+
+    /**
+     * @param offsetNanos time since the start of the run, requests must come in this order
+     */
+    public record Request(long offsetNanos, String clientId) {
+    }
+
+    public record Result(long requests, long allowed, Map<String, Long> allowedByClient,
+                         Duration simulatedTime, Duration elapsedTime) {
+    }
+
+    private final VirtualClock clock;
+
+    public Simulation(VirtualClock clock) {
+        this.clock = clock;
+    }
+
+    public Result run(RateLimiter limiter, Iterator<Request> trace) {
+        Instant start = clock.instant();
+        long wallStart = System.nanoTime();
+        long requests = 0;
+        long allowed = 0;
+        long lastOffset = 0;
+        Map<String, Long> allowedByClient = new HashMap<>();
+
+        while (trace.hasNext()) {
+            Request request = trace.next();
+            if (request.offsetNanos() < lastOffset) {
+                throw new IllegalArgumentException("Trace is not ordered by time");
+            }
+            clock.advanceTo(start.plusNanos(request.offsetNanos()));
+            lastOffset = request.offsetNanos();
+
+            requests++;
+            if (limiter.isAllowed(request.clientId())) {
+                allowed++;
+                allowedByClient.merge(request.clientId(), 1L, Long::sum);
+            }
+        }
+
+        return new Result(requests, allowed, allowedByClient, Duration.ofNanos(lastOffset),
+                Duration.ofNanos(System.nanoTime() - wallStart));
+    }
+
+    /**
+     * Every client sends at the same steady rate for the given duration. Clients are evenly
+     * interleaved rather than all arriving at the same instant.
+     */
+    public static Iterator<Request> steady(List<String> clients, double requestsPerSecond, Duration duration) {
+        long intervalNanos = (long) (1_000_000_000L / requestsPerSecond);
+        long total = (long) (duration.toNanos() / 1e9 * requestsPerSecond) * clients.size();
+
+        return new Iterator<>() {
+            private long next;
+
+            @Override
+            public boolean hasNext() {
+                return next < total;
+            }
+
+            @Override
+            public Request next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int client = (int) (next % clients.size());
+                long round = next / clients.size();
+                next++;
+                return new Request(round * intervalNanos + client * intervalNanos / clients.size(),
+                        clients.get(client));
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package io.redis.simulation;
+
+import java.time.Duration;
+
+/**
+ * Offered load over the course of a run, in requests per second.
+ */
+@FunctionalInterface
+public interface TrafficPattern {
+
+    double requestsPerSecond(long elapsedNanos);
+
+    static TrafficPattern constant(double requestsPerSecond) {
+        return elapsedNanos -> requestsPerSecond;
+    }
+
+    /**
+     * A day compressed into {@code period}: the rate swings sinusoidally between
+     * {@code mean * (1 - amplitude)} at the start of the period and {@code mean * (1 + amplitude)} halfway.
+     */
+    static TrafficPattern diurnal(double meanRequestsPerSecond, double amplitude, Duration period) {
+        long periodNanos = period.toNanos();
+        return elapsedNanos -> meanRequestsPerSecond
+                * (1 - amplitude * Math.cos(2 * Math.PI * (elapsedNanos % periodNanos) / periodNanos));
+    }
+
+    /**
+     * Multiplies the rate by {@code multiplier} for {@code length} at the start of every {@code every}.
+     */
+    default TrafficPattern withBursts(Duration every, Duration length, double multiplier) {
+        long everyNanos = every.toNanos();
+        long lengthNanos = length.toNanos();
+        return elapsedNanos -> requestsPerSecond(elapsedNanos)
+                * (elapsedNanos % everyNanos < lengthNanos ? multiplier : 1);
+    }
+}
@@ -0,0 +1,68 @@
+package io.redis.simulation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when told to. Hand the same instance to the limiters and to the
+ * {@link io.redis.embedded.EmbeddedRedisServer} so that limiter arithmetic and Redis TTLs agree on
+ * what time it is.
+ */
+public class VirtualClock extends Clock {
+
+    private final AtomicLong nanos;
+
+    /**
+     * Starts at 2024-01-01T00:00:00Z, so runs are reproducible.
+     */
+    public VirtualClock() {
+        this(Instant.parse("2024-01-01T00:00:00Z"));
+    }
+
+    public VirtualClock(Instant start) {
+        this.nanos = new AtomicLong(start.getEpochSecond() * 1_000_000_000L + start.getNano());
+    }
+
+    public void advance(Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Time cannot go backwards");
+        }
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    /**
+     * Moves the clock forward to the given instant, or leaves it where it is if that has passed.
+     */
+    public void advanceTo(Instant instant) {
+        long target = instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+        nanos.accumulateAndGet(target, Math::max);
+    }
+
+    @Override
+    public Instant instant() {
+        long current = nanos.get();
+        return Instant.ofEpochSecond(Math.floorDiv(current, 1_000_000_000L), Math.floorMod(current, 1_000_000_000L));
+    }
+
+    @Override
+    public long millis() {
+        return Math.floorDiv(nanos.get(), 1_000_000L);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (zone.equals(ZoneOffset.UTC)) {
+            return this;
+        }
+        throw new UnsupportedOperationException("VirtualClock is always UTC");
+    }
+}
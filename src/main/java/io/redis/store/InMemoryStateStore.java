@@ -0,0 +1,102 @@
+package io.redis.store;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Store for a single process, for tests, local development, or as the fallback state of a
+ * limiter that must keep working without Redis. Updates lock the stripes of their keys in a fixed
+ * order, so they are atomic without a global lock and cannot deadlock. Expired keys read as missing.
+ */
+public class InMemoryStateStore implements StateStore {
+
+    private static final int STRIPES = 64;
+    private static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    private record Entry(String value, long expireAtMillis) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Clock clock;
+
+    public InMemoryStateStore() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryStateStore(Clock clock) {
+        this.clock = clock;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <R> R update(List<String> keys, StateUpdate<R> update) {
+        boolean[] stripes = new boolean[STRIPES];
+        for (String key : keys) {
+            stripes[Math.floorMod(key.hashCode(), STRIPES)] = true;
+        }
+        // Ascending stripe order, whatever order the keys come in
+        for (int i = 0; i < STRIPES; i++) {
+            if (stripes[i]) {
+                locks[i].lock();
+            }
+        }
+        try {
+            long now = clock.millis();
+            List<String> values = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.expireAtMillis() <= now) {
+                    entries.remove(key);
+                    entry = null;
+                }
+                values.add(entry != null ? entry.value() : null);
+            }
+
+            StateUpdate.Result<R> result = update.apply(values);
+            if (result.writes() != null) {
+                for (int i = 0; i < keys.size(); i++) {
+                    String value = result.writes().get(i);
+                    if (value == null) {
+                        continue;
+                    }
+                    long expireAt;
+                    if (result.ttl(i) != null) {
+                        expireAt = now + result.ttl(i).toMillis();
+                    } else {
+                        expireAt = values.get(i) != null ? entries.get(keys.get(i)).expireAtMillis() : NO_EXPIRY;
+                    }
+                    entries.put(keys.get(i), new Entry(value, expireAt));
+                }
+            }
+            return result.result();
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                if (stripes[i]) {
+                    locks[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Uses the store's own clock, whatever the fallback.
+     */
+    @Override
+    public <R> R updateAtStoreTime(List<String> keys, Clock fallback, StateUpdate.Timed<R> update) {
+        return StateStore.super.updateAtStoreTime(keys, clock, update);
+    }
+
+    /**
+     * @return the live value of the key, or null
+     */
+    public String get(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && entry.expireAtMillis() > clock.millis() ? entry.value() : null;
+    }
+}
@@ -0,0 +1,86 @@
+package io.redis.store;
+
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Clock;
+import java.util.List;
+
+/**
+ * Redis-backed store. Each update WATCHes its keys, reads them, and writes the new values in a
+ * MULTI/EXEC that Redis aborts if another client changed any of the keys meanwhile; the update then
+ * runs again on the fresh values. The WATCH, the read and Redis TIME, when asked for, go out in one
+ * pipeline, so an update costs two round trips: the read and either the transaction or the UNWATCH.
+ */
+public class JedisStateStore implements StateStore {
+
+    private static final int MAX_ATTEMPTS = 100;
+
+    private final Jedis jedis;
+
+    public JedisStateStore(Jedis jedis) {
+        this.jedis = jedis;
+    }
+
+    public <R> R update(List<String> keys, StateUpdate<R> update) {
+        return update(keys, false, (values, timeMicros) -> update.apply(values));
+    }
+
+    /**
+     * Passes the update the time of the Redis server.
+     */
+    @Override
+    public <R> R updateAtStoreTime(List<String> keys, Clock fallback, StateUpdate.Timed<R> update) {
+        return update(keys, true, update);
+    }
+
+    private <R> R update(List<String> keys, boolean withServerTime, StateUpdate.Timed<R> update) {
+        String[] keyArray = keys.toArray(String[]::new);
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            // WATCH before the read in the same pipeline, so the read already sees the watched state
+            Pipeline pipeline = jedis.pipelined();
+            pipeline.executeCommand(new CommandObject<>(
+                    new CommandArguments(Protocol.Command.WATCH).keys((Object[]) keyArray), BuilderFactory.STRING));
+            Response<List<String>> values = pipeline.mget(keyArray);
+            Response<List<String>> time = withServerTime ? pipeline.executeCommand(
+                    new CommandObject<>(new CommandArguments(Protocol.Command.TIME), BuilderFactory.STRING_LIST)) : null;
+            StateUpdate.Result<R> result;
+            try {
+                pipeline.sync();
+                long timeMicros = withServerTime
+                        ? Long.parseLong(time.get().get(0)) * 1_000_000 + Long.parseLong(time.get().get(1))
+                        : 0;
+                result = update.apply(values.get(), timeMicros);
+            } catch (RuntimeException e) {
+                jedis.unwatch();
+                throw e;
+            }
+            if (result.writes() == null) {
+                jedis.unwatch();
+                return result.result();
+            }
+
+            Transaction transaction = jedis.multi();
+            for (int i = 0; i < keyArray.length; i++) {
+                String value = result.writes().get(i);
+                if (value != null) {
+                    transaction.set(keyArray[i], value, result.ttl(i) == null
+                            ? SetParams.setParams().keepTtl()
+                            : SetParams.setParams().px(result.ttl(i).toMillis()));
+                }
+            }
+            if (transaction.exec() != null) {
+                return result.result();
+            }
+            // Another client updated one of the keys after our read, decide again on its values
+        }
+        throw new IllegalStateException("Gave up updating " + keys + " after " + MAX_ATTEMPTS + " conflicts");
+    }
+}
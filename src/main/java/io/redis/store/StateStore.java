@@ -0,0 +1,38 @@
+package io.redis.store;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Where limiters keep their per-client state, reduced to the one primitive every algorithm's math
+ * needs: atomically read a few values, compute, and write the new values back. Implementations decide
+ * how to make that atomic, {@link JedisStateStore} with optimistic WATCH/MULTI transactions,
+ * {@link InMemoryStateStore} with per-key locks.
+ * <p>
+ * Limiters decide only through these methods, never through a particular store, so a store's own fast
+ * path, like the single pipelined read of {@link JedisStateStore}, serves every limiter and every
+ * decision stays atomic whichever store it runs on.
+ */
+public interface StateStore {
+
+    /**
+     * Reads the values of the keys, passes them to the update and stores the values it returns, with
+     * no other update of any of those keys in between. The update may run more than once if the store
+     * retries on conflict, so it must not have side effects.
+     *
+     * @return the result computed by the last, successful run of the update
+     */
+    <R> R update(List<String> keys, StateUpdate<R> update);
+
+    /**
+     * Like {@link #update}, and also passes the update the store's own time, read together with the
+     * values, so processes with skewed clocks still agree. Stores without a clock of their own pass
+     * the time of the given clock.
+     */
+    default <R> R updateAtStoreTime(List<String> keys, Clock fallback, StateUpdate.Timed<R> update) {
+        long currentTime = ChronoUnit.MICROS.between(Instant.EPOCH, fallback.instant());
+        return update(keys, values -> update.apply(values, currentTime));
+    }
+}
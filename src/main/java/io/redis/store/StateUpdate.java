@@ -0,0 +1,61 @@
+package io.redis.store;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The algorithm half of a {@link StateStore#update}: turns the current values into new ones.
+ */
+@FunctionalInterface
+public interface StateUpdate<R> {
+
+    /**
+     * @param values current value of each key, in the order of the keys, null where a key does not exist
+     */
+    Result<R> apply(List<String> values);
+
+    /**
+     * An update that also needs the time, see {@link StateStore#updateAtStoreTime}.
+     */
+    @FunctionalInterface
+    interface Timed<R> {
+
+        /**
+         * @param timeMicros current time in microseconds since the epoch
+         */
+        Result<R> apply(List<String> values, long timeMicros);
+    }
+
+    /**
+     * @param result returned to the caller of {@link StateStore#update}
+     * @param writes new value of each key, in the order of the keys, null to leave a key alone;
+     *               a null list writes nothing
+     * @param ttls   expiry of each written key, in the order of the keys, null to keep its current expiry
+     *               (none for new keys); a null list keeps the expiry of all of them
+     */
+    record Result<R>(R result, List<String> writes, List<Duration> ttls) {
+
+        /**
+         * @param ttl expiry of all the written keys, null to keep their current expiry
+         */
+        public Result(R result, List<String> writes, Duration ttl) {
+            this(result, writes, writes == null || ttl == null ? null : Collections.nCopies(writes.size(), ttl));
+        }
+
+        public static <R> Result<R> unchanged(R result) {
+            return new Result<>(result, null, (List<Duration>) null);
+        }
+
+        public static <R> Result<R> write(R result, List<String> writes) {
+            return new Result<>(result, writes, (List<Duration>) null);
+        }
+
+        /**
+         * @return expiry of the i-th written key, null to keep its current one
+         */
+        public Duration ttl(int i) {
+            return ttls == null ? null : ttls.get(i);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AdaptiveRateLimiterTest {
+
+    private static final AdaptiveRateLimiter.Policy POLICY =
+            new AdaptiveRateLimiter.Policy(10, 2, 12, 1, 0.5, Duration.ofMillis(100));
+
+    private Jedis nodeAJedis;
+    private Jedis nodeBJedis;
+
+    @BeforeEach
+    public void setup() {
+        nodeAJedis = TestRedis.connect();
+        nodeBJedis = TestRedis.connect();
+        nodeAJedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeAJedis.close();
+        nodeBJedis.close();
+    }
+
+    @Test
+    public void shouldIncreaseRateAdditivelyWhileHealthy() {
+        AdaptiveRateLimiter rateLimiter = AdaptiveRateLimiter.tokenBucket(nodeAJedis, "api", 5, POLICY,
+                Duration.ofSeconds(10), TestRedis.clock());
+
+        rateLimiter.onResponse(Duration.ofMillis(10), false);
+        rateLimiter.adjust();
+        assertThat(rateLimiter.getRate()).isCloseTo(11, within(0.001));
+
+        for (int i = 0; i < 5; i++) {
+            TestRedis.advance(Duration.ofSeconds(10));
+            rateLimiter.onResponse(Duration.ofMillis(10), false);
+            rateLimiter.adjust();
+        }
+        assertThat(rateLimiter.getRate())
+                .withFailMessage("The rate should not grow beyond the configured maximum")
+                .isCloseTo(12, within(0.001));
+    }
+
+    @Test
+    public void shouldDecreaseRateMultiplicativelyOnSlowResponses() {
+        AdaptiveRateLimiter rateLimiter = AdaptiveRateLimiter.leakyBucket(nodeAJedis, "api", 5, POLICY,
+                Duration.ofMillis(0));
+
+        rateLimiter.onResponse(Duration.ofMillis(500), false);
+        assertThat(rateLimiter.getRate()).isCloseTo(5, within(0.001));
+
+        rateLimiter.onResponse(Duration.ofMillis(10), true);
+        rateLimiter.onResponse(Duration.ofMillis(10), true);
+        assertThat(rateLimiter.getRate())
+                .withFailMessage("The rate should not drop below the configured minimum")
+                .isCloseTo(2, within(0.001));
+    }
+
+    @Test
+    public void shouldShareRateBetweenNodesAndDecreaseOncePerInterval() {
+        AdaptiveRateLimiter nodeA = AdaptiveRateLimiter.tokenBucket(nodeAJedis, "api", 5, POLICY,
+                Duration.ofSeconds(10));
+        AdaptiveRateLimiter nodeB = AdaptiveRateLimiter.tokenBucket(nodeBJedis, "api", 5, POLICY,
+                Duration.ofSeconds(10));
+
+        nodeA.onResponse(Duration.ofMillis(10), true);
+        nodeA.adjust();
+        nodeB.onResponse(Duration.ofMillis(10), true);
+        nodeB.adjust();
+
+        assertThat(nodeB.getRate())
+                .withFailMessage("Congestion seen by both nodes in one interval should only halve the rate once")
+                .isCloseTo(5, within(0.001));
+
+        nodeA.adjust();
+        assertThat(nodeA.getRate())
+                .withFailMessage("Nodes should converge on the shared rate")
+                .isEqualTo(nodeB.getRate());
+    }
+
+    @Test
+    public void shouldIncreaseOncePerIntervalAcrossNodes() {
+        AdaptiveRateLimiter nodeA = AdaptiveRateLimiter.tokenBucket(nodeAJedis, "api", 5, POLICY,
+                Duration.ofSeconds(10), TestRedis.clock());
+        AdaptiveRateLimiter nodeB = AdaptiveRateLimiter.tokenBucket(nodeBJedis, "api", 5, POLICY,
+                Duration.ofSeconds(10), TestRedis.clock());
+
+        nodeA.onResponse(Duration.ofMillis(10), false);
+        nodeA.adjust();
+        nodeB.onResponse(Duration.ofMillis(10), false);
+        nodeB.adjust();
+
+        assertThat(nodeB.getRate())
+                .withFailMessage("Two healthy nodes in one interval should only add the increase once")
+                .isCloseTo(11, within(0.001));
+    }
+
+    @Test
+    public void shouldEnforceAdjustedRate() {
+        AdaptiveRateLimiter rateLimiter = AdaptiveRateLimiter.tokenBucket(nodeAJedis, "api", 3, POLICY,
+                Duration.ofSeconds(10));
+        for (int i = 1; i <= 3; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+    }
+}
@@ -0,0 +1,155 @@
+package io.redis;
+
+import io.redis.embedded.EmbeddedRedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConcurrencyLimiterTest {
+
+    private Jedis jedis;
+    private ConcurrencyLimiter limiter;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldDenyOnceLimitIsInFlight() {
+        limiter = new ConcurrencyLimiter(jedis, 3, Duration.ofSeconds(30), TestRedis.clock());
+        for (int i = 1; i <= 3; i++) {
+            assertThat(limiter.acquire("client-1"))
+                    .withFailMessage("Call %d should get a lease", i)
+                    .isPresent();
+        }
+
+        assertThat(limiter.acquire("client-1"))
+                .withFailMessage("Call beyond the concurrency limit should be denied")
+                .isEmpty();
+        assertThat(jedis.zcard("rate_limit:client-1:leases"))
+                .withFailMessage("A denied call should not hold a lease")
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void shouldAllowAgainAfterRelease() {
+        limiter = new ConcurrencyLimiter(jedis, 1, Duration.ofSeconds(30), TestRedis.clock());
+        Optional<String> lease = limiter.acquire("client-1");
+        assertThat(lease).isPresent();
+        assertThat(limiter.acquire("client-1")).isEmpty();
+
+        limiter.release("client-1", lease.get());
+
+        assertThat(limiter.acquire("client-1"))
+                .withFailMessage("A released permit should be available again")
+                .isPresent();
+    }
+
+    @Test
+    public void shouldReclaimLeasesOfCrashedHolders() {
+        limiter = new ConcurrencyLimiter(jedis, 1, Duration.ofMillis(500), TestRedis.clock());
+        assertThat(limiter.acquire("client-1")).isPresent();
+        assertThat(limiter.acquire("client-1")).isEmpty();
+
+        TestRedis.advance(Duration.ofMillis(600));
+
+        assertThat(limiter.acquire("client-1"))
+                .withFailMessage("An expired lease should not leak its permit")
+                .isPresent();
+    }
+
+    @Test
+    public void shouldRenewOnlyLiveLeases() {
+        limiter = new ConcurrencyLimiter(jedis, 1, Duration.ofMillis(500), TestRedis.clock());
+        String lease = limiter.acquire("client-1").orElseThrow();
+
+        assertThat(limiter.renew("client-1", lease)).isTrue();
+
+        TestRedis.advance(Duration.ofMillis(600));
+        assertThat(limiter.acquire("client-1")).isPresent();
+        assertThat(limiter.renew("client-1", lease))
+                .withFailMessage("An expired lease should not be renewable")
+                .isFalse();
+    }
+
+    @Test
+    public void shouldHandleMultipleClientsIndependently() {
+        limiter = new ConcurrencyLimiter(jedis, 1, Duration.ofSeconds(30), TestRedis.clock());
+        assertThat(limiter.acquire("client-1")).isPresent();
+        assertThat(limiter.acquire("client-2"))
+                .withFailMessage("Client 2 should have its own permits")
+                .isPresent();
+    }
+
+    @Test
+    public void shouldGrantExactlyLimitToConcurrentCallers() throws Exception {
+        int callers = 8;
+        List<Jedis> connections = new ArrayList<>();
+        List<Future<Optional<String>>> leases = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(callers)) {
+            for (int i = 0; i < callers; i++) {
+                Jedis connection = TestRedis.connect();
+                connections.add(connection);
+                ConcurrencyLimiter callerLimiter = new ConcurrencyLimiter(connection, 3, Duration.ofSeconds(30),
+                        TestRedis.clock());
+                leases.add(executor.submit(() -> callerLimiter.acquire("client-1")));
+            }
+            long granted = 0;
+            for (Future<Optional<String>> lease : leases) {
+                if (lease.get().isPresent()) {
+                    granted++;
+                }
+            }
+            assertThat(granted)
+                    .withFailMessage("Exactly the limit should be granted, denied callers must not block others")
+                    .isEqualTo(3);
+        } finally {
+            connections.forEach(Jedis::close);
+        }
+    }
+
+    @Test
+    public void shouldKeepLeasesInTheNamespace() {
+        limiter = new ConcurrencyLimiter(jedis, 1, Duration.ofSeconds(30), TestRedis.clock(), "downloads");
+        assertThat(limiter.acquire("client-1")).isPresent();
+
+        assertThat(jedis.exists(KeyNamespace.prefix("downloads") + "client-1:leases")).isTrue();
+        assertThat(jedis.exists("rate_limit:client-1:leases")).isFalse();
+    }
+
+    @Test
+    public void shouldAcquireAndReleaseInOneCommandEach() {
+        EmbeddedRedisServer server = new EmbeddedRedisServer(TestRedis.clock());
+        try (Jedis connection = server.connect()) {
+            limiter = new ConcurrencyLimiter(connection, 1, Duration.ofSeconds(30), TestRedis.clock());
+
+            long before = server.getCommandsProcessed();
+            String lease = limiter.acquire("client-1").orElseThrow();
+            assertThat(limiter.acquire("client-1")).isEmpty();
+            limiter.release("client-1", lease);
+
+            assertThat(server.getCommandsProcessed() - before)
+                    .withFailMessage("A grant, a denial and a release should take one command each, took %d",
+                            server.getCommandsProcessed() - before)
+                    .isEqualTo(3);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CountMinSketchRateLimiterTest {
+
+    private Jedis jedis;
+    private CountMinSketchRateLimiter rateLimiter;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldDenyRequestsOnceLimitIsExceeded() {
+        rateLimiter = new CountMinSketchRateLimiter(jedis, 60, 5, 0.001, 0.01, TestRedis.clock());
+        for (int i = 1; i <= 5; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Request beyond limit should be denied")
+                .isFalse();
+        assertThat(rateLimiter.isAllowed("client-2"))
+                .withFailMessage("Another client should not be affected")
+                .isTrue();
+    }
+
+    @Test
+    public void shouldUseConstantMemoryRegardlessOfClientCount() {
+        rateLimiter = new CountMinSketchRateLimiter(jedis, 60, 100, 0.01, 0.01, TestRedis.clock());
+        long sketchBytes = (long) rateLimiter.getWidth() * rateLimiter.getDepth() * 4;
+
+        for (int i = 0; i < 2_000; i++) {
+            rateLimiter.isAllowed("10.0." + (i / 256) + "." + (i % 256));
+        }
+
+        String pattern = KeyNamespace.pattern(KeyNamespace.sketch(null));
+        assertThat(jedis.keys(pattern))
+                .withFailMessage("All clients should share one sketch key per window")
+                .hasSize(1);
+        String key = jedis.keys(pattern).iterator().next();
+        assertThat(jedis.strlen(key)).isLessThanOrEqualTo(sketchBytes);
+    }
+
+    @Test
+    public void shouldNeverUnderestimate() {
+        rateLimiter = new CountMinSketchRateLimiter(jedis, 60, 1_000, 0.05, 0.1, TestRedis.clock());
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j <= i % 3; j++) {
+                rateLimiter.isAllowed("client-" + i);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(rateLimiter.estimate("client-" + i))
+                    .withFailMessage("Estimate of client-%d should be at least its real count", i)
+                    .isGreaterThanOrEqualTo(i % 3 + 1);
+        }
+    }
+
+    @Test
+    public void shouldSizeSketchFromErrorBounds() {
+        rateLimiter = new CountMinSketchRateLimiter(jedis, 60, 5, 0.01, 0.01, TestRedis.clock());
+        assertThat(rateLimiter.getWidth()).isEqualTo(272);
+        assertThat(rateLimiter.getDepth()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldRejectErrorBoundsOutsideUnitInterval() {
+        assertThatThrownBy(() -> new CountMinSketchRateLimiter(jedis, 60, 5, 0.01, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketchRateLimiter(jedis, 60, 5, 0, 0.01))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldNotCountDeniedRequests() {
+        rateLimiter = new CountMinSketchRateLimiter(jedis, 60, 2, 0.001, 0.01, TestRedis.clock());
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.isAllowed("client-1");
+        }
+
+        assertThat(rateLimiter.estimate("client-1"))
+                .withFailMessage("Denied requests should have taken their increments back")
+                .isEqualTo(2);
+    }
+}
@@ -1,26 +1,20 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
 import org.junit.jupiter.api.*;
 import redis.clients.jedis.Jedis;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class FixedWindowRateLimiterTest {
 
-    private static final RedisContainer redisContainer = new RedisContainer("redis:latest")
-            .withExposedPorts(6379);
-
     private Jedis jedis;
     private FixedWindowRateLimiter rateLimiter;
 
-    static {
-        redisContainer.start();
-    }
-
     @BeforeEach
     public void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -54,7 +48,7 @@ public class FixedWindowRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainAfterFixedWindowResets() throws InterruptedException {
+    public void shouldAllowRequestsAgainAfterFixedWindowResets() {
         int limit = 5;
         String clientId = "client-1";
         int windowSize = 1;
@@ -70,7 +64,7 @@ public class FixedWindowRateLimiterTest {
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep((windowSize + 1) * 1000);
+        TestRedis.advance(Duration.ofSeconds(windowSize + 1));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request after window reset should be allowed")
@@ -103,7 +97,7 @@ public class FixedWindowRateLimiterTest {
     }
 
     @Test
-    public void shouldDenyAdditionalRequestsUntilFixedWindowResets() throws InterruptedException {
+    public void shouldDenyAdditionalRequestsUntilFixedWindowResets() {
         int limit = 3;
         int windowSize = 5;
         String clientId = "client-1";
@@ -119,13 +113,13 @@ public class FixedWindowRateLimiterTest {
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep(2500);
+        TestRedis.advance(Duration.ofMillis(2500));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request should still be denied within the same fixed window")
                 .isFalse();
 
-        Thread.sleep(2500);
+        TestRedis.advance(Duration.ofMillis(2500));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request should be allowed after fixed window reset")
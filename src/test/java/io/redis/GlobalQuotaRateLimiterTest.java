@@ -0,0 +1,115 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class GlobalQuotaRateLimiterTest {
+
+    private Jedis nodeAJedis;
+    private Jedis nodeBJedis;
+
+    @BeforeEach
+    public void setup() {
+        nodeAJedis = TestRedis.connect();
+        nodeBJedis = TestRedis.connect();
+        nodeAJedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodeAJedis.close();
+        nodeBJedis.close();
+    }
+
+    @Test
+    public void shouldSplitQuotaEvenlyBetweenIdleNodes() {
+        Map<String, Double> shares = GlobalQuotaRateLimiter.allocate(1000, Map.of("a", 0.0, "b", 0.0));
+
+        assertThat(shares.get("a")).isCloseTo(500, within(0.001));
+        assertThat(shares.get("b")).isCloseTo(500, within(0.001));
+    }
+
+    @Test
+    public void shouldGiveUnusedShareToBusyNodes() {
+        Map<String, Double> shares = GlobalQuotaRateLimiter.allocate(1000, Map.of("busy", 900.0, "idle", 10.0));
+
+        assertThat(shares.get("idle"))
+                .withFailMessage("Idle node should keep only its floor, headroom and leftover")
+                .isLessThan(100);
+        assertThat(shares.get("busy")).isGreaterThan(900);
+        assertThat(shares.get("busy") + shares.get("idle"))
+                .withFailMessage("Shares should add up to the global rate")
+                .isCloseTo(1000, within(0.001));
+    }
+
+    @Test
+    public void shouldRebalanceWhenNodesJoinAndLeave() {
+        GlobalQuotaRateLimiter nodeA = new GlobalQuotaRateLimiter(nodeAJedis, "payments", "node-a", 100,
+                Duration.ofSeconds(30));
+        GlobalQuotaRateLimiter nodeB = new GlobalQuotaRateLimiter(nodeBJedis, "payments", "node-b", 100,
+                Duration.ofSeconds(30));
+
+        nodeA.rebalance();
+        assertThat(nodeA.getLocalRate())
+                .withFailMessage("A single node should get the whole quota")
+                .isCloseTo(100, within(0.001));
+
+        nodeB.rebalance();
+        nodeA.rebalance();
+        assertThat(nodeA.getLocalRate() + nodeB.getLocalRate())
+                .withFailMessage("Two nodes should share the quota")
+                .isCloseTo(100, within(0.001));
+
+        nodeB.close();
+        nodeA.rebalance();
+        assertThat(nodeA.getLocalRate())
+                .withFailMessage("The remaining node should take over the share of the node that left")
+                .isCloseTo(100, within(0.001));
+    }
+
+    @Test
+    public void shouldNotEvictPeersWhenOwnClockRunsAhead() {
+        Clock aheadClock = Clock.offset(TestRedis.clock(), Duration.ofMinutes(5));
+        GlobalQuotaRateLimiter nodeA = new GlobalQuotaRateLimiter(nodeAJedis, "payments", "node-a", 100,
+                Duration.ofSeconds(30), aheadClock);
+        GlobalQuotaRateLimiter nodeB = new GlobalQuotaRateLimiter(nodeBJedis, "payments", "node-b", 100,
+                Duration.ofSeconds(30), TestRedis.clock());
+
+        nodeB.rebalance();
+        nodeA.rebalance();
+        assertThat(nodeA.getLocalRate())
+                .withFailMessage("Node B is alive and should keep its share despite node A's clock")
+                .isCloseTo(50, within(0.001));
+    }
+
+    @Test
+    public void shouldEnforceLocalShareWithoutRoundTrips() {
+        GlobalQuotaRateLimiter nodeA = new GlobalQuotaRateLimiter(nodeAJedis, "payments", "node-a", 5,
+                Duration.ofSeconds(30));
+        assertThat(nodeA.isAllowed())
+                .withFailMessage("No request should be admitted before the node knows its share")
+                .isFalse();
+
+        nodeA.rebalance();
+        nodeAJedis.close(); // Admission must not need Redis
+
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (nodeA.isAllowed()) {
+                admitted++;
+            }
+        }
+        assertThat(admitted)
+                .withFailMessage("Admitted %d requests in a burst against a 5/sec share", admitted)
+                .isLessThanOrEqualTo(5);
+    }
+}
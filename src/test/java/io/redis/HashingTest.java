@@ -0,0 +1,30 @@
+package io.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HashingTest {
+
+    @Test
+    public void shouldHashTheUtf8BytesOfTheValue() {
+        // Mapped files and node placement depend on the hash, so it must not change with the encoding
+        String[] values = {"", "client-1", "clíent-2", "клиент-3", "客户-4", "client-😀", "lone-\uD800", "\uDC00"};
+        for (String value : values) {
+            assertThat(Hashing.hash64(value))
+                    .withFailMessage("Hash of " + value + " should match its UTF-8 bytes")
+                    .isEqualTo(hashOfBytes(value.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    private static long hashOfBytes(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return Hashing.mix64(hash);
+    }
+}
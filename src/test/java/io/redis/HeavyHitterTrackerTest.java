@@ -0,0 +1,111 @@
+package io.redis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HeavyHitterTrackerTest {
+
+    @Test
+    void shouldRankClientsByVolume() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(10);
+        for (int i = 0; i < 50; i++) {
+            tracker.record("client-1", true);
+        }
+        for (int i = 0; i < 20; i++) {
+            tracker.record("client-2", true);
+        }
+        tracker.record("client-3", true);
+
+        List<HeavyHitterTracker.HeavyHitter> top = tracker.topActive(2);
+
+        assertThat(top).extracting(HeavyHitterTracker.HeavyHitter::clientId)
+                .containsExactly("client-1", "client-2");
+        assertThat(top.get(0).count()).isEqualTo(50);
+        assertThat(top.get(0).error()).isEqualTo(0);
+    }
+
+    @Test
+    void shouldRankDenialsSeparately() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(10);
+        for (int i = 0; i < 50; i++) {
+            tracker.record("busy-but-fine", true);
+        }
+        for (int i = 0; i < 5; i++) {
+            tracker.record("abusive", false);
+        }
+
+        assertThat(tracker.topThrottled(5)).extracting(HeavyHitterTracker.HeavyHitter::clientId)
+                .containsExactly("abusive");
+    }
+
+    @Test
+    void shouldKeepHeavyHittersWithBoundedMemoryUnderManyClients() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(20);
+        for (int i = 0; i < 10_000; i++) {
+            tracker.record("one-off-" + i, false);
+            if (i % 5 == 0) {
+                tracker.record("attacker", false);
+            }
+        }
+
+        HeavyHitterTracker.HeavyHitter top = tracker.topThrottled(1).get(0);
+        assertThat(top.clientId()).isEqualTo("attacker");
+        assertThat(top.count())
+                .withFailMessage("Counts should never be underestimated")
+                .isGreaterThanOrEqualTo(2_000);
+        assertThat(tracker.topThrottled(100)).hasSize(20);
+    }
+
+    @Test
+    void shouldCountConcurrentDecisionsExactlyWhileBelowCapacity() throws InterruptedException {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(1_000);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    tracker.record("client-" + (i % 100), true);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<HeavyHitterTracker.HeavyHitter> top = tracker.topActive(100);
+        assertThat(top).hasSize(100);
+        assertThat(top).allSatisfy(hitter -> assertThat(hitter.count())
+                .withFailMessage("%s should have been counted exactly", hitter.clientId())
+                .isEqualTo(800));
+    }
+
+    @Test
+    void shouldMergeStripesIntoOneRanking() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(64, 4);
+        for (int client = 1; client <= 40; client++) {
+            for (int i = 0; i < client; i++) {
+                sketch.add("client-" + client);
+            }
+        }
+
+        assertThat(sketch.top(3)).extracting(SpaceSavingSketch.Entry::item)
+                .containsExactly("client-40", "client-39", "client-38");
+        assertThat(sketch.top(100)).hasSize(40);
+    }
+
+    @Test
+    void shouldRecordDecisionsOfWrappedLimiter() {
+        HeavyHitterTracker tracker = new HeavyHitterTracker(10);
+        RateLimiter rateLimiter = new HeavyHitterRateLimiter(clientId -> !clientId.equals("client-2"), tracker);
+
+        rateLimiter.isAllowed("client-1");
+        rateLimiter.isAllowed("client-2");
+        rateLimiter.isAllowed("client-2");
+
+        assertThat(tracker.topActive(1).get(0).clientId()).isEqualTo("client-2");
+        assertThat(tracker.topThrottled(10)).extracting(HeavyHitterTracker.HeavyHitter::clientId)
+                .containsExactly("client-2");
+    }
+}
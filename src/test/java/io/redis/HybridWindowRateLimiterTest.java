@@ -0,0 +1,115 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HybridWindowRateLimiterTest {
+
+    private Jedis jedis;
+    private Jedis nodeAJedis;
+    private Jedis nodeBJedis;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        nodeAJedis = TestRedis.connect();
+        nodeBJedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+        nodeAJedis.close();
+        nodeBJedis.close();
+    }
+
+    @Test
+    public void shouldDecideLocallyWithoutTouchingRedis() {
+        HybridWindowRateLimiter rateLimiter = HybridWindowRateLimiter.fixedWindow(nodeAJedis, 60, 5);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be allowed", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Request beyond limit should be denied locally")
+                .isFalse();
+        assertThat(jedis.exists("rate_limit:client-1"))
+                .withFailMessage("Nothing should reach Redis before a flush")
+                .isFalse();
+    }
+
+    @Test
+    public void shouldKeepItsHashesInTheNamespace() {
+        FixedWindowRateLimiter fixed = new FixedWindowRateLimiter(jedis, 60, 5);
+        HybridWindowRateLimiter rateLimiter = new HybridWindowRateLimiter(nodeAJedis, 5, 60, 60, TestRedis.clock(),
+                "hybrid");
+        fixed.isAllowed("client-1");
+        rateLimiter.isAllowed("client-1");
+        rateLimiter.flush();
+
+        assertThat(jedis.type("rate_limit:client-1")).isEqualTo("string");
+        assertThat(jedis.type(KeyNamespace.prefix("hybrid") + "client-1"))
+                .withFailMessage("The hybrid window should keep its hash next to the fixed window's string")
+                .isEqualTo("hash");
+    }
+
+    @Test
+    public void shouldFlushDeltasAsOneCounter() {
+        HybridWindowRateLimiter rateLimiter = HybridWindowRateLimiter.slidingWindowCounter(nodeAJedis, 10, 60, 1);
+        for (int i = 1; i <= 3; i++) {
+            rateLimiter.isAllowed("client-1");
+        }
+        rateLimiter.flush();
+
+        long totalCount = jedis.hgetAll("rate_limit:client-1").values().stream()
+                .mapToLong(Long::parseLong)
+                .sum();
+        assertThat(totalCount)
+                .withFailMessage("The flushed count (%d) should match the admitted requests", totalCount)
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void shouldTakeOtherNodesIntoAccountAfterFlush() {
+        HybridWindowRateLimiter nodeA = HybridWindowRateLimiter.fixedWindow(nodeAJedis, 60, 5);
+        HybridWindowRateLimiter nodeB = HybridWindowRateLimiter.fixedWindow(nodeBJedis, 60, 5);
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(nodeA.isAllowed("client-1")).isTrue();
+        }
+        nodeA.flush();
+
+        assertThat(nodeB.isAllowed("client-1"))
+                .withFailMessage("Node B should admit until it learns about node A's requests")
+                .isTrue();
+        nodeB.flush();
+
+        assertThat(nodeB.isAllowed("client-1"))
+                .withFailMessage("Node B should have learned the global total of 4")
+                .isTrue();
+        assertThat(nodeB.isAllowed("client-1"))
+                .withFailMessage("Request beyond the global limit should be denied")
+                .isFalse();
+    }
+
+    @Test
+    public void shouldFlushPeriodicallyOnceStarted() throws InterruptedException {
+        try (HybridWindowRateLimiter rateLimiter = HybridWindowRateLimiter.fixedWindow(nodeAJedis, 60, 5)) {
+            rateLimiter.start(Duration.ofMillis(10));
+            rateLimiter.isAllowed("client-1");
+            Thread.sleep(200);
+
+            assertThat(jedis.hlen("rate_limit:client-1"))
+                    .withFailMessage("The background flusher should have pushed the delta")
+                    .isEqualTo(1);
+        }
+    }
+}
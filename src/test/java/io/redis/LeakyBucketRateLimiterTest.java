@@ -1,27 +1,28 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.Simulation;
+import io.redis.simulation.VirtualClock;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
 
-public class LeakyBucketRateLimiterTest {
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
 
-    private static final RedisContainer redisContainer = new RedisContainer("redis:latest")
-            .withExposedPorts(6379);
+public class LeakyBucketRateLimiterTest {
 
-    static {
-        redisContainer.start();
-    }
+    private static final BucketOptions OPTIONS = BucketOptions.DEFAULT.withClock(TestRedis.clock());
 
     private Jedis jedis;
     private LeakyBucketRateLimiter rateLimiter;
 
     @BeforeEach
     public void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -32,7 +33,7 @@ public class LeakyBucketRateLimiterTest {
 
     @Test
     public void shouldAllowRequestsWithinBucketCapacity() {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             Assertions.assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -42,7 +43,7 @@ public class LeakyBucketRateLimiterTest {
 
     @Test
     public void shouldDenyRequestsOnceBucketIsFull() {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             Assertions.assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -55,8 +56,8 @@ public class LeakyBucketRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainAfterLeakage() throws InterruptedException {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0);
+    public void shouldAllowRequestsAgainAfterLeakage() {
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             Assertions.assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -67,7 +68,7 @@ public class LeakyBucketRateLimiterTest {
                 .withFailMessage("Request beyond bucket capacity should be denied")
                 .isFalse();
 
-        Thread.sleep(1000);
+        TestRedis.advance(Duration.ofSeconds(1));
 
         Assertions.assertThat(rateLimiter.isAllowed("client-1"))
                 .withFailMessage("Request after leakage should be allowed")
@@ -76,7 +77,7 @@ public class LeakyBucketRateLimiterTest {
 
     @Test
     public void shouldMaintainIndependentBucketsForMultipleClients() {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         String clientId1 = "client-1";
         String clientId2 = "client-2";
 
@@ -99,7 +100,7 @@ public class LeakyBucketRateLimiterTest {
 
     @Test
     public void shouldAllowBurstsUpToBucketCapacity() {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 10, 2.0);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 10, 2.0, OPTIONS);
         String clientId = "client-1";
 
         for (int i = 1; i <= 10; i++) {
@@ -114,8 +115,8 @@ public class LeakyBucketRateLimiterTest {
     }
 
     @Test
-    public void shouldLeakRequestsGraduallyAndAllowRequestsOverTime() throws InterruptedException {
-        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0);
+    public void shouldLeakRequestsGraduallyAndAllowRequestsOverTime() {
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         String clientId = "client-1";
 
         for (int i = 1; i <= 5; i++) {
@@ -128,7 +129,7 @@ public class LeakyBucketRateLimiterTest {
                 .withFailMessage("Request beyond bucket capacity should be denied")
                 .isFalse();
 
-        Thread.sleep(2000);
+        TestRedis.advance(Duration.ofSeconds(2));
 
         Assertions.assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request after partial refill should be allowed")
@@ -144,11 +145,11 @@ public class LeakyBucketRateLimiterTest {
     }
 
     @Test
-    public void shouldFillUpToCapacityWithoutOverflow() throws InterruptedException {
+    public void shouldFillUpToCapacityWithoutOverflow() {
         int capacity = 3;
         double refillRatePerSecond = 2.0;
         String clientId = "client-1";
-        rateLimiter = new LeakyBucketRateLimiter(jedis, capacity, refillRatePerSecond);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, capacity, refillRatePerSecond, OPTIONS);
 
         for (int i = 1; i <= capacity; i++) {
             Assertions.assertThat(rateLimiter.isAllowed(clientId))
@@ -160,7 +161,7 @@ public class LeakyBucketRateLimiterTest {
                 .withFailMessage("Request beyond bucket capacity should be denied")
                 .isFalse();
 
-        Thread.sleep(3000);
+        TestRedis.advance(Duration.ofSeconds(3));
 
         for (int i = 1; i <= capacity; i++) {
             Assertions.assertThat(rateLimiter.isAllowed(clientId))
@@ -178,7 +179,7 @@ public class LeakyBucketRateLimiterTest {
         int capacity = 3;
         double leakRatePerSecond = 1.0;
         String clientId = "client-1";
-        rateLimiter = new LeakyBucketRateLimiter(jedis, capacity, leakRatePerSecond);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, capacity, leakRatePerSecond, OPTIONS);
 
         for (int i = 1; i <= capacity; i++) {
             Assertions.assertThat(rateLimiter.isAllowed(clientId))
@@ -197,4 +198,109 @@ public class LeakyBucketRateLimiterTest {
                 .withFailMessage("The count (%d) should reflect the leaked requests", updatedRequestCount)
                 .isEqualTo(capacity);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldQueueRequestsAndReturnTheWaitOnceBucketIsFull() {
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 2, 2.0, OPTIONS);
+        String clientId = "client-1";
+
+        for (int i = 1; i <= 2; i++) {
+            Assertions.assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+                    .withFailMessage("Acquire %d within bucket capacity should not wait", i)
+                    .contains(Duration.ZERO);
+        }
+
+        Assertions.assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+                .withFailMessage("First queued request should wait for one leak")
+                .contains(Duration.ofMillis(500));
+        Assertions.assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+                .withFailMessage("Second queued request should wait behind the first one")
+                .contains(Duration.ofSeconds(1));
+        Assertions.assertThat(rateLimiter.isAllowed(clientId))
+                .withFailMessage("Queued requests should keep the bucket full for isAllowed")
+                .isFalse();
+    }
+
+    @Test
+    public void shouldNotQueueWhenWaitExceedsTimeout() {
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 1, 0.5, OPTIONS);
+        String clientId = "client-1";
+
+        Assertions.assertThat(rateLimiter.acquire(clientId, Duration.ZERO))
+                .withFailMessage("Acquire within bucket capacity should not wait")
+                .contains(Duration.ZERO);
+        Assertions.assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(1)))
+                .withFailMessage("Acquire should fail when the leak takes longer than the timeout")
+                .isEmpty();
+        Assertions.assertThat(Integer.parseInt(jedis.get("rate_limit:" + clientId + ":count")))
+                .withFailMessage("A failed acquire should not queue a request")
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldDeliverConfiguredRateToCallersFasterThanOneLeakInterval() {
+        // Own server on a virtual clock, a minute of traffic at 1000 req/s replays in well under a second
+        VirtualClock clock = new VirtualClock();
+        try (Jedis simulationJedis = new EmbeddedRedisServer(clock).connect()) {
+            LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(simulationJedis, 10, 7.5, BucketOptions.DEFAULT.withClock(clock));
+
+            Simulation.Result result = new Simulation(clock)
+                    .run(limiter, Simulation.steady(List.of("client-1"), 1000, Duration.ofMinutes(1)));
+
+            // The initial burst of 10 plus 7.5 per second, a leak in progress at the end may be missing
+            Assertions.assertThat(result.allowed())
+                    .withFailMessage("Expected 460 requests at the configured rate but %d were allowed", result.allowed())
+                    .isBetween(459L, 460L);
+        }
+    }
+
+    @Test
+    public void shouldAgreeAcrossSkewedNodesWithRedisTime() {
+        // Two nodes whose clocks are an hour apart in either direction
+        Clock ahead = Clock.offset(TestRedis.clock(), Duration.ofHours(1));
+        Clock behind = Clock.offset(TestRedis.clock(), Duration.ofHours(-1));
+        LeakyBucketRateLimiter nodeA = new LeakyBucketRateLimiter(jedis, 2, 1,
+                BucketOptions.DEFAULT.withClock(ahead).withTimeSource(TimeSource.REDIS));
+        LeakyBucketRateLimiter nodeB = new LeakyBucketRateLimiter(jedis, 2, 1,
+                BucketOptions.DEFAULT.withClock(behind).withTimeSource(TimeSource.REDIS));
+
+        Assertions.assertThat(nodeA.isAllowed("client-1")).isTrue();
+        Assertions.assertThat(nodeB.isAllowed("client-1")).isTrue();
+        Assertions.assertThat(nodeA.isAllowed("client-1"))
+                .withFailMessage("The node ahead should not see an hour of leaking")
+                .isFalse();
+
+        TestRedis.advance(Duration.ofMillis(1100));
+        Assertions.assertThat(nodeB.isAllowed("client-1")).isTrue();
+        Assertions.assertThat(nodeA.isAllowed("client-1")).isFalse();
+    }
+
+    @Test
+    public void shouldRampUpNewBucketsDuringWarmUp() {
+        WarmUp warmUp = new WarmUp(Duration.ofSeconds(10), 0.2);
+        rateLimiter = new LeakyBucketRateLimiter(jedis, 10, 10, OPTIONS.withWarmUp(warmUp));
+
+        Assertions.assertThat(countAllowed(20))
+                .withFailMessage("A cold bucket should hold a fifth of its capacity")
+                .isEqualTo(2);
+        TestRedis.advance(Duration.ofMillis(500));
+        Assertions.assertThat(countAllowed(20))
+                .withFailMessage("A cold bucket should leak at a fifth of the rate")
+                .isEqualTo(1);
+
+        TestRedis.advance(Duration.ofSeconds(10));
+        Assertions.assertThat(countAllowed(20))
+                .withFailMessage("A warm bucket should hold its full capacity")
+                .isEqualTo(10);
+    }
+
+    private int countAllowed(int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (rateLimiter.isAllowed("client-1")) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
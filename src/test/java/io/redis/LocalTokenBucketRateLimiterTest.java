@@ -0,0 +1,76 @@
+package io.redis;
+
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LocalTokenBucketRateLimiterTest {
+
+    @Test
+    void shouldDenyRequestsOnceBucketIsEmpty() {
+        LocalTokenBucketRateLimiter rateLimiter = new LocalTokenBucketRateLimiter(5, 0.001);
+        for (int i = 1; i <= 5; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Request beyond bucket capacity should be denied")
+                .isFalse();
+        assertThat(rateLimiter.isAllowed("client-2"))
+                .withFailMessage("Other clients should have their own bucket")
+                .isTrue();
+    }
+
+    @Test
+    void shouldRefillFractionalTokensBetweenCalls() {
+        VirtualClock clock = new VirtualClock();
+        LocalTokenBucketRateLimiter rateLimiter = new LocalTokenBucketRateLimiter(1, 20.0, 100, clock);
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+
+        // Polling every few milliseconds must not throw away the partial refill
+        int allowed = 0;
+        for (int i = 0; i < 40; i++) {
+            clock.advance(Duration.ofMillis(5));
+            if (rateLimiter.isAllowed("client-1")) {
+                allowed++;
+            }
+        }
+        assertThat(allowed)
+                .withFailMessage("Expected about 4 refilled tokens in 200ms but got %d", allowed)
+                .isBetween(3, 4);
+    }
+
+    @Test
+    void shouldForgetIdleClientsWhenFull() {
+        LocalTokenBucketRateLimiter rateLimiter = new LocalTokenBucketRateLimiter(1, 1_000_000.0, 2);
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        assertThat(rateLimiter.isAllowed("client-2")).isTrue();
+        assertThat(rateLimiter.isAllowed("client-3"))
+                .withFailMessage("A new client should still be served once idle buckets are evicted")
+                .isTrue();
+    }
+
+    @Test
+    void shouldKeepAtMostMaxClientsBuckets() {
+        LocalTokenBucketRateLimiter rateLimiter = new LocalTokenBucketRateLimiter(1, 0.001, 2);
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        assertThat(rateLimiter.isAllowed("client-2")).isTrue();
+        // Neither bucket is full again, yet the cap has to hold
+        assertThat(rateLimiter.isAllowed("client-3")).isTrue();
+        assertThat(rateLimiter.size()).isEqualTo(2);
+
+        assertThat(rateLimiter.isAllowed("client-3"))
+                .withFailMessage("The most recent client should keep its bucket")
+                .isFalse();
+        assertThat(rateLimiter.isAllowed("client-2"))
+                .withFailMessage("A recently used client should keep its bucket")
+                .isFalse();
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("The least recently used client should have been forgotten")
+                .isTrue();
+    }
+}
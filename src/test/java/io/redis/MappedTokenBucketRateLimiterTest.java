@@ -0,0 +1,117 @@
+package io.redis;
+
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedTokenBucketRateLimiterTest {
+
+    @TempDir
+    Path directory;
+
+    private final VirtualClock clock = new VirtualClock();
+
+    @Test
+    void shouldDenyRequestsOnceBucketIsEmpty() throws IOException {
+        try (MappedTokenBucketRateLimiter rateLimiter =
+                     new MappedTokenBucketRateLimiter(directory.resolve("buckets"), 1024, 5, 1, clock)) {
+            for (int i = 1; i <= 5; i++) {
+                assertThat(rateLimiter.isAllowed("client-1"))
+                        .withFailMessage("Request %d should be allowed within bucket capacity", i)
+                        .isTrue();
+            }
+            assertThat(rateLimiter.isAllowed("client-1")).isFalse();
+            assertThat(rateLimiter.isAllowed("client-2"))
+                    .withFailMessage("Other clients should have their own bucket")
+                    .isTrue();
+
+            clock.advance(Duration.ofSeconds(2));
+            assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+            assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+            assertThat(rateLimiter.isAllowed("client-1")).isFalse();
+        }
+    }
+
+    @Test
+    void shouldDecideWithoutAllocating() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String[] clientIds = {"client-1", "clíent-2", "клиент-3", "client-\uD83D\uDE00"};
+        try (MappedTokenBucketRateLimiter rateLimiter =
+                     new MappedTokenBucketRateLimiter(directory.resolve("buckets"), 1024, 5, 1, Clock.systemUTC())) {
+            for (String clientId : clientIds) {
+                rateLimiter.isAllowed(clientId);
+            }
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 10_000; i++) {
+                rateLimiter.isAllowed(clientIds[i % clientIds.length]);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+            assertThat(allocated)
+                    .withFailMessage("Deciding for known clients allocated %d bytes", allocated)
+                    .isLessThan(1024);
+        }
+    }
+
+    @Test
+    void shouldKeepQuotasAcrossRestarts() throws IOException {
+        Path file = directory.resolve("buckets");
+        try (MappedTokenBucketRateLimiter rateLimiter = new MappedTokenBucketRateLimiter(file, 1024, 3, 0.001, clock)) {
+            for (int i = 0; i < 3; i++) {
+                rateLimiter.isAllowed("client-1");
+            }
+        }
+
+        try (MappedTokenBucketRateLimiter restarted = new MappedTokenBucketRateLimiter(file, 1024, 3, 0.001, clock)) {
+            assertThat(restarted.isAllowed("client-1"))
+                    .withFailMessage("The emptied bucket should still be empty after a restart")
+                    .isFalse();
+            assertThat(restarted.isAllowed("client-2")).isTrue();
+        }
+    }
+
+    @Test
+    void shouldReuseSlotsWhenTheTableIsFull() throws IOException {
+        try (MappedTokenBucketRateLimiter rateLimiter =
+                     new MappedTokenBucketRateLimiter(directory.resolve("buckets"), 4, 2, 1, clock)) {
+            for (int i = 0; i < 100; i++) {
+                assertThat(rateLimiter.isAllowed("client-" + i))
+                        .withFailMessage("New client %d should get a bucket even in a full table", i)
+                        .isTrue();
+            }
+        }
+    }
+
+    @Test
+    void shouldRejectFilesOfADifferentSize() throws IOException {
+        Path file = directory.resolve("buckets");
+        new MappedTokenBucketRateLimiter(file, 1024, 3, 1, clock).close();
+
+        assertThatThrownBy(() -> new MappedTokenBucketRateLimiter(file, 2048, 3, 1, clock))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("1024 slots");
+    }
+
+    @Test
+    void shouldRefuseAFileThatIsAlreadyOpen() throws IOException {
+        Path file = directory.resolve("buckets");
+        try (MappedTokenBucketRateLimiter rateLimiter = new MappedTokenBucketRateLimiter(file, 1024, 3, 1, clock)) {
+            assertThatThrownBy(() -> new MappedTokenBucketRateLimiter(file, 1024, 3, 1, clock))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("already open");
+            assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        }
+
+        new MappedTokenBucketRateLimiter(file, 1024, 3, 1, clock).close();
+    }
+}
@@ -0,0 +1,65 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipelinedDecisionsTest {
+
+    private Jedis jedis;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldNotAdmitMoreThanTheLimitWithinOneBatch() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(jedis, 3, 0.001,
+                BucketOptions.DEFAULT.withClock(TestRedis.clock()));
+        List<PipelinedDecisions.Request> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(new PipelinedDecisions.Request(limiter, "client-1"));
+        }
+
+        boolean[] decisions = PipelinedDecisions.decide(jedis, requests);
+
+        assertThat(decisions).containsExactly(true, true, true, false, false);
+        assertThat(jedis.get("rate_limit:client-1:count"))
+                .withFailMessage("The batch should write back the bucket once, with all three tokens taken")
+                .isEqualTo("0");
+    }
+
+    @Test
+    public void shouldDecideForSeveralLimitersAndClientsTogether() {
+        FixedWindowRateLimiter fixedWindow = new FixedWindowRateLimiter(jedis, 60, 1);
+        SlidingWindowLogRateLimiter slidingLog = new SlidingWindowLogRateLimiter(jedis, 2, 60, TestRedis.clock());
+        List<PipelinedDecisions.Request> requests = List.of(
+                new PipelinedDecisions.Request(fixedWindow, "client-1"),
+                new PipelinedDecisions.Request(fixedWindow, "client-1"),
+                new PipelinedDecisions.Request(fixedWindow, "client-2"),
+                new PipelinedDecisions.Request(slidingLog, "client-3"),
+                new PipelinedDecisions.Request(slidingLog, "client-3"),
+                new PipelinedDecisions.Request(slidingLog, "client-3"));
+
+        boolean[] decisions = PipelinedDecisions.decide(jedis, requests);
+
+        assertThat(decisions).containsExactly(true, false, true, true, true, false);
+        assertThat(fixedWindow.isAllowed("client-2"))
+                .withFailMessage("The batch should have counted client 2's request in Redis")
+                .isFalse();
+        assertThat(jedis.get("rate_limit:client-3").split(",")).hasSize(2);
+    }
+}
@@ -0,0 +1,114 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PriorityTokenBucketRateLimiterTest {
+
+    private static final BucketOptions OPTIONS = BucketOptions.DEFAULT.withClock(TestRedis.clock());
+    private static final int INTERACTIVE = 0;
+    private static final int NORMAL = 1;
+    private static final int BATCH = 2;
+
+    private Jedis jedis;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldShedLowerClassesFirst() {
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(jedis, 10, 0.001, OPTIONS);
+        // Thresholds of 0, 3 and 5 tokens
+        PriorityTokenBucketRateLimiter limiter = new PriorityTokenBucketRateLimiter(bucket, 0.3, 0.2, 0.5);
+
+        assertThat(countAllowed(limiter, BATCH, 10))
+                .withFailMessage("Batch should only get the tokens above the other reserves")
+                .isEqualTo(5);
+        assertThat(countAllowed(limiter, NORMAL, 10))
+                .withFailMessage("Normal traffic should get what batch left above the interactive reserve")
+                .isEqualTo(2);
+        assertThat(limiter.decide("client-1", INTERACTIVE).remaining()).isEqualTo(2);
+        assertThat(countAllowed(limiter, INTERACTIVE, 10))
+                .withFailMessage("Interactive traffic should drain the rest of the bucket")
+                .isEqualTo(2);
+        assertThat(bucket.isAllowed("client-1")).isFalse();
+    }
+
+    @Test
+    public void shouldNotTakeReservedTokensUnderConcurrency() throws Exception {
+        int threads = 8;
+        List<Future<Integer>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    try (Jedis connection = TestRedis.connect()) {
+                        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(connection, 20, 0.001, OPTIONS);
+                        return countAllowed(new PriorityTokenBucketRateLimiter(bucket, 0.5, 0.5), 1, 10);
+                    }
+                }));
+            }
+        }
+
+        int allowed = 0;
+        for (Future<Integer> result : results) {
+            allowed += result.get();
+        }
+        assertThat(allowed)
+                .withFailMessage("Concurrent low-priority callers took %d tokens, only 10 are above the reserve", allowed)
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void shouldScaleReservesWithTheBucketDuringWarmUp() {
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(jedis, 10, 0.001,
+                OPTIONS.withWarmUp(new WarmUp(Duration.ofSeconds(10), 0.4)));
+        PriorityTokenBucketRateLimiter limiter = new PriorityTokenBucketRateLimiter(bucket, 0.5, 0.5);
+
+        assertThat(countAllowed(limiter, 1, 10))
+                .withFailMessage("The lower class should keep half of a cold bucket of 4 tokens")
+                .isEqualTo(2);
+        assertThat(countAllowed(limiter, INTERACTIVE, 10))
+                .withFailMessage("Interactive traffic should get the other half")
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void shouldRejectReservesLargerThanTheBucket() {
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(jedis, 10, 1, OPTIONS);
+
+        assertThatThrownBy(() -> new PriorityTokenBucketRateLimiter(bucket, 0.7, 0.4))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PriorityTokenBucketRateLimiter(bucket, 0.5).decide("client-1", 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static int countAllowed(PriorityTokenBucketRateLimiter limiter, int priority, int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (limiter.isAllowed("client-1", priority)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
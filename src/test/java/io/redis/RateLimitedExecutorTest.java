@@ -0,0 +1,86 @@
+package io.redis;
+
+import io.redis.embedded.EmbeddedRedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RateLimitedExecutorTest {
+
+    // The executor waits in real time, so the server needs the system clock rather than the shared virtual one
+    private final EmbeddedRedisServer server = new EmbeddedRedisServer();
+    private Jedis jedis;
+
+    @BeforeEach
+    public void setup() {
+        jedis = server.connect();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldRunTasksAtTheAllowedRate() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(jedis, 2, 20);
+        List<Long> startTimes = new CopyOnWriteArrayList<>();
+        long start = System.nanoTime();
+        long commandsBefore = server.getCommandsProcessed();
+
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        try (RateLimitedExecutor executor = new RateLimitedExecutor(limiter, Duration.ofSeconds(5))) {
+            for (int i = 0; i < 8; i++) {
+                int task = i;
+                futures.add(executor.submit("partner-1", () -> {
+                    startTimes.add(System.nanoTime() - start);
+                    return task;
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertThat(futures.get(i).get()).isEqualTo(i);
+            }
+            assertThat(executor.getReservations())
+                    .withFailMessage("Every task should take exactly one reservation")
+                    .isEqualTo(8);
+        }
+
+        // A burst of 2, then 6 more at 20 per second
+        assertThat(startTimes.stream().mapToLong(Long::longValue).max().orElseThrow())
+                .withFailMessage("The last task should start once six tokens were refilled")
+                .isGreaterThanOrEqualTo(Duration.ofMillis(290).toNanos());
+        assertThat(startTimes.stream().filter(time -> time < Duration.ofMillis(40).toNanos()).count())
+                .withFailMessage("Only the burst should start immediately")
+                .isLessThanOrEqualTo(3);
+        // MGET and two SETs per reservation, no polling
+        assertThat(server.getCommandsProcessed() - commandsBefore).isEqualTo(8 * 3);
+    }
+
+    @Test
+    public void shouldRejectTasksBeyondMaxWait() throws Exception {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(jedis, 1, 1);
+
+        try (RateLimitedExecutor executor = new RateLimitedExecutor(limiter, Duration.ofMillis(500))) {
+            CompletableFuture<Void> first = executor.execute("partner-1", () -> { });
+            CompletableFuture<Void> second = executor.execute("partner-1", () -> { });
+
+            first.get(1, TimeUnit.SECONDS);
+            assertThatThrownBy(second::get)
+                    .withFailMessage("The second request would leak out after a second, past the max wait")
+                    .hasCauseInstanceOf(RejectedExecutionException.class);
+            assertThat(executor.getRejected()).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.redis;
+
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResilientRateLimiterTest {
+
+    private final AtomicBoolean redisDown = new AtomicBoolean();
+    private final AtomicInteger redisCalls = new AtomicInteger();
+
+    private final RateLimiter redisLimiter = clientId -> {
+        redisCalls.incrementAndGet();
+        if (redisDown.get()) {
+            throw new JedisConnectionException("Connection refused");
+        }
+        return false;
+    };
+
+    @Test
+    void shouldUseDelegateWhileHealthy() {
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(redisLimiter, ResilientRateLimiter.FAIL_OPEN,
+                new CircuitBreaker(3, Duration.ofSeconds(10)), Duration.ofSeconds(1));
+
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Decision should come from the delegate while it is healthy")
+                .isFalse();
+        assertThat(rateLimiter.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldFallBackOnErrorsAndStopCallingRedisOnceOpen() {
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(redisLimiter, ResilientRateLimiter.FAIL_OPEN,
+                new CircuitBreaker(3, Duration.ofSeconds(10)), Duration.ofSeconds(1));
+        redisDown.set(true);
+
+        for (int i = 1; i <= 10; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be decided by the fail-open fallback", i)
+                    .isTrue();
+        }
+
+        assertThat(rateLimiter.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(redisCalls.get())
+                .withFailMessage("Redis should not be called once the breaker is open")
+                .isEqualTo(3);
+    }
+
+    @Test
+    void shouldReopenWhenTrialCallFailsUnexpectedly() {
+        VirtualClock clock = new VirtualClock();
+        AtomicBoolean broken = new AtomicBoolean(true);
+        RateLimiter brokenLimiter = clientId -> {
+            if (broken.get()) {
+                throw new NumberFormatException("For input string: \"garbage\"");
+            }
+            return false;
+        };
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(brokenLimiter, ResilientRateLimiter.FAIL_OPEN,
+                new CircuitBreaker(1, Duration.ofMillis(100), clock), Duration.ofSeconds(1));
+
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        clock.advance(Duration.ofMillis(150));
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        assertThat(rateLimiter.getCircuitState())
+                .withFailMessage("A failed trial call should reopen the breaker instead of leaving it half-open")
+                .isEqualTo(CircuitBreaker.State.OPEN);
+
+        broken.set(false);
+        clock.advance(Duration.ofMillis(150));
+        assertThat(rateLimiter.isAllowed("client-1")).isFalse();
+        assertThat(rateLimiter.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldReturnToRedisOnceTrialCallSucceeds() {
+        VirtualClock clock = new VirtualClock();
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(redisLimiter, ResilientRateLimiter.FAIL_OPEN,
+                new CircuitBreaker(1, Duration.ofMillis(100), clock), Duration.ofSeconds(1));
+        redisDown.set(true);
+
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        assertThat(rateLimiter.getCircuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        redisDown.set(false);
+        clock.advance(Duration.ofMillis(150));
+
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Decision should come from Redis again after a successful trial call")
+                .isFalse();
+        assertThat(rateLimiter.getCircuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldTripBreakerOnCallsSlowerThanLatencyBudget() {
+        RateLimiter slowLimiter = clientId -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(slowLimiter, ResilientRateLimiter.FAIL_CLOSED,
+                new CircuitBreaker(2, Duration.ofSeconds(10)), Duration.ofMillis(5));
+
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("A slow answer should still be used")
+                .isTrue();
+        assertThat(rateLimiter.isAllowed("client-1")).isTrue();
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Once open, the fail-closed fallback should deny")
+                .isFalse();
+    }
+
+    @Test
+    void shouldFallBackToLocalApproximation() {
+        ResilientRateLimiter rateLimiter = new ResilientRateLimiter(redisLimiter,
+                new LocalTokenBucketRateLimiter(3, 0.001), new CircuitBreaker(1, Duration.ofSeconds(10)),
+                Duration.ofSeconds(1));
+        redisDown.set(true);
+
+        for (int i = 1; i <= 3; i++) {
+            assertThat(rateLimiter.isAllowed("client-1"))
+                    .withFailMessage("Request %d should be allowed by the local bucket", i)
+                    .isTrue();
+        }
+        assertThat(rateLimiter.isAllowed("client-1"))
+                .withFailMessage("Request beyond the local bucket capacity should be denied")
+                .isFalse();
+    }
+}
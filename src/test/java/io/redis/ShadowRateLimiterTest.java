@@ -0,0 +1,129 @@
+package io.redis;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShadowRateLimiterTest {
+
+    private Jedis jedis;
+
+    @BeforeEach
+    public void setup() {
+        jedis = TestRedis.connect();
+        jedis.flushAll();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldEnforcePrimaryAndCountDisagreements() {
+        ShadowRateLimiter limiter = new ShadowRateLimiter(jedis,
+                new FixedWindowRateLimiter(jedis, 60, 3),
+                namespace -> new TokenBucketRateLimiter(jedis, 5, 0.001,
+                        BucketOptions.DEFAULT.withClock(TestRedis.clock()).withNamespace(namespace)));
+
+        int allowed = 0;
+        for (int i = 0; i < 6; i++) {
+            if (limiter.isAllowed("client-1")) {
+                allowed++;
+            }
+        }
+
+        assertThat(allowed)
+                .withFailMessage("Only the primary's limit of 3 should be enforced, but %d were allowed", allowed)
+                .isEqualTo(3);
+        ShadowRateLimiter.Stats stats = limiter.getStats();
+        assertThat(stats.bothAllowed()).isEqualTo(3);
+        assertThat(stats.onlyCandidateAllowed()).isEqualTo(2);
+        assertThat(stats.bothDenied()).isEqualTo(1);
+        assertThat(stats.onlyPrimaryAllowed()).isZero();
+        assertThat(stats.agreementRate()).isEqualTo(4 / 6.0);
+    }
+
+    @Test
+    public void shouldKeepCandidateStateApartFromPrimary() {
+        // Both algorithms store their state under rate_limit:<clientId>, as a count and as sub-window counts
+        ShadowRateLimiter limiter = new ShadowRateLimiter(jedis,
+                new FixedWindowRateLimiter(jedis, 60, 3),
+                namespace -> new SlidingWindowCounterRateLimiter(jedis, 3, 60, 1, TestRedis.clock(),
+                        TimeSource.CLIENT, namespace));
+
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+
+        assertThat(jedis.get("rate_limit:client-1")).isEqualTo("1");
+        assertThat(jedis.get(KeyNamespace.prefix(KeyNamespace.shadow(null)) + "client-1")).endsWith(":1");
+        assertThat(limiter.getStats().candidateErrors()).isZero();
+        assertThat(limiter.getStats().bothAllowed()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldEnforcePrimaryExactlyAcrossConcurrentConnections() throws Exception {
+        int threads = 8;
+        AtomicInteger allowed = new AtomicInteger();
+        AtomicInteger candidateAllowed = new AtomicInteger();
+        AtomicInteger compared = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    try (Jedis connection = TestRedis.connect()) {
+                        ShadowRateLimiter limiter = new ShadowRateLimiter(connection,
+                                new TokenBucketRateLimiter(connection, 20, 0.001,
+                                        BucketOptions.DEFAULT.withClock(TestRedis.clock())),
+                                namespace -> new FixedWindowRateLimiter(connection, 60, 30, namespace));
+                        for (int i = 0; i < 50; i++) {
+                            if (limiter.isAllowed("client-1")) {
+                                allowed.incrementAndGet();
+                            }
+                        }
+                        ShadowRateLimiter.Stats stats = limiter.getStats();
+                        candidateAllowed.addAndGet((int) (stats.bothAllowed() + stats.onlyCandidateAllowed()));
+                        compared.addAndGet((int) stats.compared());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(allowed.get())
+                .withFailMessage("Concurrent decisions should share the primary's 20 tokens but %d were allowed",
+                        allowed.get())
+                .isEqualTo(20);
+        assertThat(candidateAllowed.get())
+                .withFailMessage("The candidate should have allowed its limit of 30, counted %d", candidateAllowed.get())
+                .isEqualTo(30);
+        assertThat(compared.get())
+                .withFailMessage("Decisions made again after a conflict should be counted once, counted %d",
+                        compared.get())
+                .isEqualTo(threads * 50);
+    }
+
+    @Test
+    public void shouldReserveTheShadowNamespace() {
+        assertThat(KeyNamespace.shadow("shadow"))
+                .withFailMessage("A user namespace named shadow should not be where candidates live")
+                .isNotEqualTo("shadow");
+        assertThat(KeyNamespace.prefix(KeyNamespace.shadow("login")))
+                .isNotEqualTo(KeyNamespace.prefix(KeyNamespace.shadow(null)));
+        assertThatThrownBy(() -> KeyNamespace.prefix("~mine")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyNamespace.shadow(KeyNamespace.shadow(null)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
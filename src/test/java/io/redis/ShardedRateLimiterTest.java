@@ -0,0 +1,99 @@
+package io.redis;
+
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShardedRateLimiterTest {
+
+    private static final int CLIENTS = 10_000;
+
+    private final VirtualClock clock = new VirtualClock();
+    private final Map<String, Jedis> nodes = new LinkedHashMap<>();
+
+    @BeforeEach
+    public void setup() {
+        for (int i = 0; i < 4; i++) {
+            nodes.put("redis-" + i + ":6379", new EmbeddedRedisServer(clock).connect());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        nodes.values().forEach(Jedis::close);
+    }
+
+    @Test
+    public void shouldKeepAllKeysOfAClientOnOneNode() {
+        ShardedRateLimiter<TokenBucketRateLimiter> limiter =
+                new ShardedRateLimiter<>(nodes,
+                        jedis -> new TokenBucketRateLimiter(jedis, 3, 0.001, BucketOptions.DEFAULT.withClock(clock)));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.isAllowed("client-1");
+        }
+
+        String owner = limiter.nodeFor("client-1");
+        nodes.forEach((nodeId, jedis) -> {
+            long keys = jedis.keys("rate_limit:client-1:*").size();
+            assertThat(keys)
+                    .withFailMessage("Node %s should hold %s of the client's keys but holds %d",
+                            nodeId, nodeId.equals(owner) ? "all" : "none", keys)
+                    .isEqualTo(nodeId.equals(owner) ? 2 : 0);
+        });
+        assertThat(nodes.get(owner).get("rate_limit:client-1:count")).isEqualTo("0");
+    }
+
+    @Test
+    public void shouldSpreadClientsEvenly() {
+        ShardedRateLimiter<FixedWindowRateLimiter> limiter =
+                new ShardedRateLimiter<>(nodes, jedis -> new FixedWindowRateLimiter(jedis, 60, 10));
+
+        Map<String, Integer> clientsPerNode = new HashMap<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            clientsPerNode.merge(limiter.nodeFor("client-" + i), 1, Integer::sum);
+        }
+
+        assertThat(clientsPerNode).hasSize(4);
+        clientsPerNode.forEach((nodeId, clients) -> assertThat(clients)
+                .withFailMessage("Node %s got %d of %d clients", nodeId, clients, CLIENTS)
+                .isBetween(CLIENTS / 4 * 8 / 10, CLIENTS / 4 * 12 / 10));
+    }
+
+    @Test
+    public void shouldOnlyMoveClientsToTheAddedNode() {
+        ShardedRateLimiter<FixedWindowRateLimiter> limiter =
+                new ShardedRateLimiter<>(nodes, jedis -> new FixedWindowRateLimiter(jedis, 60, 10));
+        Map<String, String> before = new HashMap<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            before.put("client-" + i, limiter.nodeFor("client-" + i));
+        }
+
+        try (Jedis added = new EmbeddedRedisServer(clock).connect()) {
+            limiter.addNode("redis-4:6379", added);
+
+            int moved = 0;
+            for (Map.Entry<String, String> entry : before.entrySet()) {
+                String now = limiter.nodeFor(entry.getKey());
+                if (!now.equals(entry.getValue())) {
+                    assertThat(now).isEqualTo("redis-4:6379");
+                    moved++;
+                }
+            }
+            // Ideally 1/5 of the clients
+            assertThat(moved).isBetween(CLIENTS / 5 * 7 / 10, CLIENTS / 5 * 13 / 10);
+
+            limiter.removeNode("redis-4:6379");
+        }
+        before.forEach((clientId, nodeId) -> assertThat(limiter.nodeFor(clientId)).isEqualTo(nodeId));
+    }
+}
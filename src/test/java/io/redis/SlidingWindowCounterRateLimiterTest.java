@@ -1,29 +1,23 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
 
+import java.time.Clock;
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SlidingWindowCounterRateLimiterTest {
 
-    private static final RedisContainer redisContainer = new RedisContainer("redis:latest")
-            .withExposedPorts(6379)
-            .withReuse(true);
-
-    static {
-        redisContainer.start();
-    }
-
     private Jedis jedis;
     private SlidingWindowCounterRateLimiter rateLimiter;
 
     @BeforeEach
     public void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -34,7 +28,7 @@ public class SlidingWindowCounterRateLimiterTest {
 
     @Test
     public void shouldAllowRequestsWithinLimit() {
-        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, 5, 10, 1);
+        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, 5, 10, 1, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request %d should be allowed", i)
@@ -44,7 +38,7 @@ public class SlidingWindowCounterRateLimiterTest {
 
     @Test
     public void shouldDenyRequestsOnceLimitIsExceeded() {
-        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, 5, 60, 1);
+        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, 5, 60, 1, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request %d should be allowed", i)
@@ -57,13 +51,13 @@ public class SlidingWindowCounterRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainAfterSlidingWindowResets() throws InterruptedException {
+    public void shouldAllowRequestsAgainAfterSlidingWindowResets() {
         int limit = 5;
         String clientId = "client-1";
         long windowSize = 2L;
         long subWindowSize = 1L;
 
-        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize);
+        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -75,7 +69,7 @@ public class SlidingWindowCounterRateLimiterTest {
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep((windowSize + 1) * 1000);
+        TestRedis.advance(Duration.ofSeconds(windowSize + 1));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request after window reset should be allowed")
@@ -90,7 +84,7 @@ public class SlidingWindowCounterRateLimiterTest {
         long windowSize = 10L;
         long subWindowSize = 1L;
 
-        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize);
+        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId1))
@@ -110,29 +104,46 @@ public class SlidingWindowCounterRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() throws InterruptedException {
+    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() {
         int limit = 3;
         long windowSize = 4L;
         long subWindowSize = 1L;
         String clientId = "client-1";
 
-        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize);
+        rateLimiter = new SlidingWindowCounterRateLimiter(jedis, limit, windowSize, subWindowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
                     .withFailMessage("Request %d should be allowed", i)
                     .isTrue();
-            Thread.sleep(1000);
+            TestRedis.advance(Duration.ofSeconds(1));
         }
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep(2000);
+        TestRedis.advance(Duration.ofSeconds(2));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request should be allowed in a sliding window")
                 .isTrue();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAgreeAcrossSkewedNodesWithRedisTime() {
+        // Two nodes whose clocks are an hour apart in either direction
+        Clock ahead = Clock.offset(TestRedis.clock(), Duration.ofHours(1));
+        Clock behind = Clock.offset(TestRedis.clock(), Duration.ofHours(-1));
+        SlidingWindowCounterRateLimiter nodeA = new SlidingWindowCounterRateLimiter(jedis, 2, 2, 1, ahead, TimeSource.REDIS);
+        SlidingWindowCounterRateLimiter nodeB = new SlidingWindowCounterRateLimiter(jedis, 2, 2, 1, behind, TimeSource.REDIS);
+
+        assertThat(nodeA.isAllowed("client-1")).isTrue();
+        assertThat(nodeB.isAllowed("client-1")).isTrue();
+        assertThat(nodeA.isAllowed("client-1")).isFalse();
+        assertThat(jedis.get("rate_limit:client-1").split(","))
+                .withFailMessage("Both nodes should count into the same sub-window")
+                .hasSize(1);
+    }
+
+}
@@ -1,28 +1,22 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
 
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SlidingWindowLogHashAlternativeRateLimiterTest {
 
-    private static final RedisContainer redisContainer = new RedisContainer("redis:latest")
-            .withExposedPorts(6379);
-
     private Jedis jedis;
     private SlidingWindowLogRateLimiter rateLimiter;
 
-    static {
-        redisContainer.start();
-    }
-
     @BeforeEach
     public void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -33,7 +27,7 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
 
     @Test
     public void shouldAllowRequestsWithinLimit() {
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 10);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 10, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative("client-1"))
                     .withFailMessage("Request " + i + " should be allowed")
@@ -43,7 +37,7 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
 
     @Test
     public void shouldDenyRequestsOnceLimitIsExceeded() {
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 60);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 60, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative("client-1"))
                     .withFailMessage("Request " + i + " should be allowed")
@@ -56,11 +50,11 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainAfterSlidingWindowResets() throws InterruptedException {
+    public void shouldAllowRequestsAgainAfterSlidingWindowResets() {
         int limit = 5;
         String clientId = "client-1";
         long windowSize = 1L;
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative(clientId))
@@ -72,7 +66,7 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep((windowSize + 1) * 1000);
+        TestRedis.advance(Duration.ofSeconds(windowSize + 1));
 
         assertThat(rateLimiter.isAllowedHashAlternative(clientId))
                 .withFailMessage("Request after window reset should be allowed")
@@ -85,7 +79,7 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
         String clientId1 = "client-1";
         String clientId2 = "client-2";
         long windowSize = 10L;
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative(clientId1))
@@ -105,24 +99,24 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() throws InterruptedException {
+    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() {
         int limit = 3;
         long windowSize = 4L;
         String clientId = "client-1";
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative(clientId))
                     .withFailMessage("Request " + i + " should be allowed")
                     .isTrue();
-            Thread.sleep(1000);
+            TestRedis.advance(Duration.ofSeconds(1));
         }
 
         assertThat(rateLimiter.isAllowedHashAlternative(clientId))
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep(2000);
+        TestRedis.advance(Duration.ofSeconds(2));
 
         assertThat(rateLimiter.isAllowedHashAlternative(clientId))
                 .withFailMessage("Request should be allowed in a sliding window")
@@ -134,7 +128,7 @@ public class SlidingWindowLogHashAlternativeRateLimiterTest {
         int limit = 3;
         long windowSize = 4L;
         String clientId = "client-1";
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowedHashAlternative(clientId))
@@ -1,26 +1,21 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
 import org.junit.jupiter.api.*;
 import redis.clients.jedis.Jedis;
 
+import java.time.Clock;
+import java.time.Duration;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SlidingWindowLogRateLimiterTest {
 
-    private static final RedisContainer redisContainer = new RedisContainer("redis:latest")
-            .withExposedPorts(6379);
-
     private Jedis jedis;
     private SlidingWindowLogRateLimiter rateLimiter;
 
-    static {
-        redisContainer.start();
-    }
-
     @BeforeEach
     public void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -31,7 +26,7 @@ public class SlidingWindowLogRateLimiterTest {
 
     @Test
     public void shouldAllowRequestsWithinLimit() {
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 10);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 10, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request " + i + " should be allowed")
@@ -41,7 +36,7 @@ public class SlidingWindowLogRateLimiterTest {
 
     @Test
     public void shouldDenyRequestsOnceLimitIsExceeded() {
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 60);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, 5, 60, TestRedis.clock());
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                     .withFailMessage("Request " + i + " should be allowed")
@@ -54,11 +49,11 @@ public class SlidingWindowLogRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainAfterSlidingWindowResets() throws InterruptedException {
+    public void shouldAllowRequestsAgainAfterSlidingWindowResets() {
         int limit = 5;
         String clientId = "client-1";
         long windowSize = 1L;
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -70,7 +65,7 @@ public class SlidingWindowLogRateLimiterTest {
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep((windowSize + 1) * 1000);
+        TestRedis.advance(Duration.ofSeconds(windowSize + 1));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request after window reset should be allowed")
@@ -83,7 +78,7 @@ public class SlidingWindowLogRateLimiterTest {
         String clientId1 = "client-1";
         String clientId2 = "client-2";
         long windowSize = 10L;
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId1))
@@ -103,24 +98,24 @@ public class SlidingWindowLogRateLimiterTest {
     }
 
     @Test
-    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() throws InterruptedException {
+    public void shouldAllowRequestsAgainGraduallyInSlidingWindow() {
         int limit = 3;
         long windowSize = 4L;
         String clientId = "client-1";
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
                     .withFailMessage("Request " + i + " should be allowed")
                     .isTrue();
-            Thread.sleep(1000);
+            TestRedis.advance(Duration.ofSeconds(1));
         }
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request beyond limit should be denied")
                 .isFalse();
 
-        Thread.sleep(2000);
+        TestRedis.advance(Duration.ofSeconds(2));
 
         assertThat(rateLimiter.isAllowed(clientId))
                 .withFailMessage("Request should be allowed in a sliding window")
@@ -132,7 +127,7 @@ public class SlidingWindowLogRateLimiterTest {
         int limit = 3;
         long windowSize = 4L;
         String clientId = "client-1";
-        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize);
+        rateLimiter = new SlidingWindowLogRateLimiter(jedis, limit, windowSize, TestRedis.clock());
 
         for (int i = 1; i <= limit; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -145,9 +140,35 @@ public class SlidingWindowLogRateLimiterTest {
                 .isFalse();
 
         String key = "rate_limit:" + clientId;
-        long requestCount = jedis.zcard(key);
+        long requestCount = jedis.get(key).split(",").length;
         assertThat((long) limit)
                 .withFailMessage("The count (" + requestCount + ") should be equal to the limit (" + limit + "), not counting the denied request")
                 .isEqualTo(requestCount);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldAgreeAcrossSkewedNodesWithRedisTime() {
+        // Two nodes whose clocks are an hour apart in either direction
+        Clock ahead = Clock.offset(TestRedis.clock(), Duration.ofHours(1));
+        Clock behind = Clock.offset(TestRedis.clock(), Duration.ofHours(-1));
+        SlidingWindowLogRateLimiter nodeA = new SlidingWindowLogRateLimiter(jedis, 2, 2, ahead, TimeSource.REDIS);
+        SlidingWindowLogRateLimiter nodeB = new SlidingWindowLogRateLimiter(jedis, 2, 2, behind, TimeSource.REDIS);
+
+        assertThat(nodeA.isAllowed("client-1")).isTrue();
+        TestRedis.advance(Duration.ofSeconds(1));
+        assertThat(nodeB.isAllowed("client-1")).isTrue();
+        assertThat(nodeA.isAllowed("client-1"))
+                .withFailMessage("The node ahead should not consider the log expired")
+                .isFalse();
+
+        TestRedis.advance(Duration.ofMillis(1100));
+        assertThat(nodeB.isAllowed("client-1"))
+                .withFailMessage("Only the first entry should have left the window")
+                .isTrue();
+        assertThat(nodeA.isAllowed("client-1")).isFalse();
+        assertThat(jedis.get("rate_limit:client-1").split(","))
+                .withFailMessage("Entries outside the window should be trimmed when writing")
+                .hasSize(2);
+    }
+
+}
@@ -0,0 +1,67 @@
+package io.redis;
+
+import com.redis.testcontainers.RedisContainer;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Redis endpoint shared by the test suite. Tests run against the in-JVM {@link EmbeddedRedisServer}
+ * by default; run with {@code -Dredis.tests=container} to use a real Redis in a Docker container.
+ * <p>
+ * The embedded server and the limiters under test share a {@link VirtualClock}, so tests move time
+ * forward with {@link #advance(Duration)} instead of sleeping. A real Redis keeps its own time, so
+ * there {@link #clock()} is the system clock and advancing really sleeps.
+ */
+final class TestRedis {
+
+    private static final boolean USE_CONTAINER = "container".equals(System.getProperty("redis.tests"));
+    private static final VirtualClock VIRTUAL_CLOCK = new VirtualClock(Instant.now());
+
+    private static HostAndPort hostAndPort;
+
+    private TestRedis() {
+    }
+
+    static synchronized HostAndPort hostAndPort() {
+        if (hostAndPort == null) {
+            if (USE_CONTAINER) {
+                RedisContainer redisContainer = new RedisContainer("redis:latest")
+                        .withExposedPorts(6379)
+                        .withReuse(true);
+                redisContainer.start();
+                hostAndPort = new HostAndPort(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+            } else {
+                EmbeddedRedisServer server = new EmbeddedRedisServer(0, VIRTUAL_CLOCK).start();
+                hostAndPort = new HostAndPort(server.getHost(), server.getPort());
+            }
+        }
+        return hostAndPort;
+    }
+
+    static Jedis connect() {
+        return new Jedis(hostAndPort());
+    }
+
+    static Clock clock() {
+        return USE_CONTAINER ? Clock.systemUTC() : VIRTUAL_CLOCK;
+    }
+
+    static void advance(Duration duration) {
+        if (!USE_CONTAINER) {
+            VIRTUAL_CLOCK.advance(duration);
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,33 +1,32 @@
 package io.redis;
 
-import com.redis.testcontainers.RedisContainer;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.Simulation;
+import io.redis.simulation.VirtualClock;
 import org.junit.jupiter.api.*;
 import redis.clients.jedis.Jedis;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TokenBucketRateLimiterTest {
 
-    private static RedisContainer redisContainer;
+    private static final BucketOptions OPTIONS = BucketOptions.DEFAULT.withClock(TestRedis.clock());
+
     private Jedis jedis;
     private TokenBucketRateLimiter rateLimiter;
 
-    @BeforeAll
-    static void startContainer() {
-        redisContainer = new RedisContainer("redis:latest");
-        redisContainer.withExposedPorts(6379).start();
-    }
-
-    @AfterAll
-    static void stopContainer() {
-        redisContainer.stop();
-    }
-
     @BeforeEach
     void setup() {
-        jedis = new Jedis(redisContainer.getHost(), redisContainer.getFirstMappedPort());
+        jedis = TestRedis.connect();
         jedis.flushAll();
     }
 
@@ -38,7 +37,7 @@ public class TokenBucketRateLimiterTest {
 
     @Test
     void shouldAllowRequestsWithinBucketCapacity() {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                 .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -48,7 +47,7 @@ public class TokenBucketRateLimiterTest {
 
     @Test
     void shouldDenyRequestsOnceBucketIsEmpty() {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                 .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -60,8 +59,8 @@ public class TokenBucketRateLimiterTest {
     }
 
     @Test
-    void shouldAllowRequestsAgainAfterTokensAreRefilled() throws InterruptedException {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0);
+    void shouldAllowRequestsAgainAfterTokensAreRefilled() {
+        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         for (int i = 1; i <= 5; i++) {
             assertThat(rateLimiter.isAllowed("client-1"))
                 .withFailMessage("Request %d should be allowed within bucket capacity", i)
@@ -71,7 +70,7 @@ public class TokenBucketRateLimiterTest {
             .withFailMessage("Request beyond bucket capacity should be denied")
             .isFalse();
 
-        TimeUnit.SECONDS.sleep(1);
+        TestRedis.advance(Duration.ofSeconds(1));
 
         assertThat(rateLimiter.isAllowed("client-1"))
             .withFailMessage("Request after token refill should be allowed")
@@ -80,7 +79,7 @@ public class TokenBucketRateLimiterTest {
 
     @Test
     void shouldHandleMultipleClientsIndependently() {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0);
+        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
 
         String clientId1 = "client-1";
         String clientId2 = "client-2";
@@ -103,7 +102,7 @@ public class TokenBucketRateLimiterTest {
 
     @Test
     void shouldAllowBurstsUpToBucketCapacity() {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 10, 2.0);
+        rateLimiter = new TokenBucketRateLimiter(jedis, 10, 2.0, OPTIONS);
 
         String clientId = "client-1";
 
@@ -118,8 +117,8 @@ public class TokenBucketRateLimiterTest {
     }
 
     @Test
-    void shouldRefillTokensGraduallyAndAllowRequestsOverTime() throws InterruptedException {
-        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0);
+    void shouldRefillTokensGraduallyAndAllowRequestsOverTime() {
+        rateLimiter = new TokenBucketRateLimiter(jedis, 5, 1.0, OPTIONS);
         String clientId = "client-1";
 
         for (int i = 1; i <= 5; i++) {
@@ -131,7 +130,7 @@ public class TokenBucketRateLimiterTest {
             .withFailMessage("Request beyond bucket capacity should be denied")
             .isFalse();
 
-        TimeUnit.SECONDS.sleep(2);
+        TestRedis.advance(Duration.ofSeconds(2));
 
         assertThat(rateLimiter.isAllowed(clientId))
             .withFailMessage("Request after partial refill should be allowed")
@@ -145,11 +144,11 @@ public class TokenBucketRateLimiterTest {
     }
 
     @Test
-    void shouldRefillTokensUpToCapacityWithoutExceedingIt() throws InterruptedException {
+    void shouldRefillTokensUpToCapacityWithoutExceedingIt() {
         int capacity = 3;
         double refillRate = 2.0;
         String clientId = "client-1";
-        rateLimiter = new TokenBucketRateLimiter(jedis, capacity, refillRate);
+        rateLimiter = new TokenBucketRateLimiter(jedis, capacity, refillRate, OPTIONS);
 
         for (int i = 1; i <= capacity; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -160,7 +159,7 @@ public class TokenBucketRateLimiterTest {
             .withFailMessage("Request beyond bucket capacity should be denied")
             .isFalse();
 
-        TimeUnit.SECONDS.sleep(3);
+        TestRedis.advance(Duration.ofSeconds(3));
 
         for (int i = 1; i <= capacity; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -177,7 +176,7 @@ public class TokenBucketRateLimiterTest {
         int capacity = 3;
         double refillRate = 0.5;
         String clientId = "client-1";
-        rateLimiter = new TokenBucketRateLimiter(jedis, capacity, refillRate);
+        rateLimiter = new TokenBucketRateLimiter(jedis, capacity, refillRate, OPTIONS);
 
         for (int i = 1; i <= capacity; i++) {
             assertThat(rateLimiter.isAllowed(clientId))
@@ -194,4 +193,172 @@ public class TokenBucketRateLimiterTest {
             .withFailMessage("The count should match remaining tokens and not include denied requests")
             .isEqualTo(0);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldReserveTokensAndReturnTheWaitOnceBucketIsEmpty() {
+        rateLimiter = new TokenBucketRateLimiter(jedis, 2, 1.0, OPTIONS);
+        String clientId = "client-1";
+
+        assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+            .withFailMessage("Acquire within bucket capacity should not wait")
+            .contains(Duration.ZERO);
+        assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+            .withFailMessage("Acquire within bucket capacity should not wait")
+            .contains(Duration.ZERO);
+        assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+            .withFailMessage("First reservation on an empty bucket should wait for one refill")
+            .contains(Duration.ofSeconds(1));
+        assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(5)))
+            .withFailMessage("Second reservation should queue behind the first one")
+            .contains(Duration.ofSeconds(2));
+        assertThat(rateLimiter.isAllowed(clientId))
+            .withFailMessage("Reserved tokens should not be available to isAllowed")
+            .isFalse();
+    }
+
+    @Test
+    void shouldNotReserveWhenWaitExceedsTimeout() {
+        rateLimiter = new TokenBucketRateLimiter(jedis, 1, 0.5, OPTIONS);
+        String clientId = "client-1";
+
+        assertThat(rateLimiter.acquire(clientId, Duration.ZERO))
+            .withFailMessage("Acquire within bucket capacity should not wait")
+            .contains(Duration.ZERO);
+        assertThat(rateLimiter.acquire(clientId, Duration.ofSeconds(1)))
+            .withFailMessage("Acquire should fail when the refill takes longer than the timeout")
+            .isEmpty();
+        assertThat(Integer.parseInt(jedis.get("rate_limit:" + clientId + ":count")))
+            .withFailMessage("A failed acquire should not reserve a token")
+            .isEqualTo(0);
+    }
+
+    @Test
+    void shouldDeliverConfiguredRateToCallersFasterThanOneTokenInterval() {
+        // Own server on a virtual clock, a minute of traffic at 1000 req/s replays in well under a second
+        VirtualClock clock = new VirtualClock();
+        try (Jedis simulationJedis = new EmbeddedRedisServer(clock).connect()) {
+            TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(simulationJedis, 10, 7.5, BucketOptions.DEFAULT.withClock(clock));
+
+            Simulation.Result result = new Simulation(clock)
+                    .run(limiter, Simulation.steady(List.of("client-1"), 1000, Duration.ofMinutes(1)));
+
+            // The initial burst of 10 plus 7.5 per second, a refill in progress at the end may be missing
+            assertThat(result.allowed())
+                    .withFailMessage("Expected 460 requests at the configured rate but %d were allowed", result.allowed())
+                    .isBetween(459L, 460L);
+        }
+    }
+
+    @Test
+    void shouldAgreeAcrossSkewedNodesWithRedisTime() {
+        // Two nodes whose clocks are an hour apart in either direction
+        Clock ahead = Clock.offset(TestRedis.clock(), Duration.ofHours(1));
+        Clock behind = Clock.offset(TestRedis.clock(), Duration.ofHours(-1));
+        TokenBucketRateLimiter nodeA = new TokenBucketRateLimiter(jedis, 2, 1,
+                BucketOptions.DEFAULT.withClock(ahead).withTimeSource(TimeSource.REDIS));
+        TokenBucketRateLimiter nodeB = new TokenBucketRateLimiter(jedis, 2, 1,
+                BucketOptions.DEFAULT.withClock(behind).withTimeSource(TimeSource.REDIS));
+
+        assertThat(nodeA.isAllowed("client-1")).isTrue();
+        assertThat(nodeB.isAllowed("client-1")).isTrue();
+        assertThat(nodeA.isAllowed("client-1"))
+                .withFailMessage("The node ahead should not see an hour of refill")
+                .isFalse();
+
+        TestRedis.advance(Duration.ofMillis(1100));
+        assertThat(nodeB.isAllowed("client-1")).isTrue();
+        assertThat(nodeA.isAllowed("client-1")).isFalse();
+        assertThat(nodeA.acquire("client-1", Duration.ofSeconds(5)))
+                .withFailMessage("acquire should also age the bucket by Redis time")
+                .hasValueSatisfying(wait -> assertThat(wait).isBetween(Duration.ofMillis(1), Duration.ofSeconds(2)));
+    }
+
+    @Test
+    void shouldNotAdmitMoreThanCapacityAcrossConcurrentConnections() throws Exception {
+        int threads = 8;
+        AtomicInteger allowed = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    try (Jedis connection = TestRedis.connect()) {
+                        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(connection, 20, 0.001, OPTIONS);
+                        for (int i = 0; i < 10; i++) {
+                            if (limiter.isAllowed("client-1")) {
+                                allowed.incrementAndGet();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(allowed.get())
+            .withFailMessage("Concurrent decisions should share the 20 tokens but %d were allowed", allowed.get())
+            .isEqualTo(20);
+    }
+
+    @Test
+    void shouldRampUpNewBucketsDuringWarmUp() {
+        WarmUp warmUp = new WarmUp(Duration.ofSeconds(10), 0.2);
+        rateLimiter = new TokenBucketRateLimiter(jedis, 10, 10, OPTIONS.withWarmUp(warmUp));
+
+        assertThat(countAllowed("client-1", 20))
+            .withFailMessage("A cold bucket should start at a fifth of its capacity")
+            .isEqualTo(2);
+        TestRedis.advance(Duration.ofSeconds(5));
+        assertThat(countAllowed("client-1", 20))
+            .withFailMessage("Halfway through the warm-up the bucket should hold 60%% of its capacity")
+            .isEqualTo(6);
+        assertThat(jedis.pttl("rate_limit:client-1:warmUp"))
+            .withFailMessage("The warm-up start should expire with the warm-up")
+            .isBetween(1L, 5000L);
+        TestRedis.advance(Duration.ofSeconds(5));
+        assertThat(countAllowed("client-1", 20))
+            .withFailMessage("A warm bucket should hold its full capacity")
+            .isEqualTo(10);
+        assertThat(jedis.exists("rate_limit:client-1:warmUp"))
+            .withFailMessage("A warm bucket should not write its warm-up start again")
+            .isFalse();
+        assertThat(countAllowed("client-2", 20))
+            .withFailMessage("Every client should warm up on its own")
+            .isEqualTo(2);
+    }
+
+    @Test
+    void shouldWarmUpAllClientsTogetherPerLimiter() {
+        WarmUp warmUp = new WarmUp(Duration.ofSeconds(10), 0.2, WarmUp.Scope.LIMITER, "search");
+        rateLimiter = new TokenBucketRateLimiter(jedis, 10, 10, OPTIONS.withNamespace("api").withWarmUp(warmUp));
+
+        assertThat(rateLimiter.acquire("client-1", Duration.ofSeconds(5))).contains(Duration.ZERO);
+        assertThat(rateLimiter.acquire("client-1", Duration.ofSeconds(5))).contains(Duration.ZERO);
+        assertThat(rateLimiter.acquire("client-1", Duration.ofSeconds(5)))
+            .withFailMessage("A cold bucket should refill at a fifth of the rate")
+            .contains(Duration.ofMillis(500));
+        assertThat(jedis.exists("rate_limit_ns:~warmUp.api:search")).isTrue();
+
+        TestRedis.advance(Duration.ofSeconds(10));
+        assertThat(countAllowed("client-2", 20))
+            .withFailMessage("A client first seen after the limiter warmed up should start full")
+            .isEqualTo(10);
+
+        rateLimiter = new TokenBucketRateLimiter(jedis, 10, 10, OPTIONS.withNamespace("api")
+            .withWarmUp(new WarmUp(Duration.ofSeconds(10), 0.2, WarmUp.Scope.LIMITER, "login")));
+        assertThat(countAllowed("client-3", 20))
+            .withFailMessage("A limiter of another name should warm up on its own")
+            .isEqualTo(2);
+    }
+
+    private int countAllowed(String clientId, int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (rateLimiter.isAllowed(clientId)) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+}
@@ -0,0 +1,161 @@
+package io.redis.admin;
+
+import io.redis.AdaptiveRateLimiter;
+import io.redis.BucketOptions;
+import io.redis.CountMinSketchRateLimiter;
+import io.redis.FixedWindowRateLimiter;
+import io.redis.GlobalQuotaRateLimiter;
+import io.redis.KeyNamespace;
+import io.redis.SlidingWindowCounterRateLimiter;
+import io.redis.TimeSource;
+import io.redis.TokenBucketRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class KeyspaceAdminTest {
+
+    private final VirtualClock clock = new VirtualClock();
+    private Jedis jedis;
+    private KeyspaceAdmin admin;
+
+    @BeforeEach
+    public void setup() {
+        jedis = new EmbeddedRedisServer(clock).connect();
+        admin = new KeyspaceAdmin(jedis, 50, 3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldKeepLimitersWithDifferentValueLayoutsApart() {
+        FixedWindowRateLimiter fixed = new FixedWindowRateLimiter(jedis, 60, 2, "login");
+        SlidingWindowCounterRateLimiter counter = new SlidingWindowCounterRateLimiter(jedis, 2, 60, 1,
+                clock, TimeSource.CLIENT, "search");
+
+        // Without namespaces the window's count and the sub-window counts would both be rate_limit:client-1
+        for (int i = 0; i < 3; i++) {
+            fixed.isAllowed("client-1");
+            counter.isAllowed("client-1");
+        }
+
+        assertThat(jedis.get("rate_limit_ns:login:client-1")).isEqualTo("2");
+        assertThat(jedis.get("rate_limit_ns:search:client-1")).endsWith(":2");
+        assertThat(fixed.isAllowed("client-1")).isFalse();
+        assertThat(counter.isAllowed("client-1")).isFalse();
+    }
+
+    @Test
+    public void shouldReportKeysAndBytesPerNamespace() {
+        FixedWindowRateLimiter fixed = new FixedWindowRateLimiter(jedis, 60, 10, "login");
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(jedis, 10, 1, BucketOptions.DEFAULT.withNamespace("api"));
+        for (int i = 0; i < 120; i++) {
+            fixed.isAllowed("client-" + i);
+        }
+        for (int i = 0; i < 40; i++) {
+            bucket.isAllowed("client-" + i);
+        }
+        jedis.set("unrelated", "value");
+
+        Map<String, KeyspaceAdmin.NamespaceUsage> usage = admin.usage(List.of("login", "api", "empty"));
+
+        assertThat(usage.get("login").keys()).isEqualTo(120);
+        assertThat(usage.get("api").keys())
+                .withFailMessage("Every token bucket keeps two keys per client")
+                .isEqualTo(80);
+        assertThat(usage.get("empty").keys()).isZero();
+        assertThat(usage.get("login").sampledKeys())
+                .withFailMessage("Every third key should be measured")
+                .isEqualTo(40);
+        assertThat(usage.get("login").estimatedBytes()).isGreaterThan(120L * 20);
+        assertThat(admin.usage("api")).isEqualTo(usage.get("api"));
+    }
+
+    @Test
+    public void shouldResetOneNamespaceOrSomeClients() {
+        FixedWindowRateLimiter fixed = new FixedWindowRateLimiter(jedis, 60, 1, "login");
+        TokenBucketRateLimiter bucket = new TokenBucketRateLimiter(jedis, 1, 0.01, BucketOptions.DEFAULT.withNamespace("api"));
+        for (int i = 0; i < 100; i++) {
+            fixed.isAllowed("client-" + i);
+            bucket.isAllowed("client-" + i);
+        }
+
+        assertThat(admin.reset("login")).isEqualTo(100);
+        assertThat(fixed.isAllowed("client-1"))
+                .withFailMessage("A reset namespace should start over")
+                .isTrue();
+        assertThat(admin.usage("api").keys()).isEqualTo(200);
+
+        assertThat(admin.resetClients("api", List.of("client-1", "client-2"))).isEqualTo(4);
+        assertThat(bucket.isAllowed("client-1")).isTrue();
+        assertThat(bucket.isAllowed("client-3")).isFalse();
+    }
+
+    @Test
+    public void shouldKeepDefaultPrefixAndNamespacesDisjoint() {
+        FixedWindowRateLimiter namespaced = new FixedWindowRateLimiter(jedis, 60, 1, "user");
+        FixedWindowRateLimiter unnamespaced = new FixedWindowRateLimiter(jedis, 60, 1);
+        namespaced.isAllowed("client-1");
+        // A default client ID that looks like the namespaced one
+        unnamespaced.isAllowed("user:client-1");
+
+        assertThat(admin.usage("user").keys()).isEqualTo(1);
+        assertThat(admin.usage((String) null).keys()).isEqualTo(1);
+
+        assertThat(admin.reset("user")).isEqualTo(1);
+        assertThat(unnamespaced.isAllowed("user:client-1"))
+                .withFailMessage("Resetting a namespace should not touch default-prefix clients")
+                .isFalse();
+        assertThat(admin.reset(null)).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldKeepSharedKeysOutOfEveryClientNamespace() {
+        CountMinSketchRateLimiter sketch = new CountMinSketchRateLimiter(jedis, 60, 10, 0.01, 0.01, clock);
+        FixedWindowRateLimiter fixed = new FixedWindowRateLimiter(jedis, 60, 10);
+        AdaptiveRateLimiter adaptive = AdaptiveRateLimiter.tokenBucket(jedis, "api", 5,
+                new AdaptiveRateLimiter.Policy(10, 1, 12, 1, 0.5, Duration.ofMillis(100)), Duration.ofSeconds(10),
+                clock, "api");
+        try (GlobalQuotaRateLimiter quota = new GlobalQuotaRateLimiter(jedis, "payments", "node-a", 100,
+                Duration.ofSeconds(30), clock, "api")) {
+            sketch.isAllowed("client-1");
+            // Client IDs that used to name the shared keys
+            fixed.isAllowed("cms:" + clock.millis() / 60_000);
+            adaptive.onResponse(Duration.ofMillis(10), false);
+            adaptive.adjust();
+            quota.rebalance();
+
+            assertThat(admin.usage((String) null).keys())
+                    .withFailMessage("Only the fixed window's client should be under the default prefix")
+                    .isEqualTo(1);
+            assertThat(admin.usage("api").keys())
+                    .withFailMessage("The namespace should hold no shared key, only clients")
+                    .isZero();
+            assertThat(admin.reset(null)).isEqualTo(1);
+            assertThat(jedis.keys(KeyNamespace.pattern(KeyNamespace.sketch(null)))).hasSize(1);
+            assertThat(jedis.keys(KeyNamespace.pattern(KeyNamespace.adaptive("api")))).hasSize(1);
+            assertThat(jedis.keys(KeyNamespace.pattern(KeyNamespace.quota("api")))).hasSize(2);
+        }
+    }
+
+    @Test
+    public void shouldRejectNamespacesThatWouldOverlap() {
+        assertThat(KeyNamespace.prefix(null)).isEqualTo("rate_limit:");
+        assertThatThrownBy(() -> KeyNamespace.prefix("a:b")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyNamespace.prefix("a*")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyNamespace.prefix("~sketch.~quota")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,158 @@
+package io.redis.embedded;
+
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Transaction;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EmbeddedRedisServerTest {
+
+    private final VirtualClock clock = new VirtualClock();
+    private EmbeddedRedisServer server;
+    private Jedis jedis;
+
+    @BeforeEach
+    public void setup() {
+        server = new EmbeddedRedisServer(0, clock).start();
+        jedis = new Jedis(server.getHost(), server.getPort());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+        server.close();
+    }
+
+    @Test
+    public void shouldRunTransactionsAtomically() {
+        Transaction transaction = jedis.multi();
+        transaction.incr("counter");
+        transaction.expire("counter", 10);
+        transaction.zadd("log", 1, "a");
+        transaction.zcard("log");
+        List<Object> result = transaction.exec();
+
+        assertThat(result).containsExactly(1L, 1L, 1L, 1L);
+    }
+
+    @Test
+    public void shouldAbortTransactionWhenWatchedKeyChanged() {
+        jedis.watch("counter");
+        try (Jedis other = new Jedis(server.getHost(), server.getPort())) {
+            other.set("counter", "5");
+        }
+        Transaction transaction = jedis.multi();
+        transaction.incr("counter");
+
+        assertThat(transaction.exec())
+                .withFailMessage("EXEC should fail after a watched key was modified")
+                .isNull();
+        assertThat(jedis.get("counter")).isEqualTo("5");
+    }
+
+    @Test
+    public void shouldExpireKeysAndHashFieldsAgainstClock() {
+        jedis.set("key", "value");
+        jedis.expire("key", 10);
+        jedis.hset("hash", Map.of("a", "1", "b", "2"));
+        jedis.hexpire("hash", 5, "a");
+
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(jedis.hgetAll("hash")).containsOnly(Map.entry("b", "2"));
+        assertThat(jedis.get("key")).isEqualTo("value");
+
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(jedis.exists("key")).isFalse();
+    }
+
+    @Test
+    public void shouldRejectWrongType() {
+        jedis.zadd("log", 1, "a");
+
+        assertThatThrownBy(() -> jedis.incr("log"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("WRONGTYPE");
+    }
+
+    @Test
+    public void shouldCountProcessedCommands() {
+        long before = server.getCommandsProcessed();
+        jedis.set("key", "value");
+        jedis.get("key");
+
+        assertThat(server.getCommandsProcessed() - before).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldScanEveryKeyOnceAndEstimateMemory() {
+        for (int i = 0; i < 100; i++) {
+            jedis.set("a:" + i, "value");
+        }
+        jedis.hset("b:hash", Map.of("field", "value"));
+
+        Set<String> scanned = new HashSet<>();
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, new ScanParams().match("a:*").count(7));
+            for (String key : result.getResult()) {
+                assertThat(scanned.add(key))
+                        .withFailMessage("%s was returned twice", key)
+                        .isTrue();
+            }
+            cursor = result.getCursor();
+        } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
+
+        assertThat(scanned).hasSize(100);
+        assertThat(jedis.memoryUsage("b:hash")).isGreaterThan(jedis.memoryUsage("a:1"));
+        assertThat(jedis.memoryUsage("missing")).isNull();
+    }
+
+    @Test
+    public void shouldRunScriptsAsOneCommand() {
+        String script = """
+                local count = tonumber(redis.call('GET', KEYS[1]) or '0')
+                if count >= tonumber(ARGV[1]) then
+                    return {count, 'full'}
+                end
+                redis.call('INCRBY', KEYS[1], ARGV[2])
+                return {count + ARGV[2], 'ok: ' .. KEYS[1]}
+                """;
+        long before = server.getCommandsProcessed();
+
+        assertThat(jedis.eval(script, List.of("counter"), List.of("5", "3"))).isEqualTo(List.of(3L, "ok: counter"));
+        assertThat(jedis.eval(script, List.of("counter"), List.of("5", "3"))).isEqualTo(List.of(6L, "ok: counter"));
+        assertThat(jedis.eval(script, List.of("counter"), List.of("5", "3"))).isEqualTo(List.of(6L, "full"));
+        assertThat(server.getCommandsProcessed() - before)
+                .withFailMessage("The commands a script runs should count as part of its EVAL")
+                .isEqualTo(3);
+
+        assertThat(jedis.eval("for i = 1, 3 do redis.call('ZADD', 'x', i, 'm' .. i) end return nil")).isNull();
+        assertThat(jedis.zcard("x")).isEqualTo(3);
+        assertThat(jedis.eval("local total = 0 for i = 1, #ARGV do total = total + ARGV[i] end return total",
+                List.of(), List.of("1", "2", "3.5"))).isEqualTo(6L);
+        jedis.zadd("log", 1, "a");
+        assertThatThrownBy(() -> jedis.eval("return redis.call('INCR', KEYS[1])", List.of("log"), List.of()))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("WRONGTYPE");
+        assertThatThrownBy(() -> jedis.eval("undeclared = 1"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessageContaining("global variable");
+        assertThatThrownBy(() -> jedis.eval("return function() end"))
+                .isInstanceOf(JedisDataException.class)
+                .hasMessageStartingWith("ERR Error compiling script");
+    }
+}
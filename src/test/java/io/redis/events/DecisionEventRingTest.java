@@ -0,0 +1,120 @@
+package io.redis.events;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecisionEventRingTest {
+
+    @Test
+    public void shouldDeliverEventsFromConcurrentPublishersInSequenceOrder() throws InterruptedException {
+        List<Long> sequences = new ArrayList<>();
+        List<String> clients = new ArrayList<>();
+        DecisionEventRing ring = new DecisionEventRing(64, DecisionEventRing.OverflowPolicy.WAIT, List.of(event -> {
+            sequences.add(event.getSequence());
+            clients.add(event.getClientId());
+        }));
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(4)) {
+            for (int thread = 0; thread < 4; thread++) {
+                String clientId = "client-" + thread;
+                executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ring.publish(clientId, "test", true, i, 0);
+                    }
+                });
+            }
+        }
+        ring.close();
+
+        assertThat(ring.getDropped()).isZero();
+        assertThat(sequences).hasSize(40_000);
+        for (int i = 0; i < sequences.size(); i++) {
+            assertThat(sequences.get(i)).isEqualTo(i);
+        }
+        assertThat(clients).filteredOn("client-3"::equals).hasSize(10_000);
+    }
+
+    @Test
+    public void shouldDropInsteadOfBlockingWhenListenersFallBehind() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> delivered = new ArrayList<>();
+        DecisionEventRing ring = new DecisionEventRing(8, DecisionEventRing.OverflowPolicy.DROP, List.of(event -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.add(event.getSequence());
+        }));
+
+        int accepted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (ring.publish("client-1", "test", i % 2 == 0, -1, 0)) {
+                accepted++;
+            }
+        }
+        release.countDown();
+        ring.close();
+
+        assertThat(accepted)
+                .withFailMessage("With the listener stuck, only one ring's worth of events fits, got %d", accepted)
+                .isEqualTo(8);
+        assertThat(ring.getDropped()).isEqualTo(92);
+        assertThat(delivered).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L);
+    }
+
+    @Test
+    public void shouldKeepDeliveringWhenAListenerThrows() throws InterruptedException {
+        List<String> delivered = new ArrayList<>();
+        DecisionEventRing ring = new DecisionEventRing(16, DecisionEventRing.OverflowPolicy.DROP, List.of(
+                event -> {
+                    throw new IllegalStateException("broken");
+                },
+                event -> delivered.add(event.getClientId())));
+
+        ring.publish("client-1", "test", true, 1, 0);
+        ring.publish("client-2", "test", false, 0, 0);
+        ring.close();
+
+        assertThat(delivered).containsExactly("client-1", "client-2");
+        assertThat(ring.getListenerFailures()).isEqualTo(2);
+    }
+
+    @Test
+    public void shouldParkIdleConsumerUntilNextEvent() throws InterruptedException {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        DecisionEventRing ring = new DecisionEventRing(16, DecisionEventRing.OverflowPolicy.DROP, List.of(event -> {
+            first.countDown();
+            second.countDown();
+        }));
+        ring.publish("client-1", "test", true, 1, 0);
+        assertThat(first.await(1, TimeUnit.SECONDS)).isTrue();
+
+        Thread consumer = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("decision-event-consumer") && thread.isAlive())
+                .findFirst()
+                .orElseThrow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (consumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(consumer.getState())
+                .withFailMessage("An idle consumer should park without a timeout instead of polling")
+                .isEqualTo(Thread.State.WAITING);
+
+        ring.publish("client-1", "test", true, 1, 0);
+        assertThat(second.await(1, TimeUnit.SECONDS))
+                .withFailMessage("Publishing should wake the parked consumer")
+                .isTrue();
+        ring.close();
+    }
+}
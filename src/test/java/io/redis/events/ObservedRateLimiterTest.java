@@ -0,0 +1,45 @@
+package io.redis.events;
+
+import io.redis.BucketOptions;
+import io.redis.TokenBucketRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObservedRateLimiterTest {
+
+    private record Seen(String clientId, String algorithm, boolean allowed, long remaining) {
+    }
+
+    @Test
+    public void shouldPublishOutcomeAndRemainingCapacity() throws InterruptedException {
+        VirtualClock clock = new VirtualClock();
+        List<Seen> seen = new ArrayList<>();
+        DecisionEventRing ring = new DecisionEventRing(16, DecisionEventRing.OverflowPolicy.DROP, List.of(event ->
+                seen.add(new Seen(event.getClientId(), event.getAlgorithm(), event.isAllowed(), event.getRemaining()))));
+
+        try (Jedis jedis = new EmbeddedRedisServer(clock).connect()) {
+            ObservedRateLimiter limiter = new ObservedRateLimiter(
+                    new TokenBucketRateLimiter(jedis, 2, 0.001, BucketOptions.DEFAULT.withClock(clock)), ring);
+            ObservedRateLimiter opaque = new ObservedRateLimiter(clientId -> true, "always", ring);
+
+            limiter.isAllowed("client-1");
+            limiter.isAllowed("client-1");
+            limiter.isAllowed("client-1");
+            opaque.isAllowed("client-2");
+        }
+        ring.close();
+
+        assertThat(seen).containsExactly(
+                new Seen("client-1", "TokenBucketRateLimiter", true, 1),
+                new Seen("client-1", "TokenBucketRateLimiter", true, 0),
+                new Seen("client-1", "TokenBucketRateLimiter", false, 0),
+                new Seen("client-2", "always", true, -1));
+    }
+}
@@ -0,0 +1,207 @@
+package io.redis.policy;
+
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+public class PolicyEngineTest {
+
+    private static final String CONFIG = """
+            policy.default.path=/api/**
+            policy.default.algorithm=fixed_window
+            policy.default.window=60
+            policy.default.limit=1000
+
+            policy.user.path=/api/users/{userId}
+            policy.user.key=userId
+            policy.user.algorithm=token_bucket
+            policy.user.capacity=10
+            policy.user.rate=1
+
+            policy.me.path=/api/users/me
+            policy.me.key=apiKey
+            policy.me.algorithm=sliding_window_log
+            policy.me.limit=5
+            policy.me.window=1
+
+            policy.search.path=/api/*/search
+            policy.search.key=apiKey
+            policy.search.algorithm=token_bucket
+            policy.search.capacity=100
+            policy.search.rate=10
+
+            policy.searchFree.path=/api/*/search
+            policy.searchFree.methods=GET
+            policy.searchFree.match.tier=free
+            policy.searchFree.key=apiKey,method
+            policy.searchFree.algorithm=token_bucket
+            policy.searchFree.capacity=2
+            policy.searchFree.rate=0.1
+            """;
+
+    private VirtualClock clock;
+    private Jedis jedis;
+    private PolicyEngine engine;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        clock = new VirtualClock();
+        jedis = new EmbeddedRedisServer(clock).connect();
+        engine = PolicyEngine.load(new StringReader(CONFIG), jedis, clock);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldPickMostSpecificPath() {
+        assertThat(policyFor("GET", "/api/users/me")).isEqualTo("me");
+        assertThat(policyFor("GET", "/api/users/42")).isEqualTo("user");
+        assertThat(policyFor("GET", "/api/users/42/orders")).isEqualTo("default");
+        assertThat(policyFor("GET", "/api")).isEqualTo("default");
+        assertThat(engine.resolve(request("GET", "/health", Map.of())))
+                .withFailMessage("Paths no rule covers should not resolve")
+                .isEmpty();
+    }
+
+    @Test
+    public void shouldPreferRulesWithMoreConditions() {
+        assertThat(policyFor("GET", "/api/v2/search?q=redis", Map.of("tier", "free"))).isEqualTo("searchFree");
+        assertThat(policyFor("POST", "/api/v2/search", Map.of("tier", "free"))).isEqualTo("search");
+        assertThat(policyFor("GET", "/api/v2/search", Map.of("tier", "pro"))).isEqualTo("search");
+    }
+
+    @Test
+    public void shouldBuildCompositeKeyFromPathParametersAndAttributes() {
+        assertThat(engine.resolve(request("GET", "/api/users/42", Map.of())).orElseThrow().key())
+                .isEqualTo("user:42");
+        assertThat(engine.resolve(request("GET", "/api/v1/search", Map.of("apiKey", "k1", "tier", "free")))
+                .orElseThrow().key())
+                .withFailMessage("Missing key attributes should key as empty")
+                .isEqualTo("searchFree:k1:");
+        assertThat(engine.resolve(request("GET", "/api/orders", Map.of())).orElseThrow().key())
+                .isEqualTo("default");
+    }
+
+    @Test
+    public void shouldKeepKeyValuesContainingTheSeparatorApart() throws IOException {
+        PolicyEngine pairs = PolicyEngine.load(new StringReader("""
+                policy.pair.path=/pair
+                policy.pair.key=first,second
+                policy.pair.algorithm=fixed_window
+                policy.pair.window=60
+                policy.pair.limit=1
+                """), jedis, clock);
+
+        String left = pairs.resolve(request("GET", "/pair", Map.of("first", "a:b", "second", "c"))).orElseThrow().key();
+        String right = pairs.resolve(request("GET", "/pair", Map.of("first", "a", "second", "b:c"))).orElseThrow().key();
+
+        assertThat(left).isEqualTo("pair:a\\:b:c");
+        assertThat(right)
+                .withFailMessage("Values split differently around a colon should not share a key")
+                .isNotEqualTo(left);
+    }
+
+    @Test
+    public void shouldResolveOverlappingPatternsInOnePass() {
+        // Every segment of /a/a/.../a matches both a literal and a wildcard, and only the catch-all applies
+        int depth = 32;
+        List<Policy> policies = new ArrayList<>();
+        for (int i = 0; i <= depth; i++) {
+            String path = "/a".repeat(i) + "/*".repeat(depth - i);
+            policies.add(new Policy("gold" + i, path, Set.of(), Map.of("tier", "gold"), List.of(), clientId -> true));
+            policies.add(new Policy("rest" + i, "/a".repeat(i) + "/*/**", Set.of(), Map.of("tier", "gold"),
+                    List.of(), clientId -> true));
+        }
+        policies.add(new Policy("any", "/{first}/**", Set.of(), Map.of(), List.of("first"), clientId -> true));
+        PolicyEngine overlapping = new PolicyEngine(policies);
+        String path = "/a".repeat(depth);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 1000; i++) {
+                assertThat(overlapping.resolve(request("GET", path, Map.of("tier", "silver"))).orElseThrow().key())
+                        .isEqualTo("any:a");
+            }
+        });
+        assertThat(overlapping.resolve(request("GET", path, Map.of("tier", "gold"))).orElseThrow().policy().name())
+                .withFailMessage("The all-literal pattern should win when its conditions hold")
+                .isEqualTo("gold" + depth);
+        assertThat(overlapping.resolve(request("GET", path + "/b", Map.of("tier", "gold"))).orElseThrow().policy().name())
+                .withFailMessage("The longest literal prefix should win among the trailing ** rules")
+                .isEqualTo("rest" + depth);
+    }
+
+    @Test
+    public void shouldDelegateToTheResolvedLimiter() {
+        PolicyRequest free = request("GET", "/api/v1/search", Map.of("apiKey", "k1", "tier", "free"));
+        assertThat(engine.isAllowed(free)).isTrue();
+        assertThat(engine.isAllowed(free)).isTrue();
+        assertThat(engine.isAllowed(free))
+                .withFailMessage("The free tier bucket of 2 should be empty")
+                .isFalse();
+
+        assertThat(engine.isAllowed(request("GET", "/api/v1/search", Map.of("apiKey", "k2", "tier", "free"))))
+                .withFailMessage("Another API key should have its own bucket")
+                .isTrue();
+        assertThat(engine.isAllowed(request("GET", "/api/v1/search", Map.of("apiKey", "k1", "tier", "pro"))))
+                .withFailMessage("The pro tier should use its own policy")
+                .isTrue();
+        assertThat(engine.isAllowed(request("GET", "/health", Map.of())))
+                .withFailMessage("Requests no rule covers should not be limited")
+                .isTrue();
+    }
+
+    @Test
+    public void shouldRejectInvalidConfig() {
+        assertThatThrownBy(() -> PolicyEngine.load(new StringReader("""
+                policy.a.path=/a
+                policy.a.algorithm=magic
+                """), jedis))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("unknown algorithm");
+        assertThatThrownBy(() -> PolicyEngine.load(new StringReader("""
+                policy.a.path=/a/{id}
+                policy.a.algorithm=fixed_window
+                policy.a.window=1
+                policy.a.limit=1
+                policy.b.path=/a/*
+                policy.b.algorithm=fixed_window
+                policy.b.window=1
+                policy.b.limit=1
+                """), jedis))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("same requests");
+        assertThatThrownBy(() -> PolicyEngine.load(new StringReader("policy.a.capacty=1"), jedis))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown setting");
+    }
+
+    private String policyFor(String method, String path) {
+        return policyFor(method, path, Map.of());
+    }
+
+    private String policyFor(String method, String path, Map<String, String> attributes) {
+        return engine.resolve(request(method, path, attributes)).orElseThrow().policy().name();
+    }
+
+    private static PolicyRequest request(String method, String path, Map<String, String> attributes) {
+        return new PolicyRequest(method, path, attributes);
+    }
+}
@@ -0,0 +1,146 @@
+package io.redis.server;
+
+import io.redis.BucketOptions;
+import io.redis.FixedWindowRateLimiter;
+import io.redis.RateLimiter;
+import io.redis.TokenBucketRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.FutureTask;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DecisionServerTest {
+
+    private final VirtualClock clock = new VirtualClock();
+    private EmbeddedRedisServer redis;
+    private Jedis jedis;
+    private DecisionServer server;
+
+    @BeforeEach
+    public void setup() {
+        redis = new EmbeddedRedisServer(clock);
+        jedis = redis.connect();
+        server = new DecisionServer(jedis, limiters(jedis), 0).start();
+    }
+
+    private Map<String, RateLimiter> limiters(Jedis jedis) {
+        return Map.of(
+                "login", new TokenBucketRateLimiter(jedis, 2, 0.001, BucketOptions.DEFAULT.withClock(clock)),
+                "quota", new TokenBucketRateLimiter(jedis, 500, 0.001, BucketOptions.DEFAULT.withClock(clock)),
+                "api", new FixedWindowRateLimiter(jedis, 60, 1_000_000),
+                "broken", clientId -> {
+                    throw new NumberFormatException("For input string: \"garbage\"");
+                });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+        jedis.close();
+    }
+
+    @Test
+    public void shouldAnswerEveryPipelinedRequestById() throws Exception {
+        Map<String, String> responses = new HashMap<>();
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("""
+                    a login client-1
+                    b login client-1
+                    c login client-1
+                    d login client-2
+                    e unknown client-1
+                    f malformed
+                    """.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < 6; i++) {
+                String line = in.readLine();
+                int space = line.indexOf(' ');
+                responses.put(line.substring(0, space), line.substring(space + 1));
+            }
+        }
+
+        assertThat(responses).containsEntry("a", "1")
+                .containsEntry("b", "1")
+                .containsEntry("c", "0")
+                .containsEntry("d", "1");
+        assertThat(responses.get("e")).isEqualTo("ERR unknown limiter unknown");
+        assertThat(responses.get("f")).startsWith("ERR");
+    }
+
+    @Test
+    public void shouldAnswerMalformedRequestWithoutWaitingForABatch() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            socket.setSoTimeout(2_000);
+            socket.getOutputStream().write("malformed\n".getBytes(StandardCharsets.UTF_8));
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            assertThat(in.readLine()).startsWith("malformed ERR");
+        }
+    }
+
+    @Test
+    public void shouldKeepDecidingAfterAnUnexpectedLimiterFailure() throws Exception {
+        try (Socket socket = new Socket("localhost", server.getPort())) {
+            socket.setSoTimeout(2_000);
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            out.write("a broken client-1\n".getBytes(StandardCharsets.UTF_8));
+            assertThat(in.readLine()).startsWith("a ERR");
+
+            out.write("b login client-1\n".getBytes(StandardCharsets.UTF_8));
+            assertThat(in.readLine())
+                    .withFailMessage("The decider thread should have survived the failure")
+                    .isEqualTo("b 1");
+        }
+    }
+
+    @Test
+    public void shouldBatchDecisionsFromManyConnections() throws InterruptedException {
+        LoadTestClient.Result result = new LoadTestClient("localhost", server.getPort())
+                .run(new LoadTestClient.Options(8, 2_000, 64, "api", 100));
+
+        assertThat(result.requests()).isEqualTo(16_000);
+        assertThat(result.allowed()).isEqualTo(16_000);
+        assertThat(result.errors()).isZero();
+        assertThat(server.getBatches())
+                .withFailMessage("Expected concurrent requests to share Redis round trips, got %d batches for %d decisions",
+                        server.getBatches(), server.getDecisions())
+                .isLessThan(server.getDecisions());
+    }
+
+    @Test
+    public void shouldShareOneBucketWithAnotherServer() throws Exception {
+        try (Jedis otherJedis = redis.connect();
+             DecisionServer other = new DecisionServer(otherJedis, limiters(otherJedis), 0).start()) {
+            LoadTestClient.Options options = new LoadTestClient.Options(4, 500, 16, "quota", 1);
+            FutureTask<LoadTestClient.Result> otherResult = new FutureTask<>(
+                    () -> new LoadTestClient("localhost", other.getPort()).run(options));
+            new Thread(otherResult).start();
+            LoadTestClient.Result result = new LoadTestClient("localhost", server.getPort()).run(options);
+
+            long allowed = result.allowed() + otherResult.get().allowed();
+            assertThat(result.errors() + otherResult.get().errors()).isZero();
+            assertThat(allowed)
+                    .withFailMessage("Two servers deciding on the same bucket should share its 500 tokens, "
+                            + "but %d were allowed", allowed)
+                    .isEqualTo(500);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package io.redis.simulation;
+
+import io.redis.FixedWindowRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+
+public class LoadSimulationTest {
+
+    private EmbeddedRedisServer server;
+
+    @BeforeEach
+    public void setup() {
+        server = new EmbeddedRedisServer().start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void shouldReportLatencyCostAndAccuracy() throws InterruptedException {
+        LoadSimulation simulation = new LoadSimulation(() -> new Jedis(server.getHost(), server.getPort()));
+
+        LoadSimulation.Report report = simulation.run("FixedWindow",
+                jedis -> new FixedWindowRateLimiter(jedis, 60, 5),
+                new LoadSimulation.Quota(5, Duration.ofSeconds(60)),
+                new LoadSimulation.Options(8, Duration.ofMillis(500), TrafficPattern.constant(2_000), 50, 1.2));
+
+        assertThat(report.decisions()).isBetween(500L, 1_500L);
+        assertThat(report.allowed())
+                .withFailMessage("An exact limit of 5 per client allows at most 250 for 50 clients, got %d", report.allowed())
+                .isLessThanOrEqualTo(250);
+        assertThat(report.admitted())
+                .withFailMessage("The fixed window can only err towards over-admission under concurrency")
+                .isGreaterThanOrEqualTo(report.allowed());
+        assertThat(report.p50()).isLessThanOrEqualTo(report.p99());
+        assertThat(report.p99()).isLessThanOrEqualTo(report.p999());
+        // GET to read, INCRBY and EXPIRE when admitted
+        assertThat(report.commandsPerDecision()).isBetween(1.0, 3.0);
+    }
+
+    @Test
+    public void shouldFavourLowRanksInZipfDistribution() {
+        ZipfDistribution distribution = new ZipfDistribution(100, 1.0);
+        SplittableRandom random = new SplittableRandom(42);
+        int[] counts = new int[100];
+        for (int i = 0; i < 100_000; i++) {
+            counts[distribution.sample(random)]++;
+        }
+
+        // Rank 0 draws 1 / H(100), about 19%, twice as often as rank 1
+        assertThat(counts[0]).isBetween(18_000, 21_000);
+        assertThat((double) counts[0] / counts[1]).isBetween(1.8, 2.2);
+        assertThat(counts[99]).isPositive();
+    }
+
+    @Test
+    public void shouldShapeTrafficWithDiurnalCycleAndBursts() {
+        TrafficPattern pattern = TrafficPattern.diurnal(100, 0.5, Duration.ofSeconds(10))
+                .withBursts(Duration.ofSeconds(3), Duration.ofMillis(300), 4);
+
+        assertThat(pattern.requestsPerSecond(Duration.ofSeconds(10).toNanos())).isCloseTo(50, offset(0.01));
+        assertThat(pattern.requestsPerSecond(Duration.ofSeconds(5).toNanos())).isCloseTo(150, offset(0.01));
+        assertThat(pattern.requestsPerSecond(Duration.ofMillis(6_100).toNanos()))
+                .withFailMessage("Inside a burst the rate should be multiplied")
+                .isGreaterThan(400);
+    }
+}
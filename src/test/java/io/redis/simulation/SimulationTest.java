@@ -0,0 +1,63 @@
+package io.redis.simulation;
+
+import io.redis.FixedWindowRateLimiter;
+import io.redis.SlidingWindowLogRateLimiter;
+import io.redis.embedded.EmbeddedRedisServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SimulationTest {
+
+    private static final List<String> CLIENTS = List.of("client-1", "client-2", "client-3", "client-4");
+
+    private VirtualClock clock;
+    private EmbeddedRedisServer server;
+    private Jedis jedis;
+    private Simulation simulation;
+
+    @BeforeEach
+    public void setup() {
+        clock = new VirtualClock();
+        server = new EmbeddedRedisServer(clock);
+        jedis = server.connect();
+        simulation = new Simulation(clock);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+    }
+
+    @Test
+    public void shouldReplayHoursOfTrafficAgainstRedisTtls() {
+        // 10 req/s per client for 2 hours, 100 per minute allowed
+        Simulation.Result result = simulation.run(new FixedWindowRateLimiter(jedis, 60, 100),
+                Simulation.steady(CLIENTS, 10, Duration.ofHours(2)));
+
+        assertThat(result.requests()).isEqualTo(4 * 72_000);
+        assertThat(result.allowedByClient().values())
+                .withFailMessage("Every client should get exactly 120 windows of 100 requests, got %s",
+                        result.allowedByClient())
+                .containsOnly(12_000L);
+        assertThat(result.simulatedTime()).isGreaterThan(Duration.ofMinutes(119));
+    }
+
+    @Test
+    public void shouldAdvanceLimiterAndRedisClocksTogether() {
+        Simulation.Result result = simulation.run(new SlidingWindowLogRateLimiter(jedis, 5, 10, clock),
+                Simulation.steady(CLIENTS, 1, Duration.ofMinutes(10)));
+
+        // Sliding window of 10s admits 5 requests per 10s at 1 req/s
+        assertThat(result.allowedByClient().values()).containsOnly(300L);
+        assertThat(result.elapsedTime())
+                .withFailMessage("Ten minutes of traffic should not take ten minutes")
+                .isLessThan(Duration.ofSeconds(10));
+    }
+}
@@ -0,0 +1,117 @@
+package io.redis.store;
+
+import io.redis.BucketOptions;
+import io.redis.FixedWindowRateLimiter;
+import io.redis.SlidingWindowCounterRateLimiter;
+import io.redis.SlidingWindowLogRateLimiter;
+import io.redis.TimeSource;
+import io.redis.TokenBucketRateLimiter;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryStateStoreTest {
+
+    private final VirtualClock clock = new VirtualClock();
+
+    @Test
+    public void shouldApplyConcurrentUpdatesAtomically() {
+        InMemoryStateStore store = new InMemoryStateStore(clock);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int i = 0; i < 8; i++) {
+                // Keys in both orders, the stripes must still be locked without deadlock
+                List<String> keys = i % 2 == 0 ? List.of("a", "b") : List.of("b", "a");
+                executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        store.update(keys, values -> {
+                            long a = values.get(0) != null ? Long.parseLong(values.get(0)) : 0;
+                            return StateUpdate.Result.write(null, List.of(String.valueOf(a + 1), String.valueOf(a + 1)));
+                        });
+                    }
+                });
+            }
+        }
+
+        assertThat(store.get("a")).isEqualTo("8000");
+        assertThat(store.get("b")).isEqualTo("8000");
+    }
+
+    @Test
+    public void shouldRunFixedWindowWithoutRedis() {
+        InMemoryStateStore store = new InMemoryStateStore(clock);
+        FixedWindowRateLimiter limiter = new FixedWindowRateLimiter(store, 10, 3);
+
+        AtomicInteger allowed = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            if (limiter.isAllowed("client-1")) {
+                allowed.incrementAndGet();
+            }
+        }
+        assertThat(allowed.get()).isEqualTo(3);
+
+        clock.advance(Duration.ofSeconds(10));
+        assertThat(limiter.isAllowed("client-1"))
+                .withFailMessage("The window should have expired with its key")
+                .isTrue();
+    }
+
+    @Test
+    public void shouldRunTokenBucketWithoutRedis() {
+        InMemoryStateStore store = new InMemoryStateStore(clock);
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(store, 2, 1, BucketOptions.DEFAULT.withClock(clock));
+
+        assertThat(limiter.decide("client-1").remaining()).isEqualTo(1);
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        assertThat(limiter.isAllowed("client-1")).isFalse();
+        assertThat(limiter.acquire("client-1", Duration.ofSeconds(2))).contains(Duration.ofSeconds(1));
+
+        clock.advance(Duration.ofSeconds(2));
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        assertThat(store.get("rate_limit:client-1:count")).isEqualTo("0");
+    }
+
+    @Test
+    public void shouldRunSlidingWindowLogWithoutRedis() {
+        InMemoryStateStore store = new InMemoryStateStore(clock);
+        SlidingWindowLogRateLimiter limiter = new SlidingWindowLogRateLimiter(store, 2, 10, clock,
+                TimeSource.CLIENT, null);
+
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        assertThat(limiter.isAllowed("client-1")).isFalse();
+
+        clock.advance(Duration.ofSeconds(6));
+        assertThat(limiter.isAllowed("client-1"))
+                .withFailMessage("Only the first entry should have left the window")
+                .isTrue();
+        assertThat(limiter.isAllowed("client-1")).isFalse();
+        assertThat(store.get("rate_limit:client-1").split(",")).hasSize(2);
+    }
+
+    @Test
+    public void shouldRunSlidingWindowCounterWithoutRedis() {
+        InMemoryStateStore store = new InMemoryStateStore(clock);
+        SlidingWindowCounterRateLimiter limiter = new SlidingWindowCounterRateLimiter(store, 2, 10, 1, clock,
+                TimeSource.CLIENT, null);
+
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(limiter.isAllowed("client-1")).isTrue();
+        assertThat(limiter.decide("client-1").allowed()).isFalse();
+
+        clock.advance(Duration.ofSeconds(6));
+        assertThat(limiter.isAllowed("client-1"))
+                .withFailMessage("Only the first sub-window should have left the window")
+                .isTrue();
+        assertThat(store.get("rate_limit:client-1").split(",")).hasSize(2);
+    }
+}
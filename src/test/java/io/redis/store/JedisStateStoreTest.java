@@ -0,0 +1,93 @@
+package io.redis.store;
+
+import io.redis.embedded.EmbeddedRedisServer;
+import io.redis.simulation.VirtualClock;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JedisStateStoreTest {
+
+    private final VirtualClock clock = new VirtualClock();
+    private final EmbeddedRedisServer server = new EmbeddedRedisServer(clock);
+    private Jedis jedis;
+    private Jedis other;
+
+    @BeforeEach
+    public void setup() {
+        jedis = server.connect();
+        other = server.connect();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jedis.close();
+        other.close();
+    }
+
+    @Test
+    public void shouldRetryOnValuesChangedByAnotherClient() {
+        JedisStateStore store = new JedisStateStore(jedis);
+        List<List<String>> seen = new ArrayList<>();
+
+        String result = store.update(List.of("a", "b"), values -> {
+            seen.add(values);
+            if (seen.size() == 1) {
+                // Lands between our read and our write
+                other.set("a", "10");
+            }
+            int a = values.get(0) != null ? Integer.parseInt(values.get(0)) : 0;
+            return StateUpdate.Result.write("done", List.of(String.valueOf(a + 1), "x"));
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(seen).hasSize(2);
+        assertThat(seen.get(1)).containsExactly("10", null);
+        assertThat(jedis.get("a")).isEqualTo("11");
+        assertThat(jedis.get("b")).isEqualTo("x");
+    }
+
+    @Test
+    public void shouldSetTtlOnlyWhenAsked() {
+        JedisStateStore store = new JedisStateStore(jedis);
+
+        store.update(List.of("key"), values -> new StateUpdate.Result<>(null, List.of("1"), Duration.ofSeconds(10)));
+        clock.advance(Duration.ofSeconds(5));
+        store.update(List.of("key"), values -> StateUpdate.Result.write(null, List.of("2")));
+
+        assertThat(jedis.pttl("key"))
+                .withFailMessage("A write without a TTL should keep the key's expiry")
+                .isEqualTo(5000);
+        clock.advance(Duration.ofSeconds(5));
+        assertThat(jedis.get("key")).isNull();
+    }
+
+    @Test
+    public void shouldSetTtlPerKey() {
+        JedisStateStore store = new JedisStateStore(jedis);
+
+        store.update(List.of("a", "b"), values -> new StateUpdate.Result<>(null, List.of("1", "2"),
+                Arrays.asList(null, Duration.ofSeconds(10))));
+
+        assertThat(jedis.pttl("a")).isEqualTo(-1);
+        assertThat(jedis.pttl("b")).isEqualTo(10000);
+    }
+
+    @Test
+    public void shouldWriteNothingForUnchangedResults() {
+        JedisStateStore store = new JedisStateStore(jedis);
+
+        String result = store.update(List.of("key"), values -> StateUpdate.Result.unchanged("read"));
+
+        assertThat(result).isEqualTo("read");
+        assertThat(jedis.exists("key")).isFalse();
+    }
+}